@@ -0,0 +1,499 @@
+package colormaps;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Keeps colorings of solved meshes, so the same or an isomorphic mesh isn't solved again.
+ * Meshes are keyed by a Weisfeiler-Lehman fingerprint: every node label is hashed with the
+ * labels of its neighbours for a few rounds or until the number of different labels stops growing,
+ * and the sorted labels are hashed together. Isomorphic meshes have the same fingerprint, but some others do
+ * as well, so a hit is confirmed by finding an isomorphism which also maps the stored coloring
+ * onto the mesh. The search is limited, a mesh it gives up on is just solved again.
+ * Recent fingerprints are held in a bounded LRU cache. If a directory is given, every coloring
+ * is written there as well and fingerprints missing in memory are read from it.
+ * @author Dober
+ *
+ */
+public class ColorCache {
+
+	private static final int MAGIC = 0x434D4343;			// "CMCC"
+	private static final long ISOMORPHISM_STEPS = 1000000;	// candidates tried to map a mesh
+	private static final int LABEL_ROUNDS = 8;				// refinements of node labels at most
+
+	private File directory;
+	private LinkedHashMap<Long, List<Entry>> cache;		// fingerprint -> colorings, in access order
+	private long hits, misses;
+
+	/**
+	 * Creates a cache
+	 * @param capacity -- number of fingerprints to keep in memory
+	 * @param directory -- directory to store colorings in. If null, they are kept in memory only
+	 */
+	public ColorCache(final int capacity, File directory) {
+
+		if ( capacity < 1 )
+			throw new RuntimeException("Invalid cache capacity [" + capacity + "]");
+
+		if ( directory != null && !directory.isDirectory() && !directory.mkdirs() )
+			throw new RuntimeException("Could not create color cache directory [" + directory + "]");
+
+		this.directory = directory;
+		cache = new LinkedHashMap<Long, List<Entry>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, List<Entry>> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	public synchronized long GetHits() {
+		return hits;
+	}
+
+	public synchronized long GetMisses() {
+		return misses;
+	}
+
+	/**
+	 * Looks for a stored coloring of a mesh isomorphic to the given one
+	 * @param mesh -- mesh to color
+	 * @param colors -- number of available colors
+	 * @return color by node id in 1..colors or null if there is no such coloring
+	 */
+	public int[] Get(IndexedMesh mesh, int colors) {
+		return Get(new Key(mesh), colors);
+	}
+
+	/**
+	 * Looks for a stored coloring of a mesh isomorphic to the one of the key. The key
+	 * remembers stored meshes found different, so a Put of it doesn't check them again
+	 * @param key -- key of the mesh to color
+	 * @param colors -- number of available colors
+	 * @return color by node id in 1..colors or null if there is no such coloring
+	 */
+	public synchronized int[] Get(Key key, int colors) {
+
+		IndexedMesh mesh = key.mesh;
+
+		for ( Entry e : Entries(key.fingerprint) ) {
+			if ( e.maxColor > colors || key.different.contains(e) )
+				continue;
+
+			int[] map = Isomorphism(mesh.GetNodeCount(), mesh.GetOffsets(), mesh.GetTargets(), key.labels, e);
+			if ( map == null ) {
+				key.different.add(e);
+				continue;
+			}
+
+			int[] clr = new int[map.length];
+			for ( int id = 0; id < map.length; id++ )
+				clr[id] = e.colors[map[id]];
+			hits++;
+
+			return clr;
+		}
+
+		misses++;
+		return null;
+	}
+
+	/**
+	 * Stores a coloring of the mesh. It replaces a stored coloring of an isomorphic mesh
+	 * using more colors
+	 * @param mesh -- colored mesh
+	 * @param clr -- color by node id from 1
+	 */
+	public void Put(IndexedMesh mesh, int[] clr) {
+		Put(new Key(mesh), clr);
+	}
+
+	/**
+	 * Stores a coloring of the mesh of the key. It replaces a stored coloring of an isomorphic mesh
+	 * using more colors
+	 * @param key -- key of the colored mesh, usually the one of the Get which missed
+	 * @param clr -- color by node id from 1
+	 */
+	public synchronized void Put(Key key, int[] clr) {
+
+		IndexedMesh mesh = key.mesh;
+		int n = mesh.GetNodeCount();
+		Entry entry = new Entry(mesh.GetOffsets().clone(), mesh.GetTargets().clone(), key.labels, clr.clone());
+
+		List<Entry> entries = Entries(key.fingerprint);
+		boolean found = false;
+		for ( int i = 0; i < entries.size() && !found; i++ ) {
+			Entry e = entries.get(i);
+			if ( key.different.contains(e) )
+				continue;
+			if ( Isomorphism(n, mesh.GetOffsets(), mesh.GetTargets(), key.labels, e) == null ) {
+				key.different.add(e);
+				continue;
+			}
+
+			found = true;
+			if ( e.maxColor <= entry.maxColor )
+				return;
+			entries.set(i, entry);
+		}
+		if ( !found )
+			entries.add(entry);
+
+		if ( directory != null )
+			Store(key.fingerprint, entries);
+	}
+
+	/**
+	 * Computes the fingerprint of the mesh, the same for isomorphic meshes
+	 * @param mesh -- mesh to fingerprint
+	 * @return fingerprint
+	 */
+	public static long Fingerprint(IndexedMesh mesh) {
+		int n = mesh.GetNodeCount();
+
+		return Fingerprint(n, mesh.GetTargets().length, Labels(n, mesh.GetOffsets(), mesh.GetTargets()));
+	}
+
+	private static long Fingerprint(int n, int targets, long[] labels) {
+		long[] sorted = labels.clone();
+		Arrays.sort(sorted);
+
+		long h = JonesPlassmannSolver.Mix(n * 0x9E3779B97F4A7C15L + targets);
+		for ( long label : sorted )
+			h = JonesPlassmannSolver.Mix(h ^ label);
+
+		return h;
+	}
+
+	/**
+	 * Refines node labels by their neighbours until the number of different labels stays the same,
+	 * LABEL_ROUNDS times at most. Long chains would need rounds by the number of nodes, collisions
+	 * of less refined labels are sorted out by the isomorphism search.
+	 * A node gets a hash of its label and the sum of mixed labels of its neighbours, the sum
+	 * doesn't depend on the order of neighbours
+	 * @return label by node id
+	 */
+	private static long[] Labels(int n, int[] offsets, int[] targets) {
+		long[] labels = new long[n], next = new long[n];
+		for ( int id = 0; id < n; id++ )
+			labels[id] = JonesPlassmannSolver.Mix(offsets[id + 1] - offsets[id]);
+
+		int classes = Classes(labels);
+		for ( int round = 0; round < LABEL_ROUNDS; round++ ) {
+			for ( int id = 0; id < n; id++ ) {
+				long sum = 0;
+				for ( int k = offsets[id]; k < offsets[id + 1]; k++ )
+					sum += JonesPlassmannSolver.Mix(labels[targets[k]] ^ 0x5DEECE66DL);
+				next[id] = JonesPlassmannSolver.Mix(labels[id] * 31 + sum);
+			}
+
+			int refined = Classes(next);
+			long[] t = labels;
+			labels = next;
+			next = t;
+			if ( refined == classes )
+				break;
+			classes = refined;
+		}
+
+		return labels;
+	}
+
+	private static int Classes(long[] labels) {
+		long[] sorted = labels.clone();
+		Arrays.sort(sorted);
+
+		int classes = 0;
+		for ( int i = 0; i < sorted.length; i++ )
+			if ( i == 0 || sorted[i] != sorted[i - 1] )
+				classes++;
+
+		return classes;
+	}
+
+	/**
+	 * Maps the mesh onto the stored one by backtracking over nodes in breadth-first order,
+	 * so every node but the first of a component is tried only on neighbours of the image
+	 * of its parent. A node and its image have the same label, degree and mapped neighbours
+	 * @param labels -- labels of the mesh nodes
+	 * @param e -- stored mesh
+	 * @return stored node id by node id or null if there is no isomorphism or the search gave up
+	 */
+	private static int[] Isomorphism(int n, int[] offsets, int[] targets, long[] labels, Entry e) {
+		if ( n != e.labels.length || targets.length != e.targets.length )
+			return null;
+		if ( n == 0 )
+			return new int[0];
+
+		// breadth-first order, components start from the nodes of the rarest labels
+		Map<Long, Integer> counts = new HashMap<Long, Integer>();
+		for ( long label : labels )
+			counts.put(label, counts.containsKey(label) ? counts.get(label) + 1 : 1);
+		Integer[] starts = new Integer[n];
+		for ( int id = 0; id < n; id++ )
+			starts[id] = id;
+		final Map<Long, Integer> rarity = counts;
+		final long[] lbl = labels;
+		Arrays.sort(starts, new Comparator<Integer>() {
+			public int compare(Integer id1, Integer id2) {
+				return rarity.get(lbl[id1]) - rarity.get(lbl[id2]);
+			}
+		});
+
+		int[] order = new int[n], parent = new int[n];
+		boolean[] seen = new boolean[n];
+		int size = 0;
+		for ( int start : starts ) {
+			if ( seen[start] )
+				continue;
+
+			seen[start] = true;
+			parent[start] = -1;
+			order[size++] = start;
+			for ( int i = size - 1; i < size; i++ )
+				for ( int k = offsets[order[i]]; k < offsets[order[i] + 1]; k++ )
+					if ( !seen[targets[k]] ) {
+						seen[targets[k]] = true;
+						parent[targets[k]] = order[i];
+						order[size++] = targets[k];
+					}
+		}
+
+		int[] map = new int[n], cursor = new int[n], end = new int[n];
+		boolean[] used = new boolean[n];
+		Arrays.fill(map, -1);
+		long steps = 0;
+
+		int depth = 0;
+		Range(order[0], parent, map, e, cursor, end, 0);
+		while ( depth >= 0 && depth < n ) {
+			int u = order[depth];
+			if ( map[u] >= 0 ) {
+				used[map[u]] = false;
+				map[u] = -1;
+			}
+
+			boolean found = false;
+			while ( cursor[depth] < end[depth] && !found ) {
+				if ( ++steps > ISOMORPHISM_STEPS )
+					return null;
+
+				int c = parent[u] >= 0 ? e.targets[cursor[depth]++] : cursor[depth]++;
+				if ( !used[c] && Fits(u, c, offsets, targets, labels, map, used, e) ) {
+					map[u] = c;
+					used[c] = true;
+					found = true;
+				}
+			}
+
+			if ( found ) {
+				depth++;
+				if ( depth < n )
+					Range(order[depth], parent, map, e, cursor, end, depth);
+			}
+			else
+				depth--;
+		}
+
+		return depth == n ? map : null;
+	}
+
+	/**
+	 * Sets candidates of the node: neighbours of the image of its parent or all stored nodes
+	 */
+	private static void Range(int u, int[] parent, int[] map, Entry e, int[] cursor, int[] end, int depth) {
+		if ( parent[u] >= 0 ) {
+			cursor[depth] = e.offsets[map[parent[u]]];
+			end[depth] = e.offsets[map[parent[u]] + 1];
+		}
+		else {
+			cursor[depth] = 0;
+			end[depth] = e.labels.length;
+		}
+	}
+
+	private static boolean Fits(int u, int c, int[] offsets, int[] targets, long[] labels, int[] map, boolean[] used, Entry e) {
+		if ( labels[u] != e.labels[c] || offsets[u + 1] - offsets[u] != e.offsets[c + 1] - e.offsets[c] )
+			return false;
+
+		int mapped = 0;
+		for ( int k = offsets[u]; k < offsets[u + 1]; k++ ) {
+			int w = map[targets[k]];
+			if ( w < 0 )
+				continue;
+			if ( Arrays.binarySearch(e.targets, e.offsets[c], e.offsets[c + 1], w) < 0 )
+				return false;
+			mapped++;
+		}
+
+		for ( int k = e.offsets[c]; k < e.offsets[c + 1]; k++ )
+			if ( used[e.targets[k]] )
+				mapped--;
+
+		return mapped == 0;
+	}
+
+	/**
+	 * Returns stored colorings of the fingerprint from memory or the directory
+	 */
+	private List<Entry> Entries(long fingerprint) {
+
+		List<Entry> entries = cache.get(fingerprint);
+		if ( entries != null )
+			return entries;
+
+		entries = new ArrayList<Entry>();
+		File file = CacheFile(fingerprint);
+		if ( directory != null && file.isFile() ) {
+			try ( DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))) ) {
+				entries = ReadEntries(in, file.length());
+			}
+			catch ( IOException e ) {
+				// a broken file is ignored, its meshes are solved again and the file is written anew
+				entries = new ArrayList<Entry>();
+			}
+		}
+
+		cache.put(fingerprint, entries);
+		return entries;
+	}
+
+	/**
+	 * Reads colorings of a cache file. Sizes are checked against the bytes left in the
+	 * file and meshes against the CSR invariants, so a broken file can't make huge arrays
+	 * @param in -- file stream
+	 * @param length -- file length in bytes
+	 * @return stored colorings
+	 * @throws IOException if the file is broken
+	 */
+	private static List<Entry> ReadEntries(DataInputStream in, long length) throws IOException {
+
+		if ( in.readInt() != MAGIC )
+			throw new IOException("not a color cache file");
+
+		int count = in.readInt();
+		long left = length - 8;
+		// every coloring takes three ints at least
+		if ( count < 0 || count > left / 12 )
+			throw new IOException("invalid colorings count " + count);
+
+		List<Entry> entries = new ArrayList<Entry>();
+		for ( int i = 0; i < count; i++ ) {
+			int n = in.readInt(),
+				m = in.readInt();
+			left -= 8;
+			if ( n < 0 || m < 0 || (m & 1) != 0 || 4L * (2L * n + 1 + m) > left )
+				throw new IOException("invalid mesh size " + n + " nodes, " + m + " link ends");
+			left -= 4L * (2L * n + 1 + m);
+
+			int[] offsets = new int[n + 1],
+				  targets = new int[m],
+				  colors = new int[n];
+			for ( int j = 0; j <= n; j++ ) {
+				offsets[j] = in.readInt();
+				if ( (j == 0 && offsets[j] != 0) || (j > 0 && offsets[j] < offsets[j - 1]) || offsets[j] > m )
+					throw new IOException("invalid row offset " + offsets[j]);
+			}
+			if ( offsets[n] != m )
+				throw new IOException("rows don't cover " + m + " link ends");
+
+			// rows are sorted without duplicates or links to the node itself
+			for ( int id = 0; id < n; id++ )
+				for ( int k = offsets[id]; k < offsets[id + 1]; k++ ) {
+					targets[k] = in.readInt();
+					if ( targets[k] < 0 || targets[k] >= n || targets[k] == id ||
+						 (k > offsets[id] && targets[k] <= targets[k - 1]) )
+						throw new IOException("invalid link " + id + "-" + targets[k]);
+				}
+
+			for ( int j = 0; j < n; j++ ) {
+				colors[j] = in.readInt();
+				if ( colors[j] < 1 )
+					throw new IOException("invalid color " + colors[j]);
+			}
+
+			entries.add(new Entry(offsets, targets, colors));
+		}
+
+		return entries;
+	}
+
+	/**
+	 * Writes colorings of the fingerprint to its file
+	 */
+	private void Store(long fingerprint, List<Entry> entries) {
+
+		File file = CacheFile(fingerprint);
+		try ( DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))) ) {
+			out.writeInt(MAGIC);
+			out.writeInt(entries.size());
+			for ( Entry e : entries ) {
+				out.writeInt(e.colors.length);
+				out.writeInt(e.targets.length);
+				for ( int x : e.offsets )
+					out.writeInt(x);
+				for ( int x : e.targets )
+					out.writeInt(x);
+				for ( int x : e.colors )
+					out.writeInt(x);
+			}
+		}
+		catch ( IOException e ) {
+			throw new RuntimeException("Could not write color cache file [" + file + "]: " + e.getMessage(), e);
+		}
+	}
+
+	private File CacheFile(long fingerprint) {
+		return new File(directory, String.format("%016x.cmc", fingerprint));
+	}
+
+	/**
+	 * Mesh with its node labels and fingerprint, made once for a Get and the Put after it
+	 */
+	public static class Key {
+		private final IndexedMesh mesh;
+		private final long[] labels;
+		private final long fingerprint;
+		private final Set<Entry> different = new HashSet<Entry>();	// stored meshes not isomorphic to it
+
+		/**
+		 * Labels the mesh nodes and computes the fingerprint. Doesn't lock the cache
+		 * @param mesh -- mesh to look up or store
+		 */
+		public Key(IndexedMesh mesh) {
+			this.mesh = mesh;
+			labels = Labels(mesh.GetNodeCount(), mesh.GetOffsets(), mesh.GetTargets());
+			fingerprint = Fingerprint(mesh.GetNodeCount(), mesh.GetTargets().length, labels);
+		}
+
+		public long GetFingerprint() {
+			return fingerprint;
+		}
+	}
+
+	/**
+	 * Stored mesh with its coloring
+	 */
+	private static class Entry {
+		final int[] offsets, targets;
+		final int[] colors;
+		final long[] labels;
+		final int maxColor;
+
+		Entry(int[] offsets, int[] targets, int[] colors) {
+			this(offsets, targets, Labels(colors.length, offsets, targets), colors);
+		}
+
+		Entry(int[] offsets, int[] targets, long[] labels, int[] colors) {
+			this.offsets = offsets;
+			this.targets = targets;
+			this.colors = colors;
+			this.labels = labels;
+
+			int max = 0;
+			for ( int c : colors )
+				max = Math.max(max, c);
+			maxColor = max;
+		}
+	}
+}
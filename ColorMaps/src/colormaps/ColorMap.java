@@ -146,11 +146,11 @@ public class ColorMap {
 		
 		cmap.SolveColorMaps();
 		
-		Map<String, ColorMaps.Color> scmap = cmap.GetColorMap();
+		Map<String, Integer> scmap = cmap.GetColorMap();
 		
 		System.out.println("\n\nSolved color map followed:\n==================================================================");
 		for ( String state : scmap.keySet() )
-			System.out.printf(" Color for state %s is %s .\n", state, scmap.get(state).toString());
+			System.out.printf(" Color for state %s is %d .\n", state, scmap.get(state));
 	}
 	
 	private void GraphTest() {
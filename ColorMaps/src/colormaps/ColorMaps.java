@@ -9,50 +9,191 @@ import java.util.*;
  */
 public class ColorMaps {
 
-	public enum Color {
-		UNSPECIFIED,
-		COLOR1, 
-		COLOR2,
-		COLOR3,
-		COLOR4,
-		COLOR5,
-		COLOR6;
-		
-		static public Color GetNext(Color col) {
-			switch ( col ) {
-			case COLOR1 : return COLOR2; 
-			case COLOR2 : return COLOR3; 
-			case COLOR3 : return COLOR4; 
-			case COLOR4 : return COLOR5; 
-			case COLOR5 : return COLOR6; 
+	/**
+	 * Ways to solve the color map
+	 */
+	public enum Strategy {
+		GREEDY,			// nodes in the mesh order, the first free color
+		DSATUR,			// the most saturated node first
+		PARALLEL,		// Jones-Plassmann rounds of local maxima on all processors
+		EXACT,			// backtracking search, finds a coloring if there is one
+		SAT,			// CDCL SAT solver, finds a coloring if there is one
+		TABUCOL,		// tabu search of moves in conflict
+		PLANAR,			// five colors of planar meshes by contraction, four tried
+		PORTFOLIO;		// race of the other strategies on all processors
+		
+		/**
+		 * Creates a solver of the strategy
+		 * @return ColorSolver
+		 */
+		public ColorSolver CreateSolver() {
+			switch ( this ) {
+				case GREEDY : return new GreedySolver();
+				case DSATUR : return new DSaturSolver();
+				case PARALLEL : return new JonesPlassmannSolver(1);
+				case EXACT  : return new ExactSolver();
+				case SAT    : return new SatColorSolver();
+				case TABUCOL : return new TabuColSolver(1);
+				case PLANAR : return new PlanarSolver();
+				case PORTFOLIO : return new PortfolioSolver();
 			}
 			
-			return UNSPECIFIED;			
+			throw new RuntimeException("Invalid strategy " + this);
 		}
-		
 	};
 	
-	private Mesh mesh;
-	private Map<String, Color> colormap;
+	public static final int DEFAULT_PALETTE = 6;	// number of colors of a new color map
+	
+	private static final int KEMPE_LIMIT = 256;		// largest Kempe chain to swap
+	private static final int REPAIR_STEPS = 1000;	// local search moves to repair a coloring
+	private static final long FALLBACK_STEPS = 2000000;		// exact search steps of the fallback
+	private static final long FALLBACK_CONFLICTS = 100000;	// SAT conflicts of the fallback
+	
+	private IndexedMesh graph;
+	private DynamicMesh dynamic;		// the graph changed in place by incremental operations, made on demand
+	private Mesh mesh;					// object view given away by GetMesh, null if there is none
+	private int palette;				// number of colors to use
+	private Strategy strategy;			// strategy of the last solution
+	private Map<String, Integer> colormap;	// color in 1..palette by node name, remade on demand
+	private int[] colors;				// color in 1..palette by node id, could be longer than the mesh
+	private ColorCache cache;			// colorings of solved components, null for none
+	private boolean reduce;				// solvers get the mesh reduced by ReducingSolver
+	private boolean solved;				// colors hold a coloring of the whole mesh
+	private boolean changed;			// dynamic was changed since graph was made
+	private boolean mapped;				// colormap matches colors
+	private Random random = new Random(1);
+	
+	// incremental repair buffers by node id
+	private int[] marks = new int[0];	// Kempe chain members and saved colors, stamped by mark
+	private int mark;
+	private int[] position = new int[0];	// index in the conflicted nodes or -1, all -1 between repairs
 	
 	
 	// Setters and getters
 	//-------------------------------------------------------------------------
+	
+	/**
+	 * Returns the object mesh of the graph. Changes of the mesh are taken into account
+	 * by the next SolveColorMaps or incremental operation. The mesh is detached after it,
+	 * so GetMesh should be called again to see or change the mesh further
+	 * @return Mesh
+	 */
 	public Mesh GetMesh() {
+		if ( mesh == null )
+			mesh = GetIndexedMesh().ToMesh();
+		
 		return mesh;
 	}
 	
-	public Map<String, Color> GetColorMap()
+	/**
+	 * Returns the indexed mesh. It's made anew after incremental operations
+	 * @return IndexedMesh
+	 */
+	public IndexedMesh GetIndexedMesh() {
+		if ( changed ) {
+			graph = dynamic.ToIndexedMesh();
+			changed = false;
+		}
+		
+		return graph;
+	}
+	
+	/**
+	 * Returns colors by node names. The map is the same one all the time and is
+	 * brought up to date by every call
+	 * @return map of colors in 1..palette, empty if the mesh isn't solved
+	 */
+	public Map<String, Integer> GetColorMap()
 	{
+		if ( !mapped ) {
+			colormap.clear();
+			if ( solved )
+				for ( int id = 0; id < NodeCount(); id++ )
+					colormap.put(NameOf(id), colors[id]);
+			mapped = true;
+		}
+		
 		return colormap;
 	}
 	
+	/**
+	 * Turns the reduction of the mesh before solving on or off, it's on by default
+	 * @param reduce -- true to peel easy nodes and split the mesh into blocks first
+	 */
+	public void SetReduction(boolean reduce) {
+		this.reduce = reduce;
+	}
+	
+	/**
+	 * Sets the cache of colorings. Components isomorphic to ones solved before take
+	 * their colorings from it instead of being solved
+	 * @param cache -- cache to use, null for none
+	 */
+	public void SetCache(ColorCache cache) {
+		this.cache = cache;
+	}
+	
+	public int GetPalette() {
+		return palette;
+	}
+	
+	/**
+	 * Sets the number of colors. The current coloring is dropped if it uses more of them
+	 * @param palette -- number of colors, at least 1
+	 */
+	public void SetPalette(int palette) {
+		if ( palette < 1 )
+			throw new RuntimeException("Invalid palette size " + palette);
+		
+		this.palette = palette;
+		for ( int id = 0; id < (solved ? NodeCount() : 0); id++ )
+			if ( colors[id] > palette ) {
+				colors = new int[0];
+				solved = false;
+				mapped = false;
+				break;
+			}
+	}
+	
+	/**
+	 * Checks if the mesh can be drawn without crossing links, as maps can.
+	 * Such meshes always have a coloring with five colors
+	 * @return true if the mesh is planar
+	 */
+	public boolean IsPlanar() {
+		if ( mesh != null )
+			return PlanarSolver.IsPlanar(IndexedMesh.FromMesh(mesh));
+		
+		return PlanarSolver.IsPlanar(GetIndexedMesh());
+	}
+	
+	/**
+	 * Returns colors of the last solution by node ids of the indexed mesh.
+	 * Ids are kept by incremental operations, except that a removed node gives its id
+	 * to the last one. Shouldn't be modified
+	 * @return array of colors in 1..palette, empty if the mesh isn't solved
+	 */
+	public int[] GetColors() {
+		if ( solved && colors.length != NodeCount() )
+			colors = Arrays.copyOf(colors, NodeCount());
+		
+		return solved ? colors : new int[0];
+	}
+	
 	
 	// Constructors
 	//-------------------------------------------------------------------------
 	public ColorMaps() {
-		mesh = new Mesh();
-		colormap = new HashMap<String, Color>();
+		graph = new IndexedMesh.Builder().Build();
+		mesh = null;
+		palette = DEFAULT_PALETTE;
+		strategy = Strategy.DSATUR;
+		reduce = true;
+		colormap = new HashMap<String, Integer>();
+		colors = new int[0];
+		solved = true;
+		changed = false;
+		mapped = true;
 	}
 	
 	
@@ -66,44 +207,442 @@ public class ColorMaps {
 	 * @param linkDescriptors -- List of LinkDescriptors
 	 */
 	public void LoadMesh(String[] nodes, List<String[]> linkDescriptors) {
+		IndexedMesh.Builder builder = new IndexedMesh.Builder();
+		IndexedMesh current = mesh != null ? IndexedMesh.FromMesh(mesh) : GetIndexedMesh();
+		
+		// nodes and links loaded before stay in the mesh
+		for ( int id = 0; id < current.GetNodeCount(); id++ )
+			builder.AddNode(current.GetName(id));
+		for ( int id = 0; id < current.GetNodeCount(); id++ )
+			for ( int k = current.GetOffsets()[id]; k < current.GetOffsets()[id + 1]; k++ )
+				if ( id < current.GetTargets()[k] )
+					builder.AddLink(id, current.GetTargets()[k]);
+		
 		for ( String nodeName : nodes )
-			mesh.AddNode(nodeName);
+			builder.AddNode(nodeName);
 		
 		for ( String[] ld : linkDescriptors )
-			mesh.LinkTwoNodes(ld[0], ld[1]);
+			builder.AddLink(ld[0], ld[1]);
+		
+		LoadMesh(builder.Build());
 	}
 	
 	/**
-	 * Solves the ColorMaps stored in mesh
+	 * Replaces the mesh with an indexed one
+	 * @param mesh -- indexed mesh to solve
+	 */
+	public void LoadMesh(IndexedMesh mesh) {
+		graph = mesh;
+		dynamic = null;
+		this.mesh = null;
+		colors = new int[0];
+		solved = false;
+		changed = false;
+		mapped = false;
+	}
+	
+	/**
+	 * Solves the ColorMaps stored in mesh with DSatur
 	 */
 	public void SolveColorMaps() {
+		SolveColorMaps(Strategy.DSATUR);
+	}
+	
+	/**
+	 * Solves the ColorMaps stored in mesh.
+	 * Connected components are solved in parallel, one by one for the portfolio.
+	 * Components found in the cache aren't solved. The rest are reduced unless the reduction is off.
+	 * If a heuristic strategy fails on a component, the planar solver tries it.
+	 * Then the exact solver tries it with a limited budget, the SAT one for large palettes.
+	 * The EXACT, SAT and PORTFOLIO strategies have no fallback
+	 * @param strategy -- way to solve
+	 */
+	public void SolveColorMaps(Strategy strategy) {
 		
-		Vector<Color> aClr = new Vector<Color>(6);
+		this.strategy = strategy;
+		Absorb();
+		IndexedMesh graph = GetIndexedMesh();
 		
-		colormap.clear();
-		for ( Node node : mesh.GetNodes() )
-			colormap.put(node.GetName(), Color.UNSPECIFIED);
+		final ColorSolver solver = strategy.CreateSolver();
+		final ColorSolver planar = strategy != Strategy.PLANAR && palette >= 4 ? new PlanarSolver() : null;
+		final ColorSolver fallback =
+			strategy == Strategy.EXACT || strategy == Strategy.SAT || strategy == Strategy.PORTFOLIO ? null :
+			palette <= ExactSolver.MAX_COLORS ? new ExactSolver(FALLBACK_STEPS) : new SatColorSolver(FALLBACK_CONFLICTS);
 		
-		for ( String state : colormap.keySet() ) {
-			// create set of available colors
-			aClr.clear();
-			for ( Color clr : Color.values() )
-				if ( clr != Color.UNSPECIFIED )
-					aClr.add(clr);
-
-			// remove all color which is already in use
-			for ( Link link : mesh.GetNodeByName(state).GetLinks() ) {
-				Color col = colormap.get(link.GetOppositeNode(mesh.GetNodeByName(state)).GetName());
-				if ( col != Color.UNSPECIFIED )
-					aClr.remove(col);
+		// every component falls back on its own
+		ColorSolver chain = new ColorSolver() {
+			public int[] Solve(IndexedMesh mesh, int colors) {
+				int[] clr = solver.Solve(mesh, colors);
+				if ( clr == null && planar != null && fallback != null )
+					clr = planar.Solve(mesh, colors);
+				
+				return clr != null || fallback == null ? clr : fallback.Solve(mesh, colors);
+			}
+		};
+		
+		final ColorSolver reduced = reduce ? new ReducingSolver(chain) : chain;
+		final ColorCache cache = this.cache;
+		ColorSolver cached = cache == null ? reduced : new ColorSolver() {
+			public int[] Solve(IndexedMesh mesh, int colors) {
+				ColorCache.Key key = new ColorCache.Key(mesh);
+				int[] clr = cache.Get(key, colors);
+				if ( clr == null ) {
+					clr = reduced.Solve(mesh, colors);
+					if ( clr != null )
+						cache.Put(key, clr);
+				}
+				
+				return clr;
+			}
+		};
+		
+		// the portfolio keeps all processors busy with a single component, so components go one by one
+		int threads = strategy == Strategy.PORTFOLIO ? 1 : Runtime.getRuntime().availableProcessors();
+		int[] clr = new ComponentSolver(cached, threads).Solve(graph, palette);
+		if ( clr == null )
+			throw new RuntimeException("There is no coloring of the mesh with " + palette + " colors");
+		
+		SetColors(clr);
+	}
+	
+	/**
+	 * Colors the mesh with as few colors as TabuCol finds and sets the palette to their number
+	 * @return number of colors
+	 */
+	public int SolveMinColors() {
+		Absorb();
+		
+		int[] clr = new TabuColSolver(1).Minimize(GetIndexedMesh());
+		palette = 1;
+		for ( int c : clr )
+			palette = Math.max(palette, c);
+		
+		SetColors(clr);
+		return palette;
+	}
+	
+	private void SetColors(int[] clr) {
+		colors = clr;
+		solved = true;
+		mapped = false;
+	}
+	
+	/**
+	 * Adds a node to the mesh. A solved color map gets the node colored
+	 * @param name -- node name
+	 */
+	public void AddNode(String name) {
+		Edit();
+		
+		if ( dynamic.GetId(name) >= 0 )
+			return;
+		
+		int id = dynamic.AddNode(name);
+		if ( solved ) {
+			if ( id >= colors.length )
+				colors = Arrays.copyOf(colors, Math.max(16, 2 * colors.length));
+			colors[id] = 1;
+		}
+		changed = true;
+		mapped = false;
+	}
+	
+	/**
+	 * Removes a node with its links from the mesh. The rest of the coloring stays valid.
+	 * The last node takes the id of the removed one
+	 * @param name -- node name
+	 */
+	public void RemoveNode(String name) {
+		Edit();
+		
+		int id = dynamic.GetId(name);
+		if ( id < 0 )
+			return;
+		
+		int last = dynamic.RemoveNode(id);
+		if ( solved )
+			colors[id] = colors[last];
+		changed = true;
+		mapped = false;
+	}
+	
+	/**
+	 * Links two nodes. If they have the same color, the coloring is repaired around them:
+	 * one of them takes a color free among its neighbours or a Kempe chain of it swaps
+	 * two colors, else a short local search recolors the neighbourhood. Only if all of
+	 * them fail the whole mesh is solved again by the strategy of the last solution.
+	 * If there is no coloring with the link, it's removed again and the exception is thrown
+	 * @param name1 -- name of the first node
+	 * @param name2 -- name of the second node
+	 */
+	public void AddLink(String name1, String name2) {
+		Edit();
+		
+		int id1 = dynamic.GetId(name1),
+			id2 = dynamic.GetId(name2);
+		
+		if ( id1 < 0 || id2 < 0 || !dynamic.AddLink(id1, id2) )
+			return;
+		changed = true;
+		
+		if ( !solved || colors[id1] != colors[id2] )
+			return;
+		
+		mapped = false;
+		if ( Recolor(id2) || Recolor(id1) || KempeSwap(id2, id1) || KempeSwap(id1, id2) )
+			return;
+		
+		if ( LocalRepair(id2) )
+			return;
+		
+		try {
+			SolveColorMaps(strategy);
+		}
+		catch ( RuntimeException e ) {
+			// the coloring is still the valid one of the mesh without the link
+			dynamic.RemoveLink(id1, id2);
+			changed = true;
+			throw e;
+		}
+	}
+	
+	/**
+	 * Removes the link between two nodes. The coloring stays valid
+	 * @param name1 -- name of the first node
+	 * @param name2 -- name of the second node
+	 */
+	public void RemoveLink(String name1, String name2) {
+		Edit();
+		
+		int id1 = dynamic.GetId(name1),
+			id2 = dynamic.GetId(name2);
+		
+		if ( id1 >= 0 && id2 >= 0 && dynamic.RemoveLink(id1, id2) )
+			changed = true;
+	}
+	
+	/**
+	 * Makes the mesh ready for incremental operations
+	 */
+	private void Edit() {
+		Absorb();
+		if ( dynamic == null )
+			dynamic = new DynamicMesh(graph);
+	}
+	
+	/**
+	 * Takes changes of the object mesh given away by GetMesh and detaches it.
+	 * Colors are kept by node names, the coloring is dropped if a node has none
+	 */
+	private void Absorb() {
+		if ( mesh == null )
+			return;
+		
+		IndexedMesh current = IndexedMesh.FromMesh(mesh);
+		if ( solved ) {
+			int[] clr = new int[current.GetNodeCount()];
+			for ( int id = 0; id < clr.length && solved; id++ ) {
+				int old = IdOf(current.GetName(id));
+				if ( old < 0 )
+					solved = false;
+				else
+					clr[id] = colors[old];
+			}
+			colors = solved ? clr : new int[0];
+		}
+		
+		graph = current;
+		dynamic = null;
+		mesh = null;
+		changed = false;
+		mapped = false;
+	}
+	
+	private int NodeCount() {
+		return dynamic != null ? dynamic.GetNodeCount() : graph.GetNodeCount();
+	}
+	
+	private String NameOf(int id) {
+		return dynamic != null ? dynamic.GetName(id) : graph.GetName(id);
+	}
+	
+	private int IdOf(String name) {
+		return dynamic != null ? dynamic.GetId(name) : graph.GetId(name);
+	}
+	
+	/**
+	 * Gives the node a color none of its neighbours has
+	 * @param id -- node to recolor
+	 * @return true if there was such a color
+	 */
+	private boolean Recolor(int id) {
+		boolean[] used = new boolean[palette + 1];
+		int[] row = dynamic.GetRow(id);
+		
+		for ( int k = 0; k < dynamic.GetDegree(id); k++ )
+			used[colors[row[k]]] = true;
+		
+		for ( int c = 1; c < used.length; c++ )
+			if ( !used[c] ) {
+				colors[id] = c;
+				return true;
+			}
+		
+		return false;
+	}
+	
+	/**
+	 * Frees the node color from the conflict by swapping its color with another one in
+	 * the Kempe chain of the node: nodes of these two colors connected to the node.
+	 * The swap keeps the rest of the coloring valid and works unless the chain reaches
+	 * the node in conflict
+	 * @param node -- node to recolor
+	 * @param other -- linked node of the same color
+	 * @return true if the node got another color
+	 */
+	private boolean KempeSwap(int node, int other) {
+		int c = colors[node];
+		int[] chain = new int[KEMPE_LIMIT];
+		
+		for ( int d = 1; d <= palette; d++ ) {
+			if ( d == c )
+				continue;
+			
+			// collect the chain ignoring the new link, the chain is the queue of the search too
+			int in = NextMark();
+			int size = 0, head = 0;
+			marks[node] = in;
+			chain[size++] = node;
+			boolean blocked = false;
+			
+			while ( head < size && !blocked ) {
+				int n = chain[head++];
+				int[] row = dynamic.GetRow(n);
+				for ( int k = 0; k < dynamic.GetDegree(n); k++ ) {
+					int nb = row[k];
+					if ( (colors[nb] != c && colors[nb] != d) || marks[nb] == in || (n == node && nb == other) )
+						continue;
+					
+					if ( nb == other || size == KEMPE_LIMIT ) {
+						blocked = true;
+						break;
+					}
+					marks[nb] = in;
+					chain[size++] = nb;
+				}
 			}
 			
-			if ( aClr.size() == 0 )
-				throw new RuntimeException("There are no available colors for state " + state);
+			if ( blocked )
+				continue;
 			
-			colormap.put(state, aClr.get(0));
+			for ( int i = 0; i < size; i++ )
+				colors[chain[i]] = colors[chain[i]] == c ? d : c;
+			return true;
 		}
+		
+		return false;
+	}
+	
+	/**
+	 * Moves nodes in conflict to colors least used by their neighbours, starting
+	 * from the node, for a limited number of moves. Colors are restored if it fails
+	 * @param node -- node in conflict
+	 * @return true if the coloring was repaired
+	 */
+	private boolean LocalRepair(int node) {
+		if ( palette < 2 )
+			return false;
+		
+		int saveMark = NextMark();
+		int[] savedIds = new int[REPAIR_STEPS],
+			  savedColors = new int[REPAIR_STEPS];
+		int saved = 0;
+		
+		// nodes in conflict with their indexes in position
+		int[] conflicted = new int[16];
+		int size = LocalSearchSolver.Update(node, true, conflicted, position, 0);
+		
+		for ( int step = 0; step < REPAIR_STEPS && size > 0; step++ ) {
+			int v = conflicted[random.nextInt(size)];
+			int from = colors[v];
 			
+			int[] row = dynamic.GetRow(v);
+			int degree = dynamic.GetDegree(v);
+			int[] counts = new int[palette + 1];
+			for ( int k = 0; k < degree; k++ )
+				counts[colors[row[k]]]++;
+			
+			// the least used color, ties are broken randomly
+			int best = -1, ties = 0;
+			for ( int c = 1; c < counts.length; c++ ) {
+				if ( c == from )
+					continue;
+				if ( best < 0 || counts[c] < counts[best] ) {
+					best = c;
+					ties = 1;
+				}
+				else if ( counts[c] == counts[best] && random.nextInt(++ties) == 0 )
+					best = c;
+			}
+			
+			if ( marks[v] != saveMark ) {
+				marks[v] = saveMark;
+				savedIds[saved] = v;
+				savedColors[saved++] = from;
+			}
+			colors[v] = best;
+			
+			// only the node and its neighbours could change their conflicts
+			if ( size + degree + 1 > conflicted.length )
+				conflicted = Arrays.copyOf(conflicted, 2 * (size + degree + 1));
+			size = LocalSearchSolver.Update(v, counts[best] > 0, conflicted, position, size);
+			for ( int k = 0; k < degree; k++ )
+				size = LocalSearchSolver.Update(row[k], InConflict(row[k]), conflicted, position, size);
+		}
+		
+		// positions are left clear for the next repair
+		for ( int i = 0; i < size; i++ )
+			position[conflicted[i]] = -1;
+		
+		if ( size == 0 )
+			return true;
+		
+		for ( int i = 0; i < saved; i++ )
+			colors[savedIds[i]] = savedColors[i];
+		
+		return false;
+	}
+	
+	private boolean InConflict(int id) {
+		int[] row = dynamic.GetRow(id);
+		
+		for ( int k = 0; k < dynamic.GetDegree(id); k++ )
+			if ( colors[row[k]] == colors[id] )
+				return true;
+		
+		return false;
+	}
+	
+	/**
+	 * Returns a new stamp for marks, growing marks and position to the mesh size
+	 * @return stamp no node has in marks
+	 */
+	private int NextMark() {
+		int n = NodeCount();
+		
+		if ( marks.length < n ) {
+			int cap = Math.max(n, 2 * marks.length),
+				old = position.length;
+			marks = Arrays.copyOf(marks, cap);
+			position = Arrays.copyOf(position, cap);
+			Arrays.fill(position, old, cap, -1);
+		}
+		
+		if ( mark == Integer.MAX_VALUE ) {
+			Arrays.fill(marks, 0);
+			mark = 0;
+		}
 		
+		return ++mark;
 	}
 }
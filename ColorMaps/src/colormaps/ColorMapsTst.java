@@ -0,0 +1,619 @@
+package colormaps;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Test class for the project
+ */
+public class ColorMapsTst {
+
+	/**
+	 * Tests it all
+	 * @param args
+	 */
+	public static void main(String[] args) {
+
+		StrategiesTest();
+
+		ExactTest();
+
+		PortfolioTest();
+
+		PlanarityTest();
+
+		FiveColorTest();
+
+		ReductionTest();
+
+		LoaderTest();
+
+		IncrementalTest();
+
+		ImpossibleLinkTest();
+
+		CacheTest();
+
+		CacheStoreTest();
+
+		ParallelTest();
+
+		MinimizeTest();
+
+	}
+
+	/**
+	 * Solves random meshes with every strategy and checks the colorings
+	 */
+	private static void StrategiesTest() {
+
+		for ( ColorMaps.Strategy strategy : ColorMaps.Strategy.values() ) {
+			boolean valid = true;
+
+			for ( int seed = 1; seed <= 3 && valid; seed++ ) {
+				ColorMaps cm = new ColorMaps();
+				cm.LoadMesh(RandomMesh(80, 0.06, seed));
+				cm.SolveColorMaps(strategy);
+				valid = Valid(cm.GetIndexedMesh(), cm.GetColors(), cm.GetPalette());
+			}
+
+			System.out.printf("Strategy %s on random meshes -- %s\n", strategy, valid ? "OK" : "FAILED");
+		}
+	}
+
+	/**
+	 * Checks that the exact and the SAT solvers find no coloring of complete meshes with
+	 * a color too few and agree on random meshes
+	 */
+	private static void ExactTest() {
+
+		boolean same = true;
+		for ( int k = 1; k <= 6 && same; k++ ) {
+			IndexedMesh complete = CompleteMesh(k + 1);
+			same = new ExactSolver().Solve(complete, k) == null &&
+				   new SatColorSolver().Solve(complete, k) == null &&
+				   Valid(complete, new ExactSolver().Solve(complete, k + 1), k + 1) &&
+				   Valid(complete, new SatColorSolver().Solve(complete, k + 1), k + 1);
+		}
+		System.out.printf("Exact and SAT solvers on complete meshes -- %s\n", same ? "OK" : "FAILED");
+
+		int colorable = 0, total = 0;
+		same = true;
+		for ( int seed = 1; seed <= 20 && same; seed++ )
+			for ( int k = 3; k <= 5 && same; k++ ) {
+				IndexedMesh mesh = RandomMesh(30, 0.3, seed);
+				int[] exact = new ExactSolver().Solve(mesh, k),
+					  sat = new SatColorSolver().Solve(mesh, k);
+
+				same = (exact == null) == (sat == null) &&
+					   (exact == null || (Valid(mesh, exact, k) && Valid(mesh, sat, k)));
+				if ( exact != null )
+					colorable++;
+				total++;
+			}
+		System.out.printf("Exact and SAT solvers agree on %d random meshes, %d colorable -- %s\n",
+						  total, colorable, same ? "OK" : "FAILED");
+	}
+
+	/**
+	 * Races the portfolio on a mesh of many small components and on K5 with four colors.
+	 * The threads of the portfolio should be reused between the races
+	 */
+	private static void PortfolioTest() {
+
+		PortfolioSolver portfolio = new PortfolioSolver(4, 1);
+		IndexedMesh islands = RandomMesh(600, 0.004, 11);
+		int[] clr = new ComponentSolver(portfolio, 1).Solve(islands, 4);
+
+		int threads = 0;
+		for ( Thread t : Thread.getAllStackTraces().keySet() )
+			if ( t.getName().startsWith("colormaps-portfolio-") )
+				threads++;
+
+		boolean ok = Valid(islands, clr, 4) && threads <= 4 * portfolio.CreateSolvers(4).size() &&
+					 portfolio.Solve(CompleteMesh(5), 4) == null &&
+					 Valid(CompleteMesh(5), portfolio.Solve(CompleteMesh(5), 5), 5);
+
+		System.out.printf("Portfolio on %d components with %d threads -- %s\n",
+						  ComponentCount(islands), threads, ok ? "OK" : "FAILED");
+	}
+
+	/**
+	 * Checks the planarity test on Kuratowski meshes and grids
+	 */
+	private static void PlanarityTest() {
+
+		IndexedMesh.Builder k33 = new IndexedMesh.Builder();
+		for ( int i = 0; i < 6; i++ )
+			k33.AddNode("n" + i);
+		for ( int i = 0; i < 3; i++ )
+			for ( int j = 3; j < 6; j++ )
+				k33.AddLink(i, j);
+
+		boolean ok = !PlanarSolver.IsPlanar(CompleteMesh(5)) &&
+					 !PlanarSolver.IsPlanar(k33.Build()) &&
+					 PlanarSolver.IsPlanar(CompleteMesh(4));
+
+		for ( int size = 2; size <= 30 && ok; size += 7 ) {
+			IndexedMesh grid = GridMesh(size, false);
+			ok = PlanarSolver.IsPlanar(grid) && Valid(grid, new PlanarSolver().Solve(grid, 4), 4);
+		}
+
+		// diagonals both ways make K5 minors
+		ok = ok && !PlanarSolver.IsPlanar(GridMesh(4, true));
+
+		System.out.printf("Planarity of K5, K3,3, K4 and grids -- %s\n", ok ? "OK" : "FAILED");
+	}
+
+	/**
+	 * Colors planar meshes by the five colors reduction alone. The icosahedron has no
+	 * node of degree four or less, so it goes through the contraction of neighbours
+	 */
+	private static void FiveColorTest() {
+
+		IndexedMesh.Builder ico = new IndexedMesh.Builder();
+		for ( int id = 0; id < 12; id++ )
+			ico.AddNode("i" + id);
+		for ( int j = 0; j < 5; j++ ) {
+			int up = 1 + j, down = 6 + j;
+			ico.AddLink(0, up);
+			ico.AddLink(up, 1 + (j + 1) % 5);
+			ico.AddLink(up, down);
+			ico.AddLink(up, 6 + (j + 1) % 5);
+			ico.AddLink(down, 6 + (j + 1) % 5);
+			ico.AddLink(down, 11);
+		}
+
+		// grid cut into triangles by one diagonal in every cell
+		int size = 20;
+		IndexedMesh.Builder triangles = new IndexedMesh.Builder();
+		for ( int id = 0; id < size * size; id++ )
+			triangles.AddNode("t" + id);
+		for ( int y = 0; y < size; y++ )
+			for ( int x = 0; x < size; x++ ) {
+				int id = y * size + x;
+				if ( x + 1 < size )
+					triangles.AddLink(id, id + 1);
+				if ( y + 1 < size )
+					triangles.AddLink(id, id + size);
+				if ( x + 1 < size && y + 1 < size )
+					triangles.AddLink(id, id + size + 1);
+			}
+
+		IndexedMesh[] meshes = { ico.Build(), triangles.Build(), CompleteMesh(4), GridMesh(15, false) };
+		boolean ok = true;
+		for ( IndexedMesh mesh : meshes )
+			ok = ok && PlanarSolver.IsPlanar(mesh) && Valid(mesh, PlanarSolver.FiveColor(mesh), 5);
+
+		ok = ok && Valid(meshes[0], new PlanarSolver(0).Solve(meshes[0], 5), 5) &&
+			 new PlanarSolver(0).Solve(meshes[0], 4) == null;
+
+		System.out.printf("Five colors of planar meshes -- %s\n", ok ? "OK" : "FAILED");
+	}
+
+	/**
+	 * Colors meshes of many components and of easy nodes hanging on a hard core
+	 * by the reducing and the component solvers
+	 */
+	private static void ReductionTest() {
+
+		boolean valid = true;
+		for ( int seed = 1; seed <= 5 && valid; seed++ ) {
+			IndexedMesh sparse = RandomMesh(300, 0.004, seed);
+			valid = Valid(sparse, new ComponentSolver(new DSaturSolver()).Solve(sparse, 4), 4) &&
+					Valid(sparse, new ReducingSolver(new DSaturSolver()).Solve(sparse, 4), 4) &&
+					Valid(sparse, new ComponentSolver(new ReducingSolver(new ExactSolver())).Solve(sparse, 3), 3);
+		}
+
+		// a wheel with a tail of triangles needs the core solved and the rest put back
+		IndexedMesh.Builder builder = new IndexedMesh.Builder();
+		for ( int i = 0; i < 40; i++ )
+			builder.AddNode("n" + i);
+		for ( int i = 1; i <= 6; i++ ) {
+			builder.AddLink(0, i);
+			builder.AddLink(i, i % 6 + 1);
+		}
+		for ( int i = 7; i < 40; i++ ) {
+			builder.AddLink(i, i - 1);
+			builder.AddLink(i, i - 2);
+		}
+		IndexedMesh wheel = builder.Build();
+		valid = valid && Valid(wheel, new ReducingSolver(new ExactSolver()).Solve(wheel, 3), 3);
+
+		System.out.printf("Reducing and component solvers -- %s\n", valid ? "OK" : "FAILED");
+	}
+
+	/**
+	 * Loads a DIMACS file and an edge list of the same mesh
+	 */
+	private static void LoaderTest() {
+
+		try {
+			File dimacs = File.createTempFile("mesh", ".col");
+			dimacs.deleteOnExit();
+			try ( PrintWriter out = new PrintWriter(dimacs) ) {
+				out.println("c pentagon with a center");
+				out.println("p edge 6 10");
+				for ( int i = 1; i <= 5; i++ ) {
+					out.printf("e %d %d\n", i, i % 5 + 1);
+					out.printf("e %d 6\n", i);
+				}
+				out.println("e 1 2");
+			}
+
+			File edges = File.createTempFile("mesh", ".txt");
+			edges.deleteOnExit();
+			try ( PrintWriter out = new PrintWriter(edges) ) {
+				out.println("# pentagon with a center");
+				for ( int i = 1; i <= 5; i++ ) {
+					out.printf("%d\t%d\n", i * 1000, (i % 5 + 1) * 1000);
+					out.printf("%d,6000\n", i * 1000);
+				}
+				out.println("7000 7000");
+				out.println("2000000000 7000");
+			}
+
+			// the links count of the problem line can't be trusted
+			File hostile = File.createTempFile("mesh", ".col");
+			hostile.deleteOnExit();
+			try ( PrintWriter out = new PrintWriter(hostile) ) {
+				out.println("p edge 3 2147483647");
+				out.println("e 1 2");
+				out.println("e 2 3");
+			}
+
+			IndexedMesh d = MeshLoader.LoadDimacs(dimacs),
+						e = MeshLoader.LoadEdgeList(edges),
+						h = MeshLoader.LoadDimacs(hostile);
+
+			boolean ok = d.GetNodeCount() == 6 && d.GetLinkCount() == 10 &&
+						 d.AreLinked(d.GetId("1"), d.GetId("2")) && d.AreLinked(d.GetId("3"), d.GetId("6")) &&
+						 !d.AreLinked(d.GetId("1"), d.GetId("3")) &&
+						 e.GetNodeCount() == 8 && e.GetLinkCount() == 11 &&
+						 e.AreLinked(e.GetId("1000"), e.GetId("2000")) && e.AreLinked(e.GetId("3000"), e.GetId("6000")) &&
+						 !e.AreLinked(e.GetId("1000"), e.GetId("3000")) && e.AreLinked(e.GetId("7000"), e.GetId("2000000000")) &&
+						 h.GetNodeCount() == 3 && h.GetLinkCount() == 2 &&
+						 ColorCache.Fingerprint(d) != ColorCache.Fingerprint(e);
+
+			System.out.printf("DIMACS and edge list loaders -- %s\n", ok ? "OK" : "FAILED");
+		}
+		catch ( IOException e ) {
+			System.out.println("Exception fired: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Links nodes of the same color and removes nodes of a solved mesh, the coloring
+	 * should stay valid after every change
+	 */
+	private static void IncrementalTest() {
+
+		ColorMaps cm = new ColorMaps();
+		cm.SetPalette(4);
+		cm.LoadMesh(GridMesh(10, false));
+		cm.SolveColorMaps();
+
+		Random random = new Random(1);
+		boolean valid = true;
+		for ( int step = 0; step < 200 && valid; step++ ) {
+			IndexedMesh mesh = cm.GetIndexedMesh();
+			int id1 = random.nextInt(mesh.GetNodeCount()),
+				id2 = random.nextInt(mesh.GetNodeCount());
+			String name1 = mesh.GetName(id1),
+				   name2 = mesh.GetName(id2);
+
+			if ( step % 10 == 9 )
+				cm.RemoveNode(name1);
+			else if ( id1 != id2 && cm.GetColorMap().get(name1).equals(cm.GetColorMap().get(name2)) )
+				cm.AddLink(name1, name2);
+			else
+				continue;
+
+			valid = Valid(cm.GetIndexedMesh(), cm.GetColors(), cm.GetPalette());
+		}
+
+		// colors by names follow colors by ids
+		IndexedMesh mesh = cm.GetIndexedMesh();
+		for ( int id = 0; id < mesh.GetNodeCount() && valid; id++ )
+			valid = cm.GetColorMap().get(mesh.GetName(id)) == cm.GetColors()[id];
+		valid = valid && cm.GetColorMap().size() == mesh.GetNodeCount();
+
+		// nothing changes for missing nodes and known links
+		cm.RemoveNode("missing");
+		cm.AddLink(mesh.GetName(0), mesh.GetName(mesh.GetTargets()[0]));
+		cm.RemoveLink("missing", mesh.GetName(0));
+		valid = valid && cm.GetIndexedMesh() == mesh;
+
+		// new nodes are colored and linked in place
+		for ( int i = 0; i < 20 && valid; i++ ) {
+			cm.AddNode("new" + i);
+			cm.AddLink("new" + i, mesh.GetName(i));
+			if ( i > 0 )
+				cm.AddLink("new" + i, "new" + (i - 1));
+			valid = Valid(cm.GetIndexedMesh(), cm.GetColors(), cm.GetPalette());
+		}
+
+		// changes of the object mesh are taken by the next operation
+		cm.GetMesh().LinkTwoNodes("new0", "new2");
+		cm.AddNode("last");
+		valid = valid && cm.GetIndexedMesh().AreLinked(cm.GetIndexedMesh().GetId("new0"), cm.GetIndexedMesh().GetId("new2")) &&
+				cm.GetColorMap().get("last") != null;
+
+		System.out.printf("Incremental links and removals on a %d nodes mesh -- %s\n",
+						  cm.GetIndexedMesh().GetNodeCount(), valid ? "OK" : "FAILED");
+	}
+
+	/**
+	 * Links the two nodes of the same color in a diamond with three colors. The mesh
+	 * turns into K4 which has no such coloring, so the link should be dropped again
+	 */
+	private static void ImpossibleLinkTest() {
+
+		ColorMaps cm = new ColorMaps();
+		cm.SetPalette(3);
+		cm.LoadMesh(new String[] {"a", "b", "c", "d"},
+					Arrays.asList(new String[][] {{"a", "b"}, {"a", "c"}, {"b", "c"}, {"b", "d"}, {"c", "d"}}));
+		cm.SolveColorMaps(ColorMaps.Strategy.GREEDY);
+
+		boolean thrown = false;
+		try {
+			cm.AddLink("a", "d");
+		}
+		catch ( RuntimeException e ) {
+			thrown = true;
+		}
+
+		IndexedMesh mesh = cm.GetIndexedMesh();
+		boolean ok = thrown && mesh.GetLinkCount() == 5 && !mesh.AreLinked(mesh.GetId("a"), mesh.GetId("d")) &&
+					 Valid(mesh, cm.GetColors(), 3);
+
+		System.out.printf("Link with no coloring is dropped -- %s\n", ok ? "OK" : "FAILED");
+	}
+
+	/**
+	 * Solves a mesh through the cache and looks up a copy with permuted nodes
+	 */
+	private static void CacheTest() {
+
+		IndexedMesh mesh = RandomMesh(60, 0.1, 7);
+		ColorCache cache = new ColorCache(16, null);
+		int[] clr = new DSaturSolver().Solve(mesh, 8);
+		cache.Put(mesh, clr);
+
+		int n = mesh.GetNodeCount();
+		List<Integer> perm = new ArrayList<Integer>();
+		for ( int id = 0; id < n; id++ )
+			perm.add(id);
+		Collections.shuffle(perm, new Random(3));
+
+		IndexedMesh.Builder builder = new IndexedMesh.Builder();
+		for ( int id = 0; id < n; id++ )
+			builder.AddNode("p" + id);
+		for ( int id = 0; id < n; id++ )
+			for ( int k = mesh.GetOffsets()[id]; k < mesh.GetOffsets()[id + 1]; k++ )
+				builder.AddLink(perm.get(id), perm.get(mesh.GetTargets()[k]));
+		IndexedMesh permuted = builder.Build();
+
+		int max = 0;
+		for ( int c : clr )
+			max = Math.max(max, c);
+
+		int[] hit = cache.Get(permuted, max);
+		boolean ok = ColorCache.Fingerprint(mesh) == ColorCache.Fingerprint(permuted) &&
+					 Valid(permuted, hit, max) && cache.GetHits() == 1 &&
+					 cache.Get(RandomMesh(60, 0.1, 8), 8) == null && cache.GetMisses() == 1;
+
+		System.out.printf("Cache hit on a permuted mesh -- %s\n", ok ? "OK" : "FAILED");
+	}
+
+	/**
+	 * Stores colorings in a directory and reads them with another cache.
+	 * A broken cache file should be ignored and written anew
+	 */
+	private static void CacheStoreTest() {
+
+		File dir = null;
+		try {
+			dir = File.createTempFile("cache", "");
+			dir.delete();
+			dir.mkdir();
+
+			IndexedMesh mesh = RandomMesh(50, 0.1, 11);
+			int[] clr = new DSaturSolver().Solve(mesh, 8);
+			new ColorCache(16, dir).Put(mesh, clr);
+
+			ColorCache other = new ColorCache(16, dir);
+			boolean ok = Valid(mesh, other.Get(mesh, 8), 8) && other.GetHits() == 1;
+			System.out.printf("Cache read from its directory -- %s\n", ok ? "OK" : "FAILED");
+
+			// huge sizes and links out of the mesh
+			int[][] broken = { { 0x434D4343, Integer.MAX_VALUE },
+							   { 0x434D4343, 1, Integer.MAX_VALUE, 2 },
+							   { 0x434D4343, 1, 2, 2, 0, 1, 2, 1, 5, 1, 2 } };
+			File file = new File(dir, String.format("%016x.cmc", ColorCache.Fingerprint(mesh)));
+			for ( int[] data : broken ) {
+				try ( DataOutputStream out = new DataOutputStream(new FileOutputStream(file)) ) {
+					for ( int x : data )
+						out.writeInt(x);
+				}
+				ColorCache cache = new ColorCache(16, dir);
+				ok = ok && cache.Get(mesh, 8) == null;
+				cache.Put(mesh, clr);
+				ok = ok && Valid(mesh, new ColorCache(16, dir).Get(mesh, 8), 8);
+			}
+			System.out.printf("Broken cache files are ignored -- %s\n", ok ? "OK" : "FAILED");
+		}
+		catch ( IOException | RuntimeException e ) {
+			System.out.printf("Cache directory test -- FAILED: %s\n", e);
+		}
+		finally {
+			if ( dir != null ) {
+				File[] files = dir.listFiles();
+				if ( files != null )
+					for ( File f : files )
+						f.delete();
+				dir.delete();
+			}
+		}
+	}
+
+	/**
+	 * Colors random meshes by Jones-Plassmann in pools of different sizes.
+	 * The same seed should give the same coloring whatever the threads do
+	 */
+	private static void ParallelTest() {
+
+		ForkJoinPool single = new ForkJoinPool(1),
+					 several = new ForkJoinPool(4);
+		try {
+			boolean ok = true;
+			for ( int seed = 1; seed <= 3 && ok; seed++ ) {
+				IndexedMesh mesh = RandomMesh(3000, 0.004, seed);
+				int[] clr = new JonesPlassmannSolver(seed).Solve(mesh, mesh.GetNodeCount());
+
+				ok = Valid(mesh, clr, mesh.GetNodeCount()) &&
+					 Arrays.equals(clr, new JonesPlassmannSolver(seed).Solve(mesh, mesh.GetNodeCount())) &&
+					 Arrays.equals(clr, new JonesPlassmannSolver(seed, single).Solve(mesh, mesh.GetNodeCount())) &&
+					 Arrays.equals(clr, new JonesPlassmannSolver(seed, several).Solve(mesh, mesh.GetNodeCount()));
+			}
+			System.out.printf("Jones-Plassmann is the same for a seed -- %s\n", ok ? "OK" : "FAILED");
+		}
+		finally {
+			single.shutdown();
+			several.shutdown();
+		}
+	}
+
+	/**
+	 * Minimizes colors by TabuCol: never more than DSatur needs and the chromatic
+	 * number of grids, even cycles and odd wheels
+	 */
+	private static void MinimizeTest() {
+
+		boolean ok = true;
+		for ( int seed = 1; seed <= 5 && ok; seed++ ) {
+			IndexedMesh mesh = RandomMesh(60, 0.15, seed);
+			int[] clr = new TabuColSolver(seed).Minimize(mesh);
+
+			ok = Valid(mesh, clr, Count(new DSaturSolver().Solve(mesh, mesh.GetNodeCount())));
+		}
+
+		IndexedMesh grid = GridMesh(12, false);
+		ok = ok && Valid(grid, new TabuColSolver(1).Minimize(grid), 2);
+
+		for ( int n = 5; n <= 9 && ok; n++ ) {
+			IndexedMesh.Builder wheel = new IndexedMesh.Builder();
+			wheel.AddNode("hub");
+			for ( int id = 1; id <= n; id++ )
+				wheel.AddNode("r" + id);
+			for ( int id = 1; id <= n; id++ ) {
+				wheel.AddLink(0, id);
+				wheel.AddLink(id, id % n + 1);
+			}
+
+			IndexedMesh mesh = wheel.Build();
+			int[] clr = new TabuColSolver(n).Minimize(mesh);
+			ok = Valid(mesh, clr, n % 2 == 0 ? 3 : 4) && Count(clr) == (n % 2 == 0 ? 3 : 4);
+		}
+
+		System.out.printf("TabuCol minimization -- %s\n", ok ? "OK" : "FAILED");
+	}
+
+	/**
+	 * Checks that linked nodes have different colors in 1..colors
+	 * @return true if the coloring is valid
+	 */
+	private static boolean Valid(IndexedMesh mesh, int[] clr, int colors) {
+		if ( clr == null || clr.length != mesh.GetNodeCount() )
+			return false;
+
+		int[] offsets = mesh.GetOffsets(), targets = mesh.GetTargets();
+		for ( int id = 0; id < clr.length; id++ ) {
+			if ( clr[id] < 1 || clr[id] > colors )
+				return false;
+			for ( int k = offsets[id]; k < offsets[id + 1]; k++ )
+				if ( clr[targets[k]] == clr[id] )
+					return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the number of colors used, 0 for no coloring
+	 */
+	private static int Count(int[] clr) {
+		int colors = 0;
+
+		if ( clr != null )
+			for ( int c : clr )
+				colors = Math.max(colors, c);
+
+		return colors;
+	}
+
+	private static int ComponentCount(IndexedMesh mesh) {
+		int count = 0;
+		for ( int c : ComponentSolver.FindComponents(mesh) )
+			count = Math.max(count, c + 1);
+
+		return count;
+	}
+
+	/**
+	 * Makes a random mesh with every link present with the probability
+	 */
+	private static IndexedMesh RandomMesh(int n, double p, long seed) {
+		Random random = new Random(seed);
+		IndexedMesh.Builder builder = new IndexedMesh.Builder();
+
+		for ( int id = 0; id < n; id++ )
+			builder.AddNode("v" + id);
+		for ( int id1 = 0; id1 < n; id1++ )
+			for ( int id2 = id1 + 1; id2 < n; id2++ )
+				if ( random.nextDouble() < p )
+					builder.AddLink(id1, id2);
+
+		return builder.Build();
+	}
+
+	private static IndexedMesh CompleteMesh(int n) {
+		IndexedMesh.Builder builder = new IndexedMesh.Builder();
+
+		for ( int id = 0; id < n; id++ )
+			builder.AddNode("k" + id);
+		for ( int id1 = 0; id1 < n; id1++ )
+			for ( int id2 = id1 + 1; id2 < n; id2++ )
+				builder.AddLink(id1, id2);
+
+		return builder.Build();
+	}
+
+	/**
+	 * Makes a square grid
+	 * @param size -- nodes on a side
+	 * @param diagonals -- true to link both diagonals of every square
+	 */
+	private static IndexedMesh GridMesh(int size, boolean diagonals) {
+		IndexedMesh.Builder builder = new IndexedMesh.Builder();
+
+		for ( int y = 0; y < size; y++ )
+			for ( int x = 0; x < size; x++ )
+				builder.AddNode(x + ":" + y);
+		for ( int y = 0; y < size; y++ )
+			for ( int x = 0; x < size; x++ ) {
+				int id = y * size + x;
+				if ( x + 1 < size )
+					builder.AddLink(id, id + 1);
+				if ( y + 1 < size )
+					builder.AddLink(id, id + size);
+				if ( diagonals && x + 1 < size && y + 1 < size ) {
+					builder.AddLink(id, id + size + 1);
+					builder.AddLink(id + 1, id + size);
+				}
+			}
+
+		return builder.Build();
+	}
+}
@@ -0,0 +1,18 @@
+package colormaps;
+
+/**
+ * Colors nodes of an indexed mesh so that linked nodes have different colors.
+ * Long running solvers check the interrupted flag of their thread and give up when it's set
+ * @author Dober
+ *
+ */
+public interface ColorSolver {
+
+	/**
+	 * Colors the mesh
+	 * @param mesh -- mesh to color
+	 * @param colors -- number of available colors
+	 * @return color by node id in 1..colors or null if the solver couldn't find a coloring
+	 */
+	int[] Solve(IndexedMesh mesh, int colors);
+}
@@ -0,0 +1,209 @@
+package colormaps;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Colors connected components of the mesh on their own threads.
+ * Components are found by union-find over the links, every one of them becomes a mesh of
+ * its own and the solver colors them in parallel, the largest first. Their colorings are
+ * independent, so they are put together as they are. A component without a coloring makes
+ * the whole mesh fail and the rest are interrupted.
+ * The same solver colors several components at once, so it shouldn't keep state between calls.
+ * A solver running threads of its own, as the portfolio does, should get a single component thread.
+ * @author Dober
+ *
+ */
+public class ComponentSolver implements ColorSolver {
+
+	private ColorSolver solver;
+	private int threads;
+
+	/**
+	 * Creates a solver running a component on every processor
+	 * @param solver -- solver of the components
+	 */
+	public ComponentSolver(ColorSolver solver) {
+		this(solver, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a solver
+	 * @param solver -- solver of the components
+	 * @param threads -- number of components solved at once
+	 */
+	public ComponentSolver(ColorSolver solver, int threads) {
+		this.solver = solver;
+		this.threads = threads;
+	}
+
+	@Override
+	public int[] Solve(IndexedMesh mesh, final int colors) {
+
+		int n = mesh.GetNodeCount();
+		int[] offsets = mesh.GetOffsets(),
+			  targets = mesh.GetTargets();
+		int[] component = FindComponents(mesh);
+
+		int count = 0;
+		for ( int c : component )
+			count = Math.max(count, c + 1);
+
+		// a single component needs no splitting
+		if ( count <= 1 )
+			return solver.Solve(mesh, colors);
+
+		// node ids of every component and their ids in its mesh
+		int[] first = new int[count + 1];
+		for ( int c : component )
+			first[c + 1]++;
+		for ( int c = 0; c < count; c++ )
+			first[c + 1] += first[c];
+		int[] fill = Arrays.copyOf(first, count),
+			  members = new int[n],
+			  local = new int[n];
+		for ( int id = 0; id < n; id++ ) {
+			local[id] = fill[component[id]] - first[component[id]];
+			members[fill[component[id]]++] = id;
+		}
+
+		int[] clr = new int[n];
+		List<Integer> large = new ArrayList<Integer>();
+		for ( int c = 0; c < count; c++ ) {
+			int size = first[c + 1] - first[c];
+
+			// small components take distinct colors
+			if ( size <= colors )
+				for ( int i = first[c]; i < first[c + 1]; i++ )
+					clr[members[i]] = i - first[c] + 1;
+			else
+				large.add(c);
+		}
+
+		// larger components start first, so a hard one doesn't finish alone at the end
+		final int[] sizes = new int[count];
+		for ( int c = 0; c < count; c++ )
+			sizes[c] = first[c + 1] - first[c];
+		Collections.sort(large, new Comparator<Integer>() {
+			public int compare(Integer c1, Integer c2) {
+				return sizes[c2] - sizes[c1];
+			}
+		});
+
+		if ( large.isEmpty() )
+			return clr;
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, large.size())), new ThreadFactory() {
+			private int counter = 0;
+
+			public synchronized Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "colormaps-component-" + counter++);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		CompletionService<int[]> done = new ExecutorCompletionService<int[]>(pool);
+
+		Map<Future<int[]>, Integer> running = new HashMap<Future<int[]>, Integer>();
+		for ( int c : large ) {
+			IndexedMesh.Builder builder = new IndexedMesh.Builder();
+			for ( int i = first[c]; i < first[c + 1]; i++ )
+				builder.AddNode(mesh.GetName(members[i]));
+			for ( int i = first[c]; i < first[c + 1]; i++ ) {
+				int id = members[i];
+				for ( int k = offsets[id]; k < offsets[id + 1]; k++ )
+					if ( id < targets[k] )
+						builder.AddLink(local[id], local[targets[k]]);
+			}
+
+			final IndexedMesh part = builder.Build();
+			running.put(done.submit(new Callable<int[]>() {
+				public int[] call() {
+					return solver.Solve(part, colors);
+				}
+			}), c);
+		}
+
+		try {
+			for ( int i = 0; i < large.size(); i++ ) {
+				Future<int[]> result = done.take();
+				int[] res = result.get();
+				if ( res == null )
+					return null;
+
+				int c = running.get(result);
+				for ( int j = first[c]; j < first[c + 1]; j++ )
+					clr[members[j]] = res[j - first[c]];
+			}
+
+			return clr;
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Component solving interrupted", e);
+		}
+		catch ( ExecutionException e ) {
+			throw new RuntimeException("Component solver failed: " + e.getCause().getMessage(), e.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Finds connected components by union-find
+	 * @param mesh -- mesh to split
+	 * @return component number by node id, numbered from 0 in the order of their first nodes
+	 */
+	public static int[] FindComponents(IndexedMesh mesh) {
+		int n = mesh.GetNodeCount();
+		int[] offsets = mesh.GetOffsets(),
+			  targets = mesh.GetTargets();
+		int[] parent = new int[n], size = new int[n];
+
+		for ( int id = 0; id < n; id++ ) {
+			parent[id] = id;
+			size[id] = 1;
+		}
+
+		for ( int id = 0; id < n; id++ )
+			for ( int k = offsets[id]; k < offsets[id + 1]; k++ ) {
+				int a = Find(parent, id), b = Find(parent, targets[k]);
+				if ( a == b )
+					continue;
+
+				// the smaller tree goes under the larger one
+				if ( size[a] < size[b] ) {
+					int t = a;
+					a = b;
+					b = t;
+				}
+				parent[b] = a;
+				size[a] += size[b];
+			}
+
+		int[] component = new int[n];
+		int count = 0;
+		Arrays.fill(size, -1);					// reused as the number of a root's component
+		for ( int id = 0; id < n; id++ ) {
+			int root = Find(parent, id);
+			if ( size[root] < 0 )
+				size[root] = count++;
+			component[id] = size[root];
+		}
+
+		return component;
+	}
+
+	/**
+	 * Finds the root of the node halving the path to it
+	 */
+	private static int Find(int[] parent, int id) {
+		while ( parent[id] != id ) {
+			parent[id] = parent[parent[id]];
+			id = parent[id];
+		}
+
+		return id;
+	}
+}
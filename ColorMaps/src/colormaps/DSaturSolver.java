@@ -0,0 +1,114 @@
+package colormaps;
+
+import java.util.*;
+
+/**
+ * DSatur coloring: the next node to color is always one with the most different
+ * colors among its neighbours. Among equally saturated nodes the one which got its
+ * saturation last goes first, untouched nodes go in descending degree order.
+ * Uncolored nodes are kept in a bucket queue by saturation, so picking the next
+ * node and raising a neighbour saturation cost O(1) and the whole coloring
+ * takes O(nodes + links) besides the colors bit sets.
+ * @author Dober
+ *
+ */
+public class DSaturSolver implements ColorSolver {
+
+	@Override
+	public int[] Solve(IndexedMesh mesh, int colors) {
+		
+		int n = mesh.GetNodeCount();
+		int[] offsets = mesh.GetOffsets(),
+			  targets = mesh.GetTargets();
+		int words = (colors >> 6) + 1;
+		
+		long[] seen = new long[n * words];		// colors of neighbours by node, bit 0 is always set
+		int[] sat = new int[n];
+		int[] clr = new int[n];
+		
+		// bucket queue: doubly linked lists of uncolored nodes by saturation
+		int[] head = new int[colors + 1],
+			  next = new int[n],
+			  prev = new int[n];
+		Arrays.fill(head, -1);
+		
+		// nodes of higher degree come first within a bucket, they are inserted last
+		for ( int id : ByDegree(mesh) ) {
+			seen[id * words] = 1;
+			Push(head, next, prev, 0, id);
+		}
+		
+		int top = 0;
+		for ( int step = 0; step < n; step++ ) {
+			while ( head[top] < 0 )
+				top--;
+			
+			int v = head[top];
+			Remove(head, next, prev, top, v);
+			
+			int c = GreedySolver.FirstFree(seen, v * words, words);
+			if ( c > colors )
+				return null;
+			clr[v] = c;
+			
+			int word = c >> 6;
+			long bit = 1L << c;
+			for ( int k = offsets[v]; k < offsets[v + 1]; k++ ) {
+				int u = targets[k];
+				if ( clr[u] != 0 || (seen[u * words + word] & bit) != 0 )
+					continue;
+				
+				seen[u * words + word] |= bit;
+				Remove(head, next, prev, sat[u], u);
+				sat[u]++;
+				Push(head, next, prev, sat[u], u);
+				if ( sat[u] > top )
+					top = sat[u];
+			}
+		}
+		
+		return clr;
+	}
+	
+	/**
+	 * Sorts node ids by degree with counting sort
+	 * @param mesh -- mesh to sort nodes of
+	 * @return node ids in ascending degree order
+	 */
+	private static int[] ByDegree(IndexedMesh mesh) {
+		int n = mesh.GetNodeCount(),
+			maxDegree = 0;
+		
+		for ( int id = 0; id < n; id++ )
+			maxDegree = Math.max(maxDegree, mesh.GetDegree(id));
+		
+		int[] start = new int[maxDegree + 2];
+		for ( int id = 0; id < n; id++ )
+			start[mesh.GetDegree(id) + 1]++;
+		for ( int d = 0; d <= maxDegree; d++ )
+			start[d + 1] += start[d];
+		
+		int[] order = new int[n];
+		for ( int id = 0; id < n; id++ )
+			order[start[mesh.GetDegree(id)]++] = id;
+		
+		return order;
+	}
+	
+	private static void Push(int[] head, int[] next, int[] prev, int bucket, int id) {
+		next[id] = head[bucket];
+		prev[id] = -1;
+		if ( head[bucket] >= 0 )
+			prev[head[bucket]] = id;
+		head[bucket] = id;
+	}
+	
+	private static void Remove(int[] head, int[] next, int[] prev, int bucket, int id) {
+		if ( prev[id] >= 0 )
+			next[prev[id]] = next[id];
+		else
+			head[bucket] = next[id];
+		if ( next[id] >= 0 )
+			prev[next[id]] = prev[id];
+	}
+}
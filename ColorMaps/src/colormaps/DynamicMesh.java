@@ -0,0 +1,217 @@
+package colormaps;
+
+import java.util.*;
+
+/**
+ * Graph of nodes indexed by dense int ids which is changed in place.
+ * Every node keeps its neighbours in a row of its own with spare room, so a link
+ * is added or removed in the time of the node degree. A removed node gives its id
+ * to the last node, so ids stay 0..n-1 and match the ids of ToIndexedMesh.
+ * Rows aren't sorted. Every link is stored in both directions.
+ */
+class DynamicMesh {
+
+	private String[] names;
+	private Map<String, Integer> ids;
+	private int[][] rows;
+	private int[] degree;
+	private int count;
+	private int links;
+
+	/**
+	 * Copies the indexed mesh
+	 * @param mesh -- mesh to start from
+	 */
+	public DynamicMesh(IndexedMesh mesh) {
+		int n = mesh.GetNodeCount();
+		int[] offsets = mesh.GetOffsets(), targets = mesh.GetTargets();
+
+		names = new String[Math.max(n, 16)];
+		ids = new HashMap<String, Integer>(2 * n);
+		rows = new int[names.length][];
+		degree = new int[names.length];
+		for ( int id = 0; id < n; id++ ) {
+			names[id] = mesh.GetName(id);
+			ids.put(names[id], id);
+			degree[id] = offsets[id + 1] - offsets[id];
+			rows[id] = Arrays.copyOfRange(targets, offsets[id], offsets[id + 1] + Math.max(2, degree[id] / 2));
+		}
+		count = n;
+		links = mesh.GetLinkCount();
+	}
+
+	public int GetNodeCount() {
+		return count;
+	}
+
+	public int GetLinkCount() {
+		return links;
+	}
+
+	public String GetName(int id) {
+		return names[id];
+	}
+
+	/**
+	 * Returns id of the node
+	 * @param name -- node name
+	 * @return node id or -1 if there is no such node
+	 */
+	public int GetId(String name) {
+		Integer id = ids.get(name);
+
+		return id == null ? -1 : id;
+	}
+
+	public int GetDegree(int id) {
+		return degree[id];
+	}
+
+	/**
+	 * Returns neighbours of the node. Only the first GetDegree(id) of them are valid.
+	 * Shouldn't be modified and is replaced when the row grows
+	 * @param id -- node id
+	 * @return row of neighbour ids
+	 */
+	public int[] GetRow(int id) {
+		return rows[id];
+	}
+
+	public boolean AreLinked(int id1, int id2) {
+		if ( degree[id1] > degree[id2] )
+			return AreLinked(id2, id1);
+
+		return Find(id1, id2) >= 0;
+	}
+
+	/**
+	 * Adds a node without links
+	 * @param name -- node name, not in the mesh yet
+	 * @return id of the node
+	 */
+	public int AddNode(String name) {
+		if ( count == names.length ) {
+			int cap = 2 * names.length;
+			names = Arrays.copyOf(names, cap);
+			rows = Arrays.copyOf(rows, cap);
+			degree = Arrays.copyOf(degree, cap);
+		}
+
+		names[count] = name;
+		ids.put(name, count);
+		rows[count] = new int[2];
+		degree[count] = 0;
+
+		return count++;
+	}
+
+	/**
+	 * Links two nodes
+	 * @param id1 -- first node id
+	 * @param id2 -- second node id
+	 * @return false if the nodes are linked already
+	 */
+	public boolean AddLink(int id1, int id2) {
+
+		// Circullar links are not allowed
+		if ( id1 == id2 )
+			throw new RuntimeException("Circular link detected on Node " + names[id1]);
+
+		if ( AreLinked(id1, id2) )
+			return false;
+
+		Append(id1, id2);
+		Append(id2, id1);
+		links++;
+
+		return true;
+	}
+
+	/**
+	 * Removes the link between two nodes
+	 * @param id1 -- first node id
+	 * @param id2 -- second node id
+	 * @return false if the nodes weren't linked
+	 */
+	public boolean RemoveLink(int id1, int id2) {
+		int k = Find(id1, id2);
+		if ( k < 0 )
+			return false;
+
+		Delete(id1, k);
+		Delete(id2, Find(id2, id1));
+		links--;
+
+		return true;
+	}
+
+	/**
+	 * Removes the node with its links. The last node takes its id
+	 * @param id -- node id
+	 * @return former id of the node which has the id now, or id if it was the last one
+	 */
+	public int RemoveNode(int id) {
+		for ( int k = 0; k < degree[id]; k++ ) {
+			int nb = rows[id][k];
+			Delete(nb, Find(nb, id));
+		}
+		links -= degree[id];
+		ids.remove(names[id]);
+
+		int last = --count;
+		if ( last != id ) {
+			for ( int k = 0; k < degree[last]; k++ ) {
+				int nb = rows[last][k];
+				rows[nb][Find(nb, last)] = id;
+			}
+			names[id] = names[last];
+			rows[id] = rows[last];
+			degree[id] = degree[last];
+			ids.put(names[id], id);
+		}
+
+		names[last] = null;
+		rows[last] = null;
+		degree[last] = 0;
+
+		return last;
+	}
+
+	/**
+	 * Makes an indexed copy with the same ids
+	 * @return immutable indexed mesh
+	 */
+	public IndexedMesh ToIndexedMesh() {
+		IndexedMesh.Builder builder = new IndexedMesh.Builder(links);
+
+		for ( int id = 0; id < count; id++ )
+			builder.AddNode(names[id]);
+		for ( int id = 0; id < count; id++ )
+			for ( int k = 0; k < degree[id]; k++ )
+				if ( id < rows[id][k] )
+					builder.AddLink(id, rows[id][k]);
+
+		return builder.Build();
+	}
+
+	private int Find(int id, int target) {
+		int[] row = rows[id];
+
+		for ( int k = 0; k < degree[id]; k++ )
+			if ( row[k] == target )
+				return k;
+
+		return -1;
+	}
+
+	private void Append(int id, int target) {
+		if ( degree[id] == rows[id].length )
+			rows[id] = Arrays.copyOf(rows[id], 2 * rows[id].length);
+
+		rows[id][degree[id]++] = target;
+	}
+
+	private void Delete(int id, int k) {
+		rows[id][k] = rows[id][--degree[id]];
+	}
+}
@@ -0,0 +1,259 @@
+package colormaps;
+
+import java.util.*;
+
+/**
+ * Exact k-coloring by backtracking with forward checking and conflict-directed backjumping.
+ * Remaining colors of every node are kept as a bit mask. Coloring a node removes its color
+ * from uncolored neighbours, and a neighbour left without colors makes the choice fail at once.
+ * The node with the fewest remaining colors goes next, the one with more uncolored neighbours
+ * on a tie. A node out of colors jumps back straight to the latest node responsible for the conflict.
+ * Colors are interchangeable, so a node only tries colors already in use and one new color,
+ * and a greedily found clique is colored first: a clique larger than the palette is a quick no.
+ * Either finds a coloring or proves there is none, supports up to 63 colors.
+ * Gives up and returns null when its thread is interrupted or the step limit runs out.
+ * @author Dober
+ *
+ */
+public class ExactSolver implements ColorSolver {
+
+	public static final int MAX_COLORS = 63;
+
+	private long maxSteps;			// search steps before giving up, 0 for no limit
+
+	/**
+	 * Creates a solver searching until it finds a coloring or proves there is none
+	 */
+	public ExactSolver() {
+		this(0);
+	}
+
+	/**
+	 * Creates a solver giving up after a number of search steps
+	 * @param maxSteps -- steps limit, 0 for no limit
+	 */
+	public ExactSolver(long maxSteps) {
+		this.maxSteps = maxSteps;
+	}
+
+	@Override
+	public int[] Solve(IndexedMesh mesh, int colors) {
+
+		if ( colors < 1 || colors > MAX_COLORS )
+			throw new RuntimeException("Exact solver supports 1.." + MAX_COLORS + " colors, not " + colors);
+
+		int n = mesh.GetNodeCount();
+		int[] offsets = mesh.GetOffsets(),
+			  targets = mesh.GetTargets();
+
+		if ( n == 0 )
+			return new int[0];
+
+		int[] clique = FindClique(mesh);
+		if ( clique.length > colors )
+			return null;
+
+		int[] free = new int[n];			// uncolored neighbours of every node
+		for ( int id = 0; id < n; id++ )
+			free[id] = mesh.GetDegree(id);
+
+		long full = (1L << colors) - 1;
+		long[] domain = new long[n];
+		Arrays.fill(domain, full);
+
+		int[] depthOf = new int[n];			// depth the node is colored at or -1
+		int[] value = new int[n];			// color of the node, 0-based
+		Arrays.fill(depthOf, -1);
+
+		int[] order = new int[n];			// node colored at every depth
+		long[] tried = new long[n];			// colors tried at every depth
+		int[] maxUsed = new int[n];			// the highest color used above every depth
+		BitSet[] conflicts = new BitSet[n];	// depths the failure of every depth depends on
+		BitSet[] prunedBy = new BitSet[n];	// depths which removed colors of every node
+		for ( int i = 0; i < n; i++ ) {
+			conflicts[i] = new BitSet();
+			prunedBy[i] = new BitSet();
+		}
+
+		// removed colors trail: nodes pruned by every depth
+		int[] trail = new int[Math.max(16, offsets[n])];
+		int[] trailStart = new int[n + 1];
+		int trailTop = 0;
+
+		int depth = 0;
+		maxUsed[0] = -1;
+		Enter(0, clique[0], order, depthOf, tried, conflicts, free, mesh);
+		trailStart[0] = 0;
+
+		for ( long step = 1; ; step++ ) {
+			if ( (step & 4095) == 0 && (Thread.currentThread().isInterrupted() || (maxSteps > 0 && step > maxSteps)) )
+				return null;
+
+			int v = order[depth];
+			long limit = maxUsed[depth] + 2 >= colors ? full : (1L << (maxUsed[depth] + 2)) - 1;
+			long avail = domain[v] & ~tried[depth] & limit;
+
+			if ( avail != 0 ) {
+				int c = Long.numberOfTrailingZeros(avail);
+				long bit = 1L << c;
+				tried[depth] |= bit;
+				value[v] = c;
+
+				// forward checking
+				int wipeout = -1;
+				trailTop = trailStart[depth];
+				for ( int k = offsets[v]; k < offsets[v + 1]; k++ ) {
+					int u = targets[k];
+					if ( depthOf[u] >= 0 || (domain[u] & bit) == 0 )
+						continue;
+
+					domain[u] &= ~bit;
+					prunedBy[u].set(depth);
+					trail[trailTop++] = u;
+					if ( domain[u] == 0 ) {
+						wipeout = u;
+						break;
+					}
+				}
+
+				if ( wipeout >= 0 ) {
+					conflicts[depth].or(prunedBy[wipeout]);
+					Undo(depth, bit, trail, trailStart[depth], trailTop, domain, prunedBy);
+					continue;
+				}
+
+				if ( depth + 1 == n )
+					break;
+
+				trailStart[depth + 1] = trailTop;
+				maxUsed[depth + 1] = Math.max(maxUsed[depth], c);
+				depth++;
+				Enter(depth, depth < clique.length ? clique[depth] : SelectNode(domain, depthOf, free),
+					  order, depthOf, tried, conflicts, free, mesh);
+				continue;
+			}
+
+			// the node is out of colors, jump back to the latest depth in conflict
+			BitSet cause = conflicts[depth];
+			cause.or(prunedBy[v]);
+			cause.clear(depth, n);
+			if ( cause.isEmpty() )
+				return null;
+
+			int h = cause.length() - 1;
+			for ( int d = depth; d > h; d-- ) {
+				int node = order[d];
+				depthOf[node] = -1;
+				for ( int k = offsets[node]; k < offsets[node + 1]; k++ )
+					free[targets[k]]++;
+				if ( d < depth )
+					Undo(d, 1L << value[node], trail, trailStart[d], trailStart[d + 1], domain, prunedBy);
+			}
+
+			conflicts[h].or(cause);
+			conflicts[h].clear(h);
+			Undo(h, 1L << value[order[h]], trail, trailStart[h], trailStart[h + 1], domain, prunedBy);
+			depth = h;
+		}
+
+		int[] clr = new int[n];
+		for ( int id = 0; id < n; id++ )
+			clr[id] = value[id] + 1;
+
+		return clr;
+	}
+
+	/**
+	 * Starts coloring of the node at the depth
+	 */
+	private static void Enter(int depth, int node, int[] order, int[] depthOf, long[] tried, BitSet[] conflicts,
+							  int[] free, IndexedMesh mesh) {
+		order[depth] = node;
+		depthOf[node] = depth;
+		tried[depth] = 0;
+		conflicts[depth].clear();
+
+		int[] offsets = mesh.GetOffsets(), targets = mesh.GetTargets();
+		for ( int k = offsets[node]; k < offsets[node + 1]; k++ )
+			free[targets[k]]--;
+	}
+
+	/**
+	 * Gives back the color removed by the depth
+	 * @param depth -- depth which removed the color
+	 * @param bit -- removed color bit
+	 * @param trail -- removed colors trail
+	 * @param from -- first trail entry of the depth
+	 * @param to -- entry after the last one of the depth
+	 */
+	private static void Undo(int depth, long bit, int[] trail, int from, int to, long[] domain, BitSet[] prunedBy) {
+		for ( int i = from; i < to; i++ ) {
+			domain[trail[i]] |= bit;
+			prunedBy[trail[i]].clear(depth);
+		}
+	}
+
+	/**
+	 * Chooses an uncolored node with the fewest remaining colors, the most uncolored neighbours among them
+	 * @return node id
+	 */
+	private static int SelectNode(long[] domain, int[] depthOf, int[] free) {
+		int best = -1, bestSize = Integer.MAX_VALUE, bestDegree = -1;
+
+		for ( int id = 0; id < domain.length; id++ ) {
+			if ( depthOf[id] >= 0 )
+				continue;
+
+			int size = Long.bitCount(domain[id]),
+				degree = free[id];
+			if ( size < bestSize || (size == bestSize && degree > bestDegree) ) {
+				best = id;
+				bestSize = size;
+				bestDegree = degree;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Grows a clique greedily from the node of the highest degree
+	 * @return ids of the clique nodes, at least one
+	 */
+	static int[] FindClique(IndexedMesh mesh) {
+		int n = mesh.GetNodeCount();
+		int[] offsets = mesh.GetOffsets(), targets = mesh.GetTargets();
+
+		int start = 0;
+		for ( int id = 1; id < n; id++ )
+			if ( mesh.GetDegree(id) > mesh.GetDegree(start) )
+				start = id;
+
+		// candidates are the common neighbours of the clique, the one of the highest degree joins it
+		List<Integer> clique = new ArrayList<Integer>();
+		clique.add(start);
+		List<Integer> candidates = new ArrayList<Integer>();
+		for ( int k = offsets[start]; k < offsets[start + 1]; k++ )
+			candidates.add(targets[k]);
+
+		while ( !candidates.isEmpty() ) {
+			int next = candidates.get(0);
+			for ( int id : candidates )
+				if ( mesh.GetDegree(id) > mesh.GetDegree(next) )
+					next = id;
+
+			clique.add(next);
+			List<Integer> left = new ArrayList<Integer>();
+			for ( int id : candidates )
+				if ( id != next && mesh.AreLinked(id, next) )
+					left.add(id);
+			candidates = left;
+		}
+
+		int[] res = new int[clique.size()];
+		for ( int i = 0; i < res.length; i++ )
+			res[i] = clique.get(i);
+
+		return res;
+	}
+}
@@ -0,0 +1,91 @@
+package colormaps;
+
+import java.util.*;
+
+/**
+ * Colors nodes one by one with the first color not used by neighbours.
+ * Nodes go in id order or in a random order of the given seed
+ * @author Dober
+ *
+ */
+public class GreedySolver implements ColorSolver {
+
+	private Long seed;				// null for id order
+
+	public GreedySolver() {
+		seed = null;
+	}
+
+	/**
+	 * Creates a solver coloring nodes in a random order
+	 * @param seed -- seed of the order
+	 */
+	public GreedySolver(long seed) {
+		this.seed = seed;
+	}
+
+	@Override
+	public int[] Solve(IndexedMesh mesh, int colors) {
+		
+		int n = mesh.GetNodeCount();
+		int[] offsets = mesh.GetOffsets(),
+			  targets = mesh.GetTargets();
+		int words = (colors >> 6) + 1;
+		long[] used = new long[words];
+		int[] clr = new int[n];
+		
+		int[] order = new int[n];
+		for ( int i = 0; i < n; i++ )
+			order[i] = i;
+		if ( seed != null ) {
+			Random rnd = new Random(seed);
+			for ( int i = n - 1; i > 0; i-- ) {
+				int j = rnd.nextInt(i + 1), t = order[i];
+				order[i] = order[j];
+				order[j] = t;
+			}
+		}
+		
+		for ( int id : order ) {
+			// collect colors already in use by neighbours
+			Arrays.fill(used, 0);
+			used[0] = 1;
+			for ( int k = offsets[id]; k < offsets[id + 1]; k++ ) {
+				int c = clr[targets[k]];
+				used[c >> 6] |= 1L << c;
+			}
+			
+			int c = FirstFree(used);
+			if ( c > colors )
+				return null;
+			
+			clr[id] = c;
+		}
+		
+		return clr;
+	}
+	
+	/**
+	 * Returns the first color which bit isn't set
+	 * @param bits -- bit set of colors
+	 * @return color number, could be beyond the set
+	 */
+	static int FirstFree(long[] bits) {
+		return FirstFree(bits, 0, bits.length);
+	}
+	
+	/**
+	 * Returns the first color which bit isn't set in a part of the array
+	 * @param bits -- array of bit sets
+	 * @param from -- first word of the set
+	 * @param words -- number of words in the set
+	 * @return color number, could be beyond the set
+	 */
+	static int FirstFree(long[] bits, int from, int words) {
+		for ( int w = 0; w < words; w++ )
+			if ( bits[from + w] != -1L )
+				return (w << 6) + Long.numberOfTrailingZeros(~bits[from + w]);
+		
+		return words << 6;
+	}
+}
@@ -19,7 +19,7 @@ public class GrpColorMaps extends JLabel
 	final int circleSize = 40,
 			  space      = 60;
 	ColorMaps cmap;
-	Map<String, ColorMaps.Color> scmap;
+	Map<String, Integer> scmap;
 
 	Vector<String> states;
 	int activeStateID = -1;
@@ -62,10 +62,12 @@ public class GrpColorMaps extends JLabel
 		
 		// Draw links between the Nodes
 		int end1, end2;
-		for ( String state : states )
-			for ( Link link : cmap.GetMesh().GetNodeByName(state).GetLinks() ) {
+		IndexedMesh graph = cmap.GetIndexedMesh();
+		for ( String state : states ) {
+			int id = graph.GetId(state);
+			for ( int k = graph.GetOffsets()[id]; k < graph.GetOffsets()[id + 1]; k++ ) {
 				end1 = states.indexOf(state);
-				end2 = states.indexOf(link.GetOppositeNode(state).GetName());
+				end2 = states.indexOf(graph.GetName(graph.GetTargets()[k]));
 				if ( end1 == activeStateID ) {
 					g2.setStroke(accentedStroke);
 					g.setColor(GetColor(scmap.get(state), false));
@@ -79,6 +81,7 @@ public class GrpColorMaps extends JLabel
 						    end2 % 8 * (circleSize + space) + circleSize / 2,
 						    end2 / 8 * (circleSize + space) + circleSize / 2);
 			}
+		}
 		// Draw nodes
 		for ( String state : states ) {
 			g.setColor(Color.WHITE);
@@ -107,12 +110,13 @@ public class GrpColorMaps extends JLabel
 	}
 	
 	/**
-	 * Returns one of 6 predefined colors in bright or shaded mode
-	 * @param clr 		-- ColorMaps.Color code
+	 * Returns one of 6 predefined colors in bright or shaded mode, colors after
+	 * them get hues spread around the color wheel
+	 * @param clr 		-- color number from 1
 	 * @param shaded 	-- return shaded color if true, bright one if false
 	 * @return java.awt.Color
 	 */
-	private Color GetColor(ColorMaps.Color clr, boolean shaded) {
+	private Color GetColor(int clr, boolean shaded) {
 		
 		final int[][] colors = {
 								{255,   0,   0,},  // RED
@@ -122,21 +126,18 @@ public class GrpColorMaps extends JLabel
 								{255, 128,  64,},  // ORANGE
 								{128,  64,  64,},  // BROWN
 							   };
-		Color col;
 		int alpha = shaded ? 200 : 255;
 		
-		switch ( clr ) {
-			case COLOR1 : col = new Color(colors[0][0], colors[0][1], colors[0][2], alpha); break;
-			case COLOR2 : col = new Color(colors[1][0], colors[1][1], colors[1][2], alpha); break;
-			case COLOR3 : col = new Color(colors[2][0], colors[2][1], colors[2][2], alpha); break;
-			case COLOR4 : col = new Color(colors[3][0], colors[3][1], colors[3][2], alpha); break;
-			case COLOR5 : col = new Color(colors[4][0], colors[4][1], colors[4][2], alpha); break;
-			case COLOR6 : col = new Color(colors[5][0], colors[5][1], colors[5][2], alpha); break;
-			default: 
-				throw new RuntimeException("Invalid color code " + clr.toString());
-		}
+		if ( clr < 1 )
+			throw new RuntimeException("Invalid color code " + clr);
+		
+		if ( clr <= colors.length )
+			return new Color(colors[clr - 1][0], colors[clr - 1][1], colors[clr - 1][2], alpha);
+		
+		// golden ratio steps of the hue keep neighbouring numbers apart
+		Color col = Color.getHSBColor((float)((clr * 0.618033988749895) % 1.0), 0.8f, clr % 2 == 0 ? 0.6f : 0.9f);
 		
-		return col;
+		return new Color(col.getRed(), col.getGreen(), col.getBlue(), alpha);
 	}
 	
 	@Override
@@ -0,0 +1,249 @@
+package colormaps;
+
+import java.util.*;
+
+/**
+ * Immutable graph of nodes indexed by dense int ids.
+ * Node names are interned to ids 0..n-1 in the order they were added, links are
+ * kept in compressed sparse rows: neighbours of the node id are
+ * targets[offsets[id]] .. targets[offsets[id + 1] - 1], sorted and without duplicates.
+ * Every link is stored in both directions.
+ * @author Dober
+ *
+ */
+public class IndexedMesh {
+	private String[] names;
+	private Map<String, Integer> ids;
+	private int[] offsets;
+	private int[] targets;
+
+	// Setters and getters
+	//-------------------------------------------------------------------------
+	public int GetNodeCount() {
+		return names.length;
+	}
+
+	/**
+	 * Returns number of links, every link counted once
+	 * @return links count
+	 */
+	public int GetLinkCount() {
+		return targets.length / 2;
+	}
+
+	public String GetName(int id) {
+		return names[id];
+	}
+
+	/**
+	 * Returns id of the node
+	 * @param name -- node name
+	 * @return node id or -1 if there is no such node
+	 */
+	public int GetId(String name) {
+		Integer id = ids.get(name);
+
+		return id == null ? -1 : id;
+	}
+
+	public int GetDegree(int id) {
+		return offsets[id + 1] - offsets[id];
+	}
+
+	/**
+	 * Returns the row offsets. Shouldn't be modified
+	 * @return array of node count + 1 offsets into targets
+	 */
+	public int[] GetOffsets() {
+		return offsets;
+	}
+
+	/**
+	 * Returns neighbours of all nodes row by row. Shouldn't be modified
+	 * @return array of neighbour ids
+	 */
+	public int[] GetTargets() {
+		return targets;
+	}
+
+
+
+
+	// Constructors
+	//-------------------------------------------------------------------------
+	private IndexedMesh(String[] names, Map<String, Integer> ids, int[] offsets, int[] targets) {
+		this.names = names;
+		this.ids = ids;
+		this.offsets = offsets;
+		this.targets = targets;
+	}
+
+
+
+
+	// Functionality
+	//-------------------------------------------------------------------------
+
+	/**
+	 * Checks if two nodes are linked
+	 * @param id1 -- first node id
+	 * @param id2 -- second node id
+	 * @return true if there is a link between the nodes
+	 */
+	public boolean AreLinked(int id1, int id2) {
+		return Arrays.binarySearch(targets, offsets[id1], offsets[id1 + 1], id2) >= 0;
+	}
+
+	/**
+	 * Indexes the mesh
+	 * @param mesh -- mesh to index
+	 * @return indexed copy of the mesh
+	 */
+	public static IndexedMesh FromMesh(Mesh mesh) {
+		Builder builder = new Builder();
+
+		for ( Node node : mesh.GetNodes() )
+			builder.AddNode(node.GetName());
+
+		for ( Node node : mesh.GetNodes() )
+			for ( Link link : node.GetLinks() )
+				builder.AddLink(node.GetName(), link.GetOppositeNode(node).GetName());
+
+		return builder.Build();
+	}
+
+	/**
+	 * Creates an object mesh of the graph
+	 * @return a new mesh with the same nodes and links
+	 */
+	public Mesh ToMesh() {
+		Mesh mesh = new Mesh();
+
+		for ( String name : names )
+			mesh.AddNode(name);
+
+		for ( int id = 0; id < names.length; id++ )
+			for ( int k = offsets[id]; k < offsets[id + 1]; k++ )
+				if ( id < targets[k] )
+					mesh.LinkTwoNodes(names[id], names[targets[k]]);
+
+		return mesh;
+	}
+
+	/**
+	 * Collects nodes and links and builds the indexed mesh at once
+	 */
+	public static class Builder {
+		private List<String> names = new ArrayList<String>();
+		private Map<String, Integer> ids = new HashMap<String, Integer>();
+		private int[] ends;					// pairs of linked ids
+		private int linkCount = 0;
+		
+		public Builder() {
+			this(32);
+		}
+		
+		/**
+		 * Creates a builder with room for links
+		 * @param links -- expected number of links
+		 */
+		public Builder(int links) {
+			ends = new int[2 * Math.max(links, 32)];
+		}
+
+		/**
+		 * Adds new node. Doesn't allow duplication
+		 * @param name -- node name
+		 * @return id of the node
+		 */
+		public int AddNode(String name) {
+			Integer id = ids.get(name);
+
+			if ( id == null ) {
+				id = names.size();
+				ids.put(name, id);
+				names.add(name);
+			}
+
+			return id;
+		}
+
+		public int GetNodeCount() {
+			return names.size();
+		}
+
+		/**
+		 * Links two nodes by names. Links to unknown nodes are ignored
+		 * @param name1 -- name of the first node
+		 * @param name2 -- name of the second node
+		 */
+		public void AddLink(String name1, String name2) {
+			Integer
+				id1 = ids.get(name1),
+				id2 = ids.get(name2);
+
+			if ( id1 == null || id2 == null )
+				return;
+
+			AddLink(id1, id2);
+		}
+
+		/**
+		 * Links two nodes by ids. Duplicated links are dropped by Build
+		 * @param id1 -- id of the first node
+		 * @param id2 -- id of the second node
+		 */
+		public void AddLink(int id1, int id2) {
+
+			// Circullar links are not allowed
+			if ( id1 == id2 )
+				throw new RuntimeException("Circular link detected on Node " + names.get(id1));
+
+			if ( 2 * linkCount + 2 > ends.length )
+				ends = Arrays.copyOf(ends, ends.length * 2);
+
+			ends[2 * linkCount] = id1;
+			ends[2 * linkCount + 1] = id2;
+			linkCount++;
+		}
+
+		/**
+		 * Builds the indexed mesh
+		 * @return indexed mesh
+		 */
+		public IndexedMesh Build() {
+			int n = names.size();
+			int[] offsets = new int[n + 1];
+			int[] targets = new int[2 * linkCount];
+
+			// count degrees and place both directions of every link
+			for ( int i = 0; i < 2 * linkCount; i++ )
+				offsets[ends[i] + 1]++;
+			for ( int id = 0; id < n; id++ )
+				offsets[id + 1] += offsets[id];
+
+			int[] fill = Arrays.copyOf(offsets, n);
+			for ( int l = 0; l < linkCount; l++ ) {
+				int a = ends[2 * l], b = ends[2 * l + 1];
+				targets[fill[a]++] = b;
+				targets[fill[b]++] = a;
+			}
+
+			// sort rows and squeeze duplicates out
+			int pos = 0;
+			for ( int id = 0; id < n; id++ ) {
+				int from = offsets[id], to = offsets[id + 1];
+				Arrays.sort(targets, from, to);
+
+				offsets[id] = pos;
+				for ( int k = from; k < to; k++ )
+					if ( k == from || targets[k] != targets[k - 1] )
+						targets[pos++] = targets[k];
+			}
+			offsets[n] = pos;
+
+			return new IndexedMesh(names.toArray(new String[n]), new HashMap<String, Integer>(ids),
+								   offsets, Arrays.copyOf(targets, pos));
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package colormaps;
+
+/**
+ * Open addressing hash map from int keys to int values.
+ * Used for node numbers of loaded files, which could be sparse and large, where
+ * an array indexed by them or boxed HashMap entries would cost too much memory.
+ * Keys are never removed.
+ */
+class IntIntMap {
+
+	private int[] keys;
+	private int[] values;
+	private boolean[] used;
+	private int size;
+	private int mask;
+
+	public IntIntMap(int expected) {
+		int cap = 16;
+		while ( cap < expected * 2 )
+			cap <<= 1;
+
+		Allocate(cap);
+	}
+
+	public int Size() {
+		return size;
+	}
+
+	/**
+	 * Returns the key value
+	 * @param key -- key to look for
+	 * @param def -- value to return if there is no key
+	 * @return key value or def
+	 */
+	public int Get(int key, int def) {
+		int slot = Find(key);
+
+		return used[slot] ? values[slot] : def;
+	}
+
+	public void Put(int key, int value) {
+		int slot = Find(key);
+
+		if ( !used[slot] ) {
+			used[slot] = true;
+			keys[slot] = key;
+			if ( ++size * 2 > keys.length ) {
+				values[slot] = value;
+				Allocate(keys.length * 2);
+				return;
+			}
+		}
+		values[slot] = value;
+	}
+
+	private int Find(int key) {
+		int s = Hash(key);
+
+		while ( used[s] && keys[s] != key )
+			s = (s + 1) & mask;
+
+		return s;
+	}
+
+	private int Hash(int key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+
+		return (int)(h >>> 32) & mask;
+	}
+
+	private void Allocate(int cap) {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+
+		keys = new int[cap];
+		values = new int[cap];
+		used = new boolean[cap];
+		mask = cap - 1;
+		size = 0;
+
+		if ( oldKeys == null )
+			return;
+
+		for ( int s = 0; s < oldKeys.length; s++ )
+			if ( oldUsed[s] ) {
+				int slot = Find(oldKeys[s]);
+				used[slot] = true;
+				keys[slot] = oldKeys[s];
+				values[slot] = oldValues[s];
+				size++;
+			}
+	}
+}
@@ -0,0 +1,206 @@
+package colormaps;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Parallel Jones-Plassmann coloring.
+ * Every node gets a random priority. In a round all nodes having no uncolored neighbours
+ * of a higher priority are colored at once by fork-join tasks: they are local maxima, so
+ * none of them are linked and each takes the first color not used by its higher neighbours.
+ * Every node counts its uncolored higher neighbours, so a node colored in a round makes
+ * its lower neighbours reaching zero the next round and no round scans the whole mesh.
+ * A node color only depends on the priorities, so the result is the same for the same
+ * seed regardless of the number of threads.
+ * @author Dober
+ *
+ */
+public class JonesPlassmannSolver implements ColorSolver {
+
+	private static final int GRAIN = 1024;		// nodes processed by one task
+
+	private long seed;
+	private ForkJoinPool pool;
+
+	/**
+	 * Creates a solver running in the common fork-join pool
+	 * @param seed -- seed of node priorities
+	 */
+	public JonesPlassmannSolver(long seed) {
+		this(seed, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a solver
+	 * @param seed -- seed of node priorities
+	 * @param pool -- pool to run in
+	 */
+	public JonesPlassmannSolver(long seed, ForkJoinPool pool) {
+		this.seed = seed;
+		this.pool = pool;
+	}
+
+	@Override
+	public int[] Solve(IndexedMesh mesh, int colors) {
+
+		int n = mesh.GetNodeCount();
+		Job job = new Job();
+		job.seed = seed;
+		job.offsets = mesh.GetOffsets();
+		job.targets = mesh.GetTargets();
+		job.priority = new long[n];
+		job.waiting = new AtomicIntegerArray(n);
+		job.clr = new int[n];
+		job.next = new int[n];
+		job.nextSize = new AtomicInteger();
+		job.maxColor = new AtomicInteger();
+
+		pool.invoke(new Pass(job, Pass.PRIORITIES, 0, n));
+		pool.invoke(new Pass(job, Pass.COUNTS, 0, n));
+
+		int[] spare = new int[n];
+		while ( job.nextSize.get() > 0 ) {
+			int size = job.nextSize.get();
+
+			job.frontier = job.next;
+			job.next = spare;
+			job.nextSize.set(0);
+			pool.invoke(new Pass(job, Pass.ROUND, 0, size));
+			spare = job.frontier;
+		}
+
+		return job.maxColor.get() > colors ? null : job.clr;
+	}
+
+	/**
+	 * Mixes bits of the value, SplitMix64 finalizer
+	 */
+	static long Mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Coloring state shared by the tasks
+	 */
+	private static class Job {
+		long seed;
+		int[] offsets, targets;
+		long[] priority;
+		AtomicIntegerArray waiting;		// uncolored higher neighbours of every node
+		int[] clr;
+		int[] frontier, next;			// nodes to color in this round and the next one
+		AtomicInteger nextSize;
+		AtomicInteger maxColor;
+
+		/**
+		 * Checks if the first node goes before the second one
+		 */
+		boolean Higher(int id1, int id2) {
+			return priority[id1] > priority[id2] || (priority[id1] == priority[id2] && id1 > id2);
+		}
+
+		/**
+		 * Adds nodes to the next round at once, so tasks don't contend for every node
+		 * @param ids -- buffer of node ids
+		 * @param count -- number of nodes in the buffer
+		 */
+		void AddNext(int[] ids, int count) {
+			System.arraycopy(ids, 0, next, nextSize.getAndAdd(count), count);
+		}
+	}
+
+	/**
+	 * Pass over a range of nodes split into tasks
+	 */
+	private static class Pass extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		static final int PRIORITIES = 0,		// assign priorities
+						 COUNTS = 1,			// count higher neighbours, local maxima go to the first round
+						 ROUND = 2;				// color the round nodes
+
+		private final Job job;
+		private final int kind, from, to;
+
+		Pass(Job job, int kind, int from, int to) {
+			this.job = job;
+			this.kind = kind;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if ( to - from > GRAIN ) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new Pass(job, kind, from, mid), new Pass(job, kind, mid, to));
+				return;
+			}
+
+			int[] offsets = job.offsets, targets = job.targets;
+			int[] ready = new int[kind == PRIORITIES ? 0 : to - from];	// nodes for the next round
+			int count = 0;
+
+			switch ( kind ) {
+				case PRIORITIES :
+					for ( int id = from; id < to; id++ )
+						job.priority[id] = Mix(job.seed * 0x9E3779B97F4A7C15L + id);
+					break;
+
+				case COUNTS :
+					for ( int id = from; id < to; id++ ) {
+						int higher = 0;
+						for ( int k = offsets[id]; k < offsets[id + 1]; k++ )
+							if ( job.Higher(targets[k], id) )
+								higher++;
+						job.waiting.set(id, higher);
+						if ( higher == 0 )
+							ready[count++] = id;
+					}
+					job.AddNext(ready, count);
+					break;
+
+				case ROUND :
+					long[] used = new long[1];
+					int maxColor = 0;
+					for ( int i = from; i < to; i++ ) {
+						int id = job.frontier[i];
+
+						// higher neighbours are colored already
+						int words = ((offsets[id + 1] - offsets[id] + 1) >> 6) + 1;
+						if ( used.length < words )
+							used = new long[words];
+						Arrays.fill(used, 0, words, 0);
+						used[0] = 1;
+						for ( int k = offsets[id]; k < offsets[id + 1]; k++ ) {
+							int c = job.clr[targets[k]];
+							if ( c != 0 && c >> 6 < words )
+								used[c >> 6] |= 1L << c;
+						}
+						int c = GreedySolver.FirstFree(used, 0, words);
+						job.clr[id] = c;
+						maxColor = Math.max(maxColor, c);
+
+						for ( int k = offsets[id]; k < offsets[id + 1]; k++ ) {
+							int u = targets[k];
+							if ( job.Higher(id, u) && job.waiting.decrementAndGet(u) == 0 ) {
+								if ( count == ready.length )
+									ready = Arrays.copyOf(ready, 2 * count + 16);
+								ready[count++] = u;
+							}
+						}
+					}
+					job.AddNext(ready, count);
+
+					int seen = job.maxColor.get();
+					while ( maxColor > seen && !job.maxColor.compareAndSet(seen, maxColor) )
+						seen = job.maxColor.get();
+					break;
+			}
+		}
+	}
+}
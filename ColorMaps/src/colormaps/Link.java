@@ -90,10 +90,10 @@ public class Link {
 	 * @return Node opposed to given Name
 	 */
 	public Node GetOppositeNode(String nName) {
-		if ( nName != ends[0].GetName() && nName != ends[1].GetName() )
+		if ( !nName.equals(ends[0].GetName()) && !nName.equals(ends[1].GetName()) )
 			throw new RuntimeException("Node " + nName + " doesn't linked to link " + GetName());
 		
-		return nName == ends[0].GetName() ? ends[1] : ends[0];
+		return nName.equals(ends[0].GetName()) ? ends[1] : ends[0];
 	}
 	
 }
@@ -0,0 +1,150 @@
+package colormaps;
+
+import java.util.*;
+
+/**
+ * Min-conflicts local search. Starts from a DSatur coloring squeezed into the palette
+ * and repeatedly moves a random node in conflict to the color used by the fewest of
+ * its neighbours, now and then to a random color to get out of local minima.
+ * Numbers of neighbours of every node by colors are kept up to date, so a move costs
+ * the node degree. Can't prove there is no coloring: gives up after the steps limit
+ * or when its thread is interrupted
+ * @author Dober
+ *
+ */
+public class LocalSearchSolver implements ColorSolver {
+
+	private static final int NOISE = 2;		// percent of random moves
+
+	private long seed;
+	private long maxSteps;						// 0 for the default limit
+
+	/**
+	 * Creates a solver with the default steps limit
+	 * @param seed -- seed of the random moves
+	 */
+	public LocalSearchSolver(long seed) {
+		this(seed, 0);
+	}
+
+	/**
+	 * Creates a solver
+	 * @param seed -- seed of the random moves
+	 * @param maxSteps -- moves to make before giving up, 0 for 1000 per node
+	 */
+	public LocalSearchSolver(long seed, long maxSteps) {
+		this.seed = seed;
+		this.maxSteps = maxSteps;
+	}
+
+	@Override
+	public int[] Solve(IndexedMesh mesh, int colors) {
+
+		int n = mesh.GetNodeCount();
+		int[] offsets = mesh.GetOffsets(),
+			  targets = mesh.GetTargets();
+		Random rnd = new Random(seed);
+
+		if ( n == 0 )
+			return new int[0];
+
+		// start coloring, nodes beyond the palette get random colors
+		int maxDegree = 0;
+		for ( int id = 0; id < n; id++ )
+			maxDegree = Math.max(maxDegree, mesh.GetDegree(id));
+
+		int[] clr = new DSaturSolver().Solve(mesh, maxDegree + 1);
+		for ( int id = 0; id < n; id++ )
+			clr[id] = clr[id] <= colors ? clr[id] - 1 : rnd.nextInt(colors);
+
+		int[] counts = new int[n * colors];		// neighbours of every node by colors
+		for ( int id = 0; id < n; id++ )
+			for ( int k = offsets[id]; k < offsets[id + 1]; k++ )
+				counts[id * colors + clr[targets[k]]]++;
+
+		// nodes in conflict with an index of their positions
+		int[] conflicted = new int[n],
+			  position = new int[n];
+		int size = 0;
+		Arrays.fill(position, -1);
+		for ( int id = 0; id < n; id++ )
+			if ( counts[id * colors + clr[id]] > 0 ) {
+				position[id] = size;
+				conflicted[size++] = id;
+			}
+
+		// there is nowhere to move with a single color
+		if ( colors == 1 && size > 0 )
+			return null;
+
+		long limit = maxSteps > 0 ? maxSteps : 1000L * n;
+		int[] best = new int[colors];
+		for ( long step = 0; size > 0; step++ ) {
+			if ( step == limit )
+				return null;
+			if ( (step & 1023) == 0 && Thread.currentThread().isInterrupted() )
+				return null;
+
+			int v = conflicted[rnd.nextInt(size)],
+				from = clr[v],
+				to;
+
+			if ( rnd.nextInt(100) < NOISE ) {
+				to = rnd.nextInt(colors - 1);
+				if ( to >= from )
+					to++;
+			}
+			else {
+				// the least used color among neighbours, ties are broken randomly
+				int ties = 0, min = Integer.MAX_VALUE;
+				for ( int c = 0; c < colors; c++ ) {
+					if ( c == from )
+						continue;
+					int cnt = counts[v * colors + c];
+					if ( cnt < min ) {
+						min = cnt;
+						ties = 0;
+					}
+					if ( cnt == min )
+						best[ties++] = c;
+				}
+				to = best[rnd.nextInt(ties)];
+			}
+
+			clr[v] = to;
+			size = Update(v, counts[v * colors + to] > 0, conflicted, position, size);
+			for ( int k = offsets[v]; k < offsets[v + 1]; k++ ) {
+				int u = targets[k];
+				counts[u * colors + from]--;
+				counts[u * colors + to]++;
+				size = Update(u, counts[u * colors + clr[u]] > 0, conflicted, position, size);
+			}
+		}
+
+		for ( int id = 0; id < n; id++ )
+			clr[id]++;
+
+		return clr;
+	}
+
+	/**
+	 * Puts the node into the conflicted nodes or takes it out
+	 * @param id -- node id
+	 * @param conflict -- true if the node is in conflict
+	 * @return new number of conflicted nodes
+	 */
+	static int Update(int id, boolean conflict, int[] conflicted, int[] position, int size) {
+		if ( conflict && position[id] < 0 ) {
+			position[id] = size;
+			conflicted[size++] = id;
+		}
+		else if ( !conflict && position[id] >= 0 ) {
+			int last = conflicted[--size];
+			conflicted[position[id]] = last;
+			position[last] = position[id];
+			position[id] = -1;
+		}
+
+		return size;
+	}
+}
@@ -8,20 +8,16 @@ import java.util.*;
  *
  */
 public class Mesh {
-	List<Node> nodes;
+	Map<String, Node> index;		// node name -> node in the order of adding
 	
 	// Setter and Getters
 	//-------------------------------------------------------------------------
 	public Node[] GetNodes() {
-		return nodes.toArray(new Node[0]);
+		return index.values().toArray(new Node[0]);
 	}
 	
 	public Node GetNodeByName(String name) {
-		for ( Node node : nodes )
-			if ( node.GetName() == name )
-				return node;
-		
-		return null;
+		return index.get(name);
 	}
 	
 	
@@ -30,7 +26,7 @@ public class Mesh {
 	// Constructors
 	//-------------------------------------------------------------------------
 	public Mesh() {
-		nodes = new LinkedList<Node>();
+		index = new LinkedHashMap<String, Node>();
 	}
 	
 	
@@ -50,7 +46,7 @@ public class Mesh {
 		
 		if ( node == null ) {
 			node = new Node(name);
-			nodes.add(node);
+			index.put(name, node);
 		}	
 	}
 	
@@ -70,4 +66,34 @@ public class Mesh {
 		node1.LinkTo(node2);
 		
 	}
+	
+	/**
+	 * Removes the node with all its links
+	 * @param name -- Name of the node
+	 */
+	public void RemoveNode(String name) {
+		Node node = index.remove(name);
+		
+		if ( node == null )
+			return;
+		
+		for ( Link link : node.GetLinks() )
+			link.GetOppositeNode(node).UnregisterLink(link);
+	}
+	
+	/**
+	 * Removes the link between two nodes
+	 * @param name1 -- Name of the first node
+	 * @param name2 -- Name of the second node
+	 */
+	public void UnlinkTwoNodes(String name1, String name2) {
+		Node 
+			node1 = GetNodeByName(name1),
+			node2 = GetNodeByName(name2);
+		
+		if ( node1 == null || node2 == null )
+			return;
+		
+		node1.UnlinkFrom(node2);
+	}
 }
@@ -0,0 +1,233 @@
+package colormaps;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Loads indexed meshes from graph files: DIMACS .col files and plain edge lists.
+ * Files are mapped into memory and numbers are parsed straight from the bytes, so
+ * there is no String or line object per token and links go to the mesh builder as
+ * pairs of ids. Only node names are made, once per node. Duplicated links are merged
+ * and links of a node to itself are skipped.
+ * @author Dober
+ *
+ */
+public class MeshLoader {
+
+	private static final int CHUNK = 1 << 30;		// bytes mapped at once
+	private static final int RESERVED_LINKS = 1 << 20;	// links the builder makes room for at most, it grows beyond
+	private static final int MAX_NODES = 1 << 26;		// nodes of a DIMACS problem line at most
+	private static final int MIN_DIMACS_LINK = 6;		// bytes of the shortest link line "e 1 2\n"
+	private static final int MIN_EDGE_LINE = 12;		// bytes of a typical short edge list line
+
+	private MeshLoader() {
+	}
+
+	/**
+	 * Loads a DIMACS graph: "c" comment lines, the "p edge nodes links" problem line
+	 * and "e node1 node2" link lines. Nodes are numbered from 1 and named by their numbers.
+	 * The links count of the problem line is only a hint for the memory to reserve
+	 * @param file -- .col file
+	 * @return indexed mesh
+	 * @throws IOException
+	 */
+	public static IndexedMesh LoadDimacs(File file) throws IOException {
+		MappedInput in = new MappedInput(file);
+
+		try {
+			IndexedMesh.Builder builder = null;
+			int nodes = 0;
+
+			while ( in.SkipBlanks() ) {
+				int kind = in.Current();
+
+				if ( kind == 'e' ) {
+					if ( builder == null )
+						throw new IOException("Link before the problem line in line " + in.GetLine() + " of " + file);
+
+					in.Advance();
+					int id1 = in.ReadInt(), id2 = in.ReadInt();
+					if ( id1 < 1 || id1 > nodes || id2 < 1 || id2 > nodes )
+						throw new IOException("Invalid node in line " + in.GetLine() + " of " + file);
+					if ( id1 != id2 )
+						builder.AddLink(id1 - 1, id2 - 1);
+				}
+				else if ( kind == 'p' ) {
+					if ( builder != null )
+						throw new IOException("Second problem line in line " + in.GetLine() + " of " + file);
+
+					in.Advance();
+					in.SkipWord();
+					nodes = in.ReadInt();
+					if ( nodes > MAX_NODES )
+						throw new IOException("Too many nodes " + nodes + " in line " + in.GetLine() + " of " + file);
+
+					// the links count is only a hint, the file can't hold more links than its lines
+					long links = Math.min(in.ReadInt(), file.length() / MIN_DIMACS_LINK);
+					builder = new IndexedMesh.Builder((int)Math.min(links, RESERVED_LINKS));
+					for ( int id = 1; id <= nodes; id++ )
+						builder.AddNode(Integer.toString(id));
+				}
+				else if ( kind != 'c' && kind != 'n' )
+					throw new IOException("Unknown line type '" + (char)kind + "' in line " + in.GetLine() + " of " + file);
+
+				in.SkipLine();
+			}
+
+			if ( builder == null )
+				throw new IOException("No problem line in " + file);
+
+			return builder.Build();
+		}
+		finally {
+			in.Close();
+		}
+	}
+
+	/**
+	 * Loads an edge list: a link per line given by two non-negative node numbers
+	 * separated by spaces, tabs or a comma, the rest of the line is ignored.
+	 * Lines starting with '#' or '%' are comments. Nodes are named by their numbers
+	 * and get ids in the order they first appear. Numbers could be sparse, they are
+	 * mapped to ids by a hash map
+	 * @param file -- edge list file
+	 * @return indexed mesh
+	 * @throws IOException
+	 */
+	public static IndexedMesh LoadEdgeList(File file) throws IOException {
+		MappedInput in = new MappedInput(file);
+
+		try {
+			IndexedMesh.Builder builder = new IndexedMesh.Builder((int)Math.min(file.length() / MIN_EDGE_LINE, RESERVED_LINKS));
+			IntIntMap ids = new IntIntMap(1024);	// node number -> id
+
+			while ( in.SkipBlanks() ) {
+				if ( in.Current() != '#' && in.Current() != '%' ) {
+					int n1 = in.ReadInt(), n2 = in.ReadInt();
+
+					int id1 = ids.Get(n1, -1);
+					if ( id1 < 0 ) {
+						id1 = builder.AddNode(Integer.toString(n1));
+						ids.Put(n1, id1);
+					}
+					int id2 = ids.Get(n2, -1);
+					if ( id2 < 0 ) {
+						id2 = builder.AddNode(Integer.toString(n2));
+						ids.Put(n2, id2);
+					}
+					if ( id1 != id2 )
+						builder.AddLink(id1, id2);
+				}
+
+				in.SkipLine();
+			}
+
+			return builder.Build();
+		}
+		finally {
+			in.Close();
+		}
+	}
+
+	/**
+	 * Byte cursor over a file mapped by chunks
+	 */
+	private static class MappedInput {
+		private File file;
+		private FileChannel channel;
+		private long size, position;		// position of the chunk in the file
+		private MappedByteBuffer chunk;
+		private int current;				// current byte or -1 at the end
+		private long line;
+
+		MappedInput(File file) throws IOException {
+			this.file = file;
+			channel = new RandomAccessFile(file, "r").getChannel();
+			size = channel.size();
+			position = 0;
+			line = 1;
+			chunk = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, CHUNK));
+			Advance();
+		}
+
+		long GetLine() {
+			return line;
+		}
+
+		int Current() {
+			return current;
+		}
+
+		void Advance() throws IOException {
+			if ( !chunk.hasRemaining() ) {
+				position += chunk.capacity();
+				if ( position >= size ) {
+					current = -1;
+					return;
+				}
+				chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, CHUNK));
+			}
+
+			current = chunk.get() & 0xFF;
+		}
+
+		/**
+		 * Skips spaces and empty lines
+		 * @return false at the end of the file
+		 */
+		boolean SkipBlanks() throws IOException {
+			while ( current == ' ' || current == '\t' || current == '\r' || current == '\n' ) {
+				if ( current == '\n' )
+					line++;
+				Advance();
+			}
+
+			return current >= 0;
+		}
+
+		/**
+		 * Skips the rest of the line up to its end
+		 */
+		void SkipLine() throws IOException {
+			while ( current >= 0 && current != '\n' )
+				Advance();
+		}
+
+		/**
+		 * Skips separators and a word after them
+		 */
+		void SkipWord() throws IOException {
+			while ( current == ' ' || current == '\t' )
+				Advance();
+			while ( current > ' ' )
+				Advance();
+		}
+
+		/**
+		 * Reads a non-negative number after separators
+		 * @return number
+		 */
+		int ReadInt() throws IOException {
+			while ( current == ' ' || current == '\t' || current == ',' )
+				Advance();
+
+			if ( current < '0' || current > '9' )
+				throw new IOException("Number expected in line " + line + " of " + file);
+
+			long value = 0;
+			while ( current >= '0' && current <= '9' ) {
+				value = value * 10 + (current - '0');
+				if ( value > Integer.MAX_VALUE )
+					throw new IOException("Too large number in line " + line + " of " + file);
+				Advance();
+			}
+
+			return (int)value;
+		}
+
+		void Close() throws IOException {
+			channel.close();
+		}
+	}
+}
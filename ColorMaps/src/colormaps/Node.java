@@ -85,7 +85,29 @@ public class Node {
 		for ( Link link : links )
 			connections.add(link.GetOppositeNode(this));
 		
-		return (Node[])connections.toArray();
+		return connections.toArray(new Node[0]);
+	}
+	
+	/**
+	 * Removes the link to another node from both nodes
+	 * @param node -- linked node
+	 */
+	public void UnlinkFrom(Node node) {
+		
+		for ( Link link : links )
+			if ( link.AreNodesLinked(this, node) ) {
+				links.remove(link);
+				node.UnregisterLink(link);
+				return;
+			}
+	}
+	
+	/**
+	 * Unregisters link from the node
+	 * @param link -- link to unregister
+	 */
+	public void UnregisterLink(Link link) {
+		links.remove(link);
 	}
 	
 	/**
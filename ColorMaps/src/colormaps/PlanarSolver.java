@@ -0,0 +1,652 @@
+package colormaps;
+
+import java.util.*;
+
+/**
+ * Colors planar meshes such as maps with five colors in linear time and tries four.
+ * Every planar mesh has a node with at most five neighbours. A node with at most four is
+ * removed, a node with five is removed together with contracting two of its neighbours not
+ * linked to each other into one node, so they get the same color and leave a color free for
+ * it. Contraction keeps the mesh planar, so it goes on until nothing is left and the nodes
+ * get their colors back in the reverse order. Mesh which aren't planar could get stuck and
+ * have no coloring then.
+ * The four colors attempt puts nodes back one by one swapping Kempe chains to free a color
+ * for them, nodes it can't free are moved into the four colors by TabuCol. Both share
+ * the budget of steps.
+ * IsPlanar is the left-right planarity test of de Fraysseix and Rosenstiehl as given by Brandes.
+ * @author Dober
+ *
+ */
+public class PlanarSolver implements ColorSolver {
+
+	public static final long DEFAULT_BUDGET = 1000000;		// steps of the four colors attempt
+
+	private long budget;
+
+	/**
+	 * Creates a solver trying four colors with the default budget
+	 */
+	public PlanarSolver() {
+		this(DEFAULT_BUDGET);
+	}
+
+	/**
+	 * Creates a solver
+	 * @param budget -- Kempe chain nodes and TabuCol moves trying four colors, 0 for five colors only
+	 */
+	public PlanarSolver(long budget) {
+		this.budget = budget;
+	}
+
+	@Override
+	public int[] Solve(IndexedMesh mesh, int colors) {
+		if ( colors < 4 )
+			return null;
+
+		int[] clr = FiveColor(mesh);
+		if ( clr == null )
+			return null;
+
+		if ( budget > 0 ) {
+			int[] four = FourColor(mesh, budget);
+			if ( four != null )
+				return four;
+		}
+
+		return colors >= 5 ? clr : null;
+	}
+
+	/**
+	 * Colors the mesh with five colors by removing nodes of small degree and contracting
+	 * neighbours of nodes with five of them
+	 * @param mesh -- mesh to color
+	 * @return color by node id in 1..5 or null if the reduction got stuck, which doesn't happen to planar meshes
+	 */
+	public static int[] FiveColor(IndexedMesh mesh) {
+		int n = mesh.GetNodeCount();
+		int[] offsets = mesh.GetOffsets(),
+			  targets = mesh.GetTargets();
+
+		List<Set<Integer>> adjacent = new ArrayList<Set<Integer>>(n);
+		for ( int id = 0; id < n; id++ ) {
+			Set<Integer> nbs = new HashSet<Integer>();
+			for ( int k = offsets[id]; k < offsets[id + 1]; k++ )
+				nbs.add(targets[k]);
+			adjacent.add(nbs);
+		}
+
+		// nodes of degree up to four and of five, checked again when taken
+		Deque<Integer> low = new ArrayDeque<Integer>(),
+					   five = new ArrayDeque<Integer>();
+		for ( int id = 0; id < n; id++ )
+			Queue(id, adjacent.get(id).size(), low, five);
+
+		boolean[] removed = new boolean[n];
+		List<int[]> steps = new ArrayList<int[]>(n);		// {node, kept, contracted, neighbours...}
+		int left = n;
+
+		while ( left > 0 ) {
+			int v = -1, x = -1, y = -1;
+
+			while ( v < 0 && !low.isEmpty() ) {
+				int id = low.poll();
+				if ( !removed[id] && adjacent.get(id).size() <= 4 )
+					v = id;
+			}
+
+			while ( v < 0 && !five.isEmpty() ) {
+				int id = five.poll();
+				if ( removed[id] || adjacent.get(id).size() != 5 )
+					continue;
+
+				// two neighbours not linked, the one of the smaller degree goes into the other
+				Integer[] nbs = adjacent.get(id).toArray(new Integer[5]);
+				for ( int i = 0; i < 5; i++ )
+					for ( int j = i + 1; j < 5; j++ ) {
+						int a = nbs[i], b = nbs[j];
+						if ( adjacent.get(a).contains(b) )
+							continue;
+						if ( adjacent.get(a).size() < adjacent.get(b).size() ) {
+							int t = a;
+							a = b;
+							b = t;
+						}
+						if ( y < 0 || adjacent.get(b).size() < adjacent.get(y).size() ) {
+							x = a;
+							y = b;
+						}
+					}
+
+				if ( y >= 0 )
+					v = id;
+			}
+
+			if ( v < 0 )
+				return null;
+
+			Set<Integer> nbs = adjacent.get(v);
+			int[] step = new int[3 + nbs.size()];
+			step[0] = v;
+			step[1] = x;
+			step[2] = y;
+			int i = 3;
+			for ( int u : nbs ) {
+				step[i++] = u;
+				adjacent.get(u).remove(v);
+				Queue(u, adjacent.get(u).size(), low, five);
+			}
+			steps.add(step);
+			removed[v] = true;
+			left--;
+
+			if ( y >= 0 ) {
+				Set<Integer> kept = adjacent.get(x);
+				for ( int u : adjacent.get(y) ) {
+					Set<Integer> other = adjacent.get(u);
+					other.remove(y);
+					if ( other.add(x) )
+						kept.add(u);
+					else
+						Queue(u, other.size(), low, five);
+				}
+				adjacent.get(y).clear();
+				Queue(x, kept.size(), low, five);
+				removed[y] = true;
+				left--;
+			}
+		}
+
+		int[] clr = new int[n];
+		for ( int s = steps.size() - 1; s >= 0; s-- ) {
+			int[] step = steps.get(s);
+			if ( step[2] >= 0 )
+				clr[step[2]] = clr[step[1]];
+
+			int used = 0;
+			for ( int i = 3; i < step.length; i++ )
+				used |= 1 << clr[step[i]];
+			clr[step[0]] = Integer.numberOfTrailingZeros(~(used | 1));
+		}
+
+		return clr;
+	}
+
+	private static void Queue(int id, int degree, Deque<Integer> low, Deque<Integer> five) {
+		if ( degree <= 4 )
+			low.add(id);
+		else if ( degree == 5 )
+			five.add(id);
+	}
+
+	/**
+	 * Colors the mesh with four colors putting nodes back in the smallest last order, so every
+	 * node of a planar mesh meets at most five colored neighbours. If they use all four colors,
+	 * a Kempe chain is swapped: nodes of two colors connected to the neighbours of one of them.
+	 * It works unless the chain reaches a neighbour of the other color. Nodes no chain frees
+	 * get the fifth color and TabuCol moves them into the four
+	 * @param budget -- chain nodes and TabuCol moves at most
+	 * @return colors in 1..4 or null
+	 */
+	static int[] FourColor(IndexedMesh mesh, long budget) {
+		int n = mesh.GetNodeCount();
+		int[] offsets = mesh.GetOffsets(),
+			  targets = mesh.GetTargets();
+
+		int[] order = SmallestLast(mesh);
+		int[] clr = new int[n],
+			  stamp = new int[n],
+			  chain = new int[n];
+		int mark = 0, left = 0;
+
+		for ( int i = n - 1; i >= 0; i-- ) {
+			int v = order[i];
+
+			int used = 0;
+			for ( int k = offsets[v]; k < offsets[v + 1]; k++ )
+				used |= 1 << clr[targets[k]];
+			int free = Integer.numberOfTrailingZeros(~(used | 1));
+			if ( free <= 4 ) {
+				clr[v] = free;
+				continue;
+			}
+
+			// a chain of colors a and b from the neighbours of color a mustn't reach those of color b
+			for ( int a = 1; a <= 4 && clr[v] == 0; a++ )
+				for ( int b = 1; b <= 4 && clr[v] == 0; b++ ) {
+					if ( a == b )
+						continue;
+
+					mark++;
+					int size = 0;
+					for ( int k = offsets[v]; k < offsets[v + 1]; k++ )
+						if ( clr[targets[k]] == a && stamp[targets[k]] != mark ) {
+							stamp[targets[k]] = mark;
+							chain[size++] = targets[k];
+						}
+
+					for ( int j = 0; j < size; j++ ) {
+						if ( --budget < 0 )
+							return null;
+
+						int u = chain[j];
+						for ( int k = offsets[u]; k < offsets[u + 1]; k++ ) {
+							int w = targets[k];
+							if ( stamp[w] == mark || (clr[w] != a && clr[w] != b) )
+								continue;
+
+							stamp[w] = mark;
+							chain[size++] = w;
+						}
+					}
+
+					boolean blocked = false;
+					for ( int k = offsets[v]; k < offsets[v + 1] && !blocked; k++ )
+						if ( clr[targets[k]] == b && stamp[targets[k]] == mark )
+							blocked = true;
+					if ( blocked )
+						continue;
+
+					for ( int j = 0; j < size; j++ )
+						clr[chain[j]] = clr[chain[j]] == a ? b : a;
+					clr[v] = a;
+				}
+
+			if ( clr[v] == 0 ) {
+				clr[v] = 5;
+				left++;
+			}
+		}
+
+		if ( left == 0 )
+			return clr;
+		if ( budget == 0 )
+			return null;
+
+		return new TabuColSolver(1, budget).Solve(mesh, clr, 4);
+	}
+
+	/**
+	 * Orders nodes removing one of the smallest degree at a time, by buckets of degrees
+	 * @return node ids in the removal order
+	 */
+	static int[] SmallestLast(IndexedMesh mesh) {
+		int n = mesh.GetNodeCount();
+		int[] offsets = mesh.GetOffsets(),
+			  targets = mesh.GetTargets();
+
+		int[] degree = new int[n], head = new int[n + 1], next = new int[n], prev = new int[n];
+		Arrays.fill(head, -1);
+		for ( int id = 0; id < n; id++ ) {
+			degree[id] = mesh.GetDegree(id);
+			Link(id, degree[id], head, next, prev);
+		}
+
+		int[] order = new int[n];
+		boolean[] removed = new boolean[n];
+		int low = 0;
+		for ( int i = 0; i < n; i++ ) {
+			while ( head[low] < 0 )
+				low++;
+
+			int v = head[low];
+			Unlink(v, degree[v], head, next, prev);
+			removed[v] = true;
+			order[i] = v;
+
+			for ( int k = offsets[v]; k < offsets[v + 1]; k++ ) {
+				int u = targets[k];
+				if ( removed[u] )
+					continue;
+
+				Unlink(u, degree[u], head, next, prev);
+				Link(u, --degree[u], head, next, prev);
+			}
+			low = Math.max(0, low - 1);
+		}
+
+		return order;
+	}
+
+	private static void Link(int id, int d, int[] head, int[] next, int[] prev) {
+		next[id] = head[d];
+		prev[id] = -1;
+		if ( head[d] >= 0 )
+			prev[head[d]] = id;
+		head[d] = id;
+	}
+
+	private static void Unlink(int id, int d, int[] head, int[] next, int[] prev) {
+		if ( prev[id] >= 0 )
+			next[prev[id]] = next[id];
+		else
+			head[d] = next[id];
+		if ( next[id] >= 0 )
+			prev[next[id]] = prev[id];
+	}
+
+	/**
+	 * Checks if the mesh can be drawn on the plane without crossing links.
+	 * The left-right test orients the mesh by depth-first search and checks if the back links
+	 * can be put on the two sides of the tree links without conflicts
+	 * @param mesh -- mesh to check
+	 * @return true if the mesh is planar
+	 */
+	public static boolean IsPlanar(IndexedMesh mesh) {
+		int n = mesh.GetNodeCount();
+		if ( n > 2 && mesh.GetLinkCount() > 3 * n - 6 )
+			return false;
+
+		return new LeftRight(mesh).Test();
+	}
+
+	/**
+	 * State of the left-right planarity test. Links are oriented by the search, an oriented
+	 * link is given by its index in the targets of the mesh
+	 */
+	private static class LeftRight {
+		final int n;
+		final int[] offsets, targets, source;
+		final int[] height, parentEdge;
+		final boolean[] oriented;
+		final int[] lowpt, lowpt2, nesting;
+		final int[] ref, lowptEdge, stackBottom;
+
+		// stack of conflict pairs: low and high links of the left and right intervals, -1 for none
+		int[] leftLow, leftHigh, rightLow, rightHigh;
+		int top = 0;
+
+		LeftRight(IndexedMesh mesh) {
+			n = mesh.GetNodeCount();
+			offsets = mesh.GetOffsets();
+			targets = mesh.GetTargets();
+			int m = targets.length;
+
+			source = new int[m];
+			for ( int id = 0; id < n; id++ )
+				for ( int k = offsets[id]; k < offsets[id + 1]; k++ )
+					source[k] = id;
+
+			height = new int[n];
+			parentEdge = new int[n];
+			oriented = new boolean[m];
+			lowpt = new int[m];
+			lowpt2 = new int[m];
+			nesting = new int[m];
+			ref = new int[m];
+			lowptEdge = new int[m];
+			stackBottom = new int[m];
+			leftLow = new int[m + 1];
+			leftHigh = new int[m + 1];
+			rightLow = new int[m + 1];
+			rightHigh = new int[m + 1];
+
+			Arrays.fill(height, -1);
+			Arrays.fill(ref, -1);
+		}
+
+		boolean Test() {
+			int[] next = new int[n], path = new int[n];
+			List<Integer> roots = new ArrayList<Integer>();
+
+			// orientation: heights, lowpoints and nesting depths by depth-first search
+			for ( int root = 0; root < n; root++ ) {
+				if ( height[root] >= 0 )
+					continue;
+
+				roots.add(root);
+				height[root] = 0;
+				parentEdge[root] = -1;
+				int depth = 0;
+				path[depth++] = root;
+				next[root] = offsets[root];
+
+				while ( depth > 0 ) {
+					int v = path[depth - 1];
+					if ( next[v] == offsets[v + 1] ) {
+						depth--;
+						continue;
+					}
+
+					int k = next[v], w = targets[k];
+					if ( !oriented[k] ) {
+						if ( oriented[Reverse(k)] ) {
+							next[v]++;
+							continue;
+						}
+
+						oriented[k] = true;
+						lowpt[k] = lowpt2[k] = height[v];
+						if ( height[w] < 0 ) {
+							parentEdge[w] = k;
+							height[w] = height[v] + 1;
+							next[w] = offsets[w];
+							path[depth++] = w;
+							continue;
+						}
+						lowpt[k] = height[w];
+					}
+
+					// the link is done, its lowpoints go to the parent link
+					nesting[k] = 2 * lowpt[k] + (lowpt2[k] < height[v] ? 1 : 0);
+					int e = parentEdge[v];
+					if ( e >= 0 ) {
+						if ( lowpt[k] < lowpt[e] ) {
+							lowpt2[e] = Math.min(lowpt[e], lowpt2[k]);
+							lowpt[e] = lowpt[k];
+						}
+						else if ( lowpt[k] > lowpt[e] )
+							lowpt2[e] = Math.min(lowpt2[e], lowpt[k]);
+						else
+							lowpt2[e] = Math.min(lowpt2[e], lowpt2[k]);
+					}
+					next[v]++;
+				}
+			}
+
+			// oriented links of every node ordered by nesting depth, by counting sort
+			int[] count = new int[2 * n + 3];
+			for ( int k = 0; k < targets.length; k++ )
+				if ( oriented[k] )
+					count[nesting[k] + 1]++;
+			for ( int d = 0; d + 1 < count.length; d++ )
+				count[d + 1] += count[d];
+			int[] sorted = new int[targets.length];
+			int total = 0;
+			for ( int k = 0; k < targets.length; k++ )
+				if ( oriented[k] ) {
+					sorted[count[nesting[k]]++] = k;
+					total++;
+				}
+
+			int[] first = new int[n + 1];
+			for ( int i = 0; i < total; i++ )
+				first[source[sorted[i]] + 1]++;
+			for ( int id = 0; id < n; id++ )
+				first[id + 1] += first[id];
+			int[] fill = Arrays.copyOf(first, n),
+				  ordered = new int[total];
+			for ( int i = 0; i < total; i++ )
+				ordered[fill[source[sorted[i]]]++] = sorted[i];
+
+			// testing: the same search in the new order puts back links into conflict pairs
+			boolean[] started = new boolean[targets.length];
+			for ( int root : roots ) {
+				int depth = 0;
+				path[depth++] = root;
+				next[root] = first[root];
+
+				while ( depth > 0 ) {
+					int v = path[depth - 1], e = parentEdge[v];
+					boolean descended = false;
+
+					while ( next[v] < first[v + 1] ) {
+						int ei = ordered[next[v]], w = targets[ei];
+
+						if ( !started[ei] ) {
+							started[ei] = true;
+							stackBottom[ei] = top;
+							if ( ei == parentEdge[w] ) {
+								next[w] = first[w];
+								path[depth++] = w;
+								descended = true;
+								break;
+							}
+
+							lowptEdge[ei] = ei;
+							Push(-1, -1, ei, ei);
+						}
+
+						// return links of the link join those of the parent link
+						if ( lowpt[ei] < height[v] ) {
+							if ( next[v] == first[v] )
+								lowptEdge[e] = lowptEdge[ei];
+							else if ( !AddConstraints(ei, e) )
+								return false;
+						}
+						next[v]++;
+					}
+
+					if ( descended )
+						continue;
+
+					depth--;
+					if ( e >= 0 )
+						RemoveBackEdges(e);
+				}
+			}
+
+			return true;
+		}
+
+		/**
+		 * Finds the opposite direction of a link in the sorted targets of its target
+		 */
+		int Reverse(int k) {
+			int w = targets[k];
+			return Arrays.binarySearch(targets, offsets[w], offsets[w + 1], source[k]);
+		}
+
+		void Push(int ll, int lh, int rl, int rh) {
+			leftLow[top] = ll;
+			leftHigh[top] = lh;
+			rightLow[top] = rl;
+			rightHigh[top] = rh;
+			top++;
+		}
+
+		/**
+		 * Swaps the sides of the conflict pair on the top
+		 */
+		void Swap(int p) {
+			int t = leftLow[p];
+			leftLow[p] = rightLow[p];
+			rightLow[p] = t;
+			t = leftHigh[p];
+			leftHigh[p] = rightHigh[p];
+			rightHigh[p] = t;
+		}
+
+		boolean Conflicting(int low, int high, int b) {
+			return (low >= 0 || high >= 0) && lowpt[high] > lowpt[b];
+		}
+
+		int Lowest(int p) {
+			if ( leftLow[p] < 0 && leftHigh[p] < 0 )
+				return lowpt[rightLow[p]];
+			if ( rightLow[p] < 0 && rightHigh[p] < 0 )
+				return lowpt[leftLow[p]];
+
+			return Math.min(lowpt[leftLow[p]], lowpt[rightLow[p]]);
+		}
+
+		/**
+		 * Merges return links of the link with those of its siblings before it
+		 * @param ei -- link out of the node
+		 * @param e -- link into the node
+		 * @return false if they can't be put on two sides
+		 */
+		boolean AddConstraints(int ei, int e) {
+			int pll = -1, plh = -1, prl = -1, prh = -1;
+
+			// return links of ei go to the right interval
+			do {
+				int q = --top;
+				if ( leftLow[q] >= 0 || leftHigh[q] >= 0 )
+					Swap(q);
+				if ( leftLow[q] >= 0 || leftHigh[q] >= 0 )
+					return false;
+
+				if ( lowpt[rightLow[q]] > lowpt[e] ) {
+					if ( prl < 0 && prh < 0 )
+						prh = rightHigh[q];
+					else
+						ref[prl] = rightHigh[q];
+					prl = rightLow[q];
+				}
+				else
+					ref[rightLow[q]] = lowptEdge[e];
+			} while ( top != stackBottom[ei] );
+
+			// conflicting return links of the siblings go to the left interval
+			while ( top > 0 && (Conflicting(leftLow[top - 1], leftHigh[top - 1], ei) ||
+								Conflicting(rightLow[top - 1], rightHigh[top - 1], ei)) ) {
+				int q = --top;
+				if ( Conflicting(rightLow[q], rightHigh[q], ei) )
+					Swap(q);
+				if ( Conflicting(rightLow[q], rightHigh[q], ei) )
+					return false;
+
+				if ( prl >= 0 )
+					ref[prl] = rightHigh[q];
+				if ( rightLow[q] >= 0 )
+					prl = rightLow[q];
+
+				if ( pll < 0 && plh < 0 )
+					plh = leftHigh[q];
+				else
+					ref[pll] = leftHigh[q];
+				pll = leftLow[q];
+			}
+
+			if ( pll >= 0 || plh >= 0 || prl >= 0 || prh >= 0 )
+				Push(pll, plh, prl, prh);
+
+			return true;
+		}
+
+		/**
+		 * Drops back links ending at the parent node of the link when the search leaves it
+		 * @param e -- link into the node being left
+		 */
+		void RemoveBackEdges(int e) {
+			int u = source[e];
+
+			while ( top > 0 && Lowest(top - 1) == height[u] )
+				top--;
+
+			if ( top > 0 ) {
+				int p = top - 1;
+
+				while ( leftHigh[p] >= 0 && targets[leftHigh[p]] == u )
+					leftHigh[p] = ref[leftHigh[p]];
+				if ( leftHigh[p] < 0 && leftLow[p] >= 0 ) {
+					ref[leftLow[p]] = rightLow[p];
+					leftLow[p] = -1;
+				}
+
+				while ( rightHigh[p] >= 0 && targets[rightHigh[p]] == u )
+					rightHigh[p] = ref[rightHigh[p]];
+				if ( rightHigh[p] < 0 && rightLow[p] >= 0 ) {
+					ref[rightLow[p]] = leftLow[p];
+					rightLow[p] = -1;
+				}
+			}
+
+			// the highest return link of e
+			if ( lowpt[e] < height[u] && top > 0 ) {
+				int hl = leftHigh[top - 1], hr = rightHigh[top - 1];
+				ref[e] = hl >= 0 && (hr < 0 || lowpt[hl] > lowpt[hr]) ? hl : hr;
+			}
+		}
+	}
+}
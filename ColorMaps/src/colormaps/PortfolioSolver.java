@@ -0,0 +1,116 @@
+package colormaps;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Races several solvers on their own threads: DSatur, the exact search, the SAT solver,
+ * min-conflicts local search and greedy coloring with different seeds. Which of them is the
+ * fastest depends on the mesh, so the first coloring found wins and the other solvers are
+ * interrupted. The exact or SAT search proving there is no coloring stops the race as well.
+ * The solver keeps its threads between calls, as reducing and component solvers call it
+ * for every block and component. Idle threads end after a minute.
+ * @author Dober
+ *
+ */
+public class PortfolioSolver implements ColorSolver {
+
+	private static final long KEEP_ALIVE = 60;		// seconds an idle racing thread waits for the next race
+
+	private int threads;
+	private long seed;
+	private ExecutorService pool;
+
+	/**
+	 * Creates a portfolio running a solver on every processor
+	 */
+	public PortfolioSolver() {
+		this(Runtime.getRuntime().availableProcessors(), 1);
+	}
+
+	/**
+	 * Creates a portfolio
+	 * @param threads -- number of solvers to race, DSatur, exact, SAT and local search are always run
+	 * @param seed -- seed of the randomized solvers
+	 */
+	public PortfolioSolver(int threads, long seed) {
+		this.threads = threads;
+		this.seed = seed;
+
+		// grows when races run at once, losers still quitting don't hold up the next race
+		pool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE, TimeUnit.SECONDS,
+									  new SynchronousQueue<Runnable>(), new ThreadFactory() {
+			private int counter = 0;
+
+			public synchronized Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "colormaps-portfolio-" + counter++);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Creates solvers of the race
+	 * @param colors -- number of available colors, the exact search isn't run beyond its limit
+	 * @return list of solvers
+	 */
+	public List<ColorSolver> CreateSolvers(int colors) {
+		List<ColorSolver> solvers = new ArrayList<ColorSolver>();
+
+		if ( colors <= ExactSolver.MAX_COLORS )
+			solvers.add(new ExactSolver());
+		solvers.add(new SatColorSolver());
+		solvers.add(new DSaturSolver());
+		solvers.add(new TabuColSolver(seed));
+		solvers.add(new LocalSearchSolver(seed));
+		for ( int i = 1; solvers.size() < threads; i++ )
+			switch ( i % 3 ) {
+				case 0 : solvers.add(new TabuColSolver(seed + i)); break;
+				case 1 : solvers.add(new GreedySolver(seed + i)); break;
+				default : solvers.add(new LocalSearchSolver(seed + i));
+			}
+
+		return solvers;
+	}
+
+	@Override
+	public int[] Solve(final IndexedMesh mesh, final int colors) {
+
+		List<ColorSolver> solvers = CreateSolvers(colors);
+		CompletionService<int[]> race = new ExecutorCompletionService<int[]>(pool);
+
+		Map<Future<int[]>, ColorSolver> running = new HashMap<Future<int[]>, ColorSolver>();
+		for ( final ColorSolver solver : solvers )
+			running.put(race.submit(new Callable<int[]>() {
+				public int[] call() {
+					return solver.Solve(mesh, colors);
+				}
+			}), solver);
+
+		try {
+			for ( int i = 0; i < solvers.size(); i++ ) {
+				Future<int[]> done = race.take();
+				int[] clr = done.get();
+
+				ColorSolver solver = running.get(done);
+				if ( clr != null || solver instanceof ExactSolver || solver instanceof SatColorSolver )
+					return clr;
+			}
+
+			return null;
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Portfolio solving interrupted", e);
+		}
+		catch ( ExecutionException e ) {
+			throw new RuntimeException("Portfolio solver failed: " + e.getCause().getMessage(), e.getCause());
+		}
+		finally {
+			// the losers notice the interrupt and give up, their threads wait for the next race
+			for ( Future<int[]> f : running.keySet() )
+				f.cancel(true);
+		}
+	}
+}
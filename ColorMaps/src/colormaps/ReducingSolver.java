@@ -0,0 +1,382 @@
+package colormaps;
+
+import java.util.*;
+
+/**
+ * Shrinks the mesh before another solver colors it.
+ * Nodes with fewer neighbours than colors are peeled off one by one as Kempe did: whatever
+ * colors their neighbours get, one is left for them. Nodes whose neighbours are all neighbours
+ * of another node they aren't linked to are dominated and take the color of that node.
+ * Both are repeated while they remove something. The rest is split at articulation points into
+ * biconnected blocks colored one by one, and colors of the blocks are permuted to agree on
+ * the nodes they share. Removed nodes are put back in the reverse order.
+ * @author Dober
+ *
+ */
+public class ReducingSolver implements ColorSolver {
+
+	private static final int DOMINATION_WORK = 1024;	// links looked at to find a dominating node
+
+	private ColorSolver solver;
+
+	/**
+	 * Creates a reducing solver
+	 * @param solver -- solver of the blocks left after the reduction
+	 */
+	public ReducingSolver(ColorSolver solver) {
+		this.solver = solver;
+	}
+
+	@Override
+	public int[] Solve(IndexedMesh mesh, int colors) {
+		Reduction r = new Reduction(mesh, colors);
+		r.Reduce();
+
+		int[] clr = new int[mesh.GetNodeCount()];
+		if ( !SolveCore(mesh, r.removed, colors, clr) )
+			return null;
+
+		// the removed nodes back in the reverse order, their neighbours removed before them are uncolored yet
+		int[] offsets = mesh.GetOffsets(),
+			  targets = mesh.GetTargets();
+		long[] used = new long[1];
+		for ( int i = r.count - 1; i >= 0; i-- ) {
+			int id = r.order[i];
+
+			if ( r.dominator[id] >= 0 ) {
+				clr[id] = clr[r.dominator[id]];
+				continue;
+			}
+
+			int words = ((offsets[id + 1] - offsets[id] + 1) >> 6) + 1;
+			if ( used.length < words )
+				used = new long[words];
+			Arrays.fill(used, 0, words, 0);
+			used[0] = 1;
+			for ( int k = offsets[id]; k < offsets[id + 1]; k++ ) {
+				int c = clr[targets[k]];
+				if ( c >> 6 < words )
+					used[c >> 6] |= 1L << c;
+			}
+			clr[id] = GreedySolver.FirstFree(used, 0, words);
+		}
+
+		return clr;
+	}
+
+	/**
+	 * Colors the nodes left after the reduction block by block
+	 * @param removed -- removed nodes
+	 * @param clr -- colors of the left nodes are set here
+	 * @return false if a block has no coloring
+	 */
+	private boolean SolveCore(IndexedMesh mesh, boolean[] removed, int colors, int[] clr) {
+		int n = mesh.GetNodeCount();
+		int[] offsets = mesh.GetOffsets(),
+			  targets = mesh.GetTargets();
+
+		List<int[]> blocks = FindBlocks(mesh, removed);
+
+		// nothing to split, the solver gets the mesh as it is
+		if ( blocks.size() == 1 && blocks.get(0).length == n ) {
+			int[] res = solver.Solve(mesh, colors);
+			if ( res == null )
+				return false;
+
+			System.arraycopy(res, 0, clr, 0, n);
+			return true;
+		}
+
+		// color every block alone
+		int[] local = new int[n],
+			  stamp = new int[n];
+		List<int[]> blockColors = new ArrayList<int[]>(blocks.size());
+		for ( int b = 0; b < blocks.size(); b++ ) {
+			int[] block = blocks.get(b);
+
+			if ( block.length <= colors ) {
+				int[] res = new int[block.length];
+				for ( int i = 0; i < res.length; i++ )
+					res[i] = i + 1;
+				blockColors.add(res);
+				continue;
+			}
+
+			IndexedMesh.Builder builder = new IndexedMesh.Builder();
+			for ( int i = 0; i < block.length; i++ ) {
+				local[block[i]] = builder.AddNode(mesh.GetName(block[i]));
+				stamp[block[i]] = b + 1;
+			}
+			for ( int id : block )
+				for ( int k = offsets[id]; k < offsets[id + 1]; k++ )
+					if ( stamp[targets[k]] == b + 1 && id < targets[k] )
+						builder.AddLink(local[id], local[targets[k]]);
+
+			int[] res = solver.Solve(builder.Build(), colors);
+			if ( res == null )
+				return false;
+			blockColors.add(res);
+		}
+
+		// blocks of every node, only articulation points have more than one
+		int[] first = new int[n + 1];
+		for ( int[] block : blocks )
+			for ( int id : block )
+				first[id + 1]++;
+		for ( int id = 0; id < n; id++ )
+			first[id + 1] += first[id];
+		int[] fill = Arrays.copyOf(first, n),
+			  memberBlock = new int[first[n]],
+			  memberIndex = new int[first[n]];
+		for ( int b = 0; b < blocks.size(); b++ )
+			for ( int i = 0; i < blocks.get(b).length; i++ ) {
+				int id = blocks.get(b)[i];
+				memberBlock[fill[id]] = b;
+				memberIndex[fill[id]++] = i;
+			}
+
+		// walk the tree of blocks, a block met through a shared node swaps two colors to agree on it
+		boolean[] placed = new boolean[blocks.size()];
+		Deque<Integer> queue = new ArrayDeque<Integer>();
+		for ( int root = 0; root < blocks.size(); root++ ) {
+			if ( placed[root] )
+				continue;
+
+			int[] block = blocks.get(root), res = blockColors.get(root);
+			for ( int i = 0; i < block.length; i++ )
+				clr[block[i]] = res[i];
+			placed[root] = true;
+			queue.add(root);
+
+			while ( !queue.isEmpty() ) {
+				int b = queue.poll();
+
+				for ( int id : blocks.get(b) )
+					for ( int m = first[id]; m < first[id + 1]; m++ ) {
+						int c = memberBlock[m];
+						if ( placed[c] )
+							continue;
+
+						int[] cBlock = blocks.get(c), cRes = blockColors.get(c);
+						int from = cRes[memberIndex[m]], to = clr[id];
+						for ( int i = 0; i < cBlock.length; i++ )
+							clr[cBlock[i]] = cRes[i] == from ? to : cRes[i] == to ? from : cRes[i];
+						placed[c] = true;
+						queue.add(c);
+					}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Finds biconnected blocks of the nodes left by Hopcroft-Tarjan search without recursion.
+	 * A node linked to nothing makes a block of its own
+	 * @param removed -- nodes to skip
+	 * @return node ids of every block
+	 */
+	static List<int[]> FindBlocks(IndexedMesh mesh, boolean[] removed) {
+		int n = mesh.GetNodeCount();
+		int[] offsets = mesh.GetOffsets(),
+			  targets = mesh.GetTargets();
+
+		List<int[]> blocks = new ArrayList<int[]>();
+		int[] disc = new int[n], low = new int[n], parent = new int[n], next = new int[n];
+		int[] path = new int[n];
+		int[] edges = new int[2 * Math.max(mesh.GetLinkCount(), 1)];	// stack of links as pairs
+		int[] stamp = new int[n];
+		int time = 0, edgeTop = 0;
+
+		for ( int root = 0; root < n; root++ ) {
+			if ( removed[root] || disc[root] != 0 )
+				continue;
+
+			disc[root] = low[root] = ++time;
+			parent[root] = -1;
+			next[root] = offsets[root];
+			int top = 0;
+			path[top++] = root;
+			boolean linked = false;
+
+			while ( top > 0 ) {
+				int v = path[top - 1];
+
+				if ( next[v] < offsets[v + 1] ) {
+					int w = targets[next[v]++];
+					if ( removed[w] )
+						continue;
+
+					linked = true;
+					if ( disc[w] == 0 ) {
+						disc[w] = low[w] = ++time;
+						parent[w] = v;
+						next[w] = offsets[w];
+						path[top++] = w;
+						edges[edgeTop++] = v;
+						edges[edgeTop++] = w;
+					}
+					else if ( w != parent[v] && disc[w] < disc[v] ) {
+						low[v] = Math.min(low[v], disc[w]);
+						edges[edgeTop++] = v;
+						edges[edgeTop++] = w;
+					}
+					continue;
+				}
+
+				top--;
+				int p = parent[v];
+				if ( p < 0 )
+					continue;
+
+				low[p] = Math.min(low[p], low[v]);
+				if ( low[v] < disc[p] )
+					continue;
+
+				// p separates the links above v from the rest
+				int mark = blocks.size() + 1, size = 0;
+				int[] block = new int[8];
+				int a, b;
+				do {
+					b = edges[--edgeTop];
+					a = edges[--edgeTop];
+					for ( int e = 0; e < 2; e++ ) {
+						int id = e == 0 ? a : b;
+						if ( stamp[id] != mark ) {
+							stamp[id] = mark;
+							if ( size == block.length )
+								block = Arrays.copyOf(block, 2 * size);
+							block[size++] = id;
+						}
+					}
+				} while ( a != p || b != v );
+				blocks.add(Arrays.copyOf(block, size));
+			}
+
+			if ( !linked )
+				blocks.add(new int[] { root });
+		}
+
+		return blocks;
+	}
+
+	/**
+	 * Peeling and domination state
+	 */
+	private static class Reduction {
+		final IndexedMesh mesh;
+		final int colors;
+		final int[] offsets, targets;
+		final boolean[] removed;
+		final int[] degree;				// neighbours left
+		final int[] order;				// removed nodes in the removal order
+		final int[] dominator;			// node giving the color to a dominated node, -1 for peeled ones
+		final int[] mark;
+		int count = 0;
+		int[] queue;					// nodes whose degree fell below colors
+		int queueSize = 0;
+
+		Reduction(IndexedMesh mesh, int colors) {
+			int n = mesh.GetNodeCount();
+
+			this.mesh = mesh;
+			this.colors = colors;
+			offsets = mesh.GetOffsets();
+			targets = mesh.GetTargets();
+			removed = new boolean[n];
+			degree = new int[n];
+			order = new int[n];
+			dominator = new int[n];
+			mark = new int[n];
+			queue = new int[n];
+			Arrays.fill(dominator, -1);
+			Arrays.fill(mark, -1);
+
+			for ( int id = 0; id < n; id++ ) {
+				degree[id] = mesh.GetDegree(id);
+				if ( degree[id] < colors )
+					queue[queueSize++] = id;
+			}
+		}
+
+		void Reduce() {
+			boolean reduced = true;
+
+			while ( reduced ) {
+				while ( queueSize > 0 ) {
+					int id = queue[--queueSize];
+					if ( !removed[id] )
+						Remove(id, -1);
+				}
+
+				reduced = false;
+				for ( int id = 0; id < mesh.GetNodeCount(); id++ ) {
+					if ( removed[id] )
+						continue;
+
+					int v = FindDominator(id);
+					if ( v >= 0 ) {
+						Remove(id, v);
+						reduced = true;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Removes the node and queues neighbours it makes easy to peel
+		 */
+		void Remove(int id, int by) {
+			removed[id] = true;
+			dominator[id] = by;
+			order[count++] = id;
+
+			for ( int k = offsets[id]; k < offsets[id + 1]; k++ ) {
+				int u = targets[k];
+				if ( !removed[u] && --degree[u] == colors - 1 )
+					queue[queueSize++] = u;
+			}
+		}
+
+		/**
+		 * Looks for a node not linked to the given one but linked to all of its neighbours
+		 * among the neighbours of its neighbour of the least degree
+		 * @return dominating node or -1
+		 */
+		int FindDominator(int id) {
+			int w = -1;
+			for ( int k = offsets[id]; k < offsets[id + 1]; k++ ) {
+				int u = targets[k];
+				if ( !removed[u] ) {
+					mark[u] = id;
+					if ( w < 0 || degree[u] < degree[w] )
+						w = u;
+				}
+			}
+			if ( w < 0 )
+				return -1;
+
+			int work = 0;
+			for ( int k = offsets[w]; k < offsets[w + 1] && work < DOMINATION_WORK; k++ ) {
+				int v = targets[k];
+				if ( v == id || removed[v] || mark[v] == id || degree[v] < degree[id] )
+					continue;
+
+				int common = 0, missing = 0;
+				for ( int j = offsets[v]; j < offsets[v + 1] && missing <= degree[v] - degree[id]; j++, work++ ) {
+					int u = targets[j];
+					if ( removed[u] )
+						continue;
+					if ( mark[u] == id )
+						common++;
+					else
+						missing++;
+				}
+				if ( common == degree[id] )
+					return v;
+			}
+
+			return -1;
+		}
+	}
+}
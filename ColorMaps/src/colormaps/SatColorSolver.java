@@ -0,0 +1,109 @@
+package colormaps;
+
+/**
+ * Colors the mesh by the CDCL SAT solver.
+ * Variable (node, color) is true when the node has the color. Every node has at least
+ * one color and linked nodes never share one. Colors are interchangeable, so a greedily
+ * found clique gets fixed colors, which cuts off the symmetric copies of every solution.
+ * A node could end up having several colors, any of them is fine and the lowest is taken.
+ * Gives up and returns null when its thread is interrupted or the conflict limit runs out.
+ * @author Dober
+ *
+ */
+public class SatColorSolver implements ColorSolver {
+
+	private long maxConflicts;		// conflicts before giving up, 0 for no limit
+	private long conflicts;
+
+	/**
+	 * Creates a solver searching until it finds a coloring or proves there is none
+	 */
+	public SatColorSolver() {
+		this(0);
+	}
+
+	/**
+	 * Creates a solver giving up after a number of conflicts
+	 * @param maxConflicts -- conflicts limit, 0 for no limit
+	 */
+	public SatColorSolver(long maxConflicts) {
+		this.maxConflicts = maxConflicts;
+	}
+
+	/**
+	 * Returns number of conflicts of the last search
+	 * @return conflicts count
+	 */
+	public long GetConflicts() {
+		return conflicts;
+	}
+
+	@Override
+	public int[] Solve(IndexedMesh mesh, int colors) {
+
+		int n = mesh.GetNodeCount();
+
+		if ( n == 0 )
+			return new int[0];
+
+		int[] clique = ExactSolver.FindClique(mesh);
+		if ( clique.length > colors )
+			return null;
+
+		SatSolver sat = Encode(mesh, colors);
+		for ( int i = 0; i < clique.length; i++ )
+			sat.AddClause(Var(clique[i], i, colors));
+		sat.SetConflictLimit(maxConflicts);
+
+		Boolean res = sat.Solve();
+		conflicts = sat.GetConflicts();
+		if ( res == null || !res )
+			return null;
+
+		int[] clr = new int[n];
+		for ( int id = 0; id < n; id++ )
+			for ( int c = 0; c < colors && clr[id] == 0; c++ )
+				if ( sat.GetValue(Var(id, c, colors)) )
+					clr[id] = c + 1;
+
+		return clr;
+	}
+
+	/**
+	 * Makes CNF of the mesh coloring without symmetry breaking
+	 * @param mesh -- mesh to color
+	 * @param colors -- number of colors
+	 * @return solver loaded with the clauses
+	 */
+	public static SatSolver Encode(IndexedMesh mesh, int colors) {
+		int n = mesh.GetNodeCount();
+		int[] offsets = mesh.GetOffsets(),
+			  targets = mesh.GetTargets();
+		SatSolver sat = new SatSolver(n * colors);
+
+		int[] some = new int[colors];
+		for ( int id = 0; id < n; id++ ) {
+			for ( int c = 0; c < colors; c++ )
+				some[c] = Var(id, c, colors);
+			sat.AddClause(some);
+
+			for ( int k = offsets[id]; k < offsets[id + 1]; k++ )
+				if ( id < targets[k] )
+					for ( int c = 0; c < colors; c++ )
+						sat.AddClause(-Var(id, c, colors), -Var(targets[k], c, colors));
+		}
+
+		return sat;
+	}
+
+	/**
+	 * Returns the variable of the node having the color
+	 * @param id -- node id
+	 * @param color -- 0-based color
+	 * @param colors -- number of colors
+	 * @return variable number
+	 */
+	static int Var(int id, int color, int colors) {
+		return id * colors + color + 1;
+	}
+}
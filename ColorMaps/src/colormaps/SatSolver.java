@@ -0,0 +1,598 @@
+package colormaps;
+
+import java.util.*;
+
+/**
+ * Conflict driven clause learning SAT solver.
+ * Clauses are watched by two literals, so an assignment only visits clauses watching the
+ * literal it falsified. Every conflict is analysed down to the first unique implication
+ * point, the learnt clause is added and the search jumps back to the level where it becomes
+ * unit. Variables are picked by VSIDS activity kept in a heap and get their last value,
+ * the search restarts by the Luby sequence and drops weak learnt clauses on restarts.
+ * Literals are given in DIMACS style: variable v is 1..vars, -v is its negation.
+ * @author Dober
+ *
+ */
+public class SatSolver {
+
+	private static final int RESTART_UNIT = 100;	// conflicts in the Luby sequence unit
+	private static final double VAR_DECAY = 0.95;
+
+	private int vars;
+	private boolean unsatisfiable;
+
+	// clauses, the first two literals of every clause are watched
+	private List<int[]> clauses = new ArrayList<int[]>();
+	private List<Integer> lbd = new ArrayList<Integer>();	// distinct levels of learnt clauses, 0 for given ones
+	private int learntCount, maxLearnt;
+	private int[][] watches;				// pairs of clause id and another literal of it by watched literal
+	private int[] watchCount;
+
+	// assignment
+	private byte[] values;					// by variable: -1 unassigned, 0 false, 1 true
+	private byte[] phase;					// last value of every variable
+	private int[] level;
+	private int[] reason;					// clause implied the variable or -1
+	private int[] trail;
+	private int trailSize, propagated;
+	private int[] levelStart = new int[16];	// trail position of every decision level
+	private int levels;
+	private int[] levelStamp;				// marks of levels counted by Lbd
+	private int stamp;
+
+	// VSIDS
+	private double[] activity;
+	private double increment = 1;
+	private int[] heap, heapIndex;
+	private int heapSize;
+
+	private long conflicts, decisions;
+	private long maxConflicts;				// conflicts before giving up, 0 for no limit
+
+	/**
+	 * Creates a solver without clauses
+	 * @param vars -- number of variables
+	 */
+	public SatSolver(int vars) {
+		this.vars = vars;
+
+		watches = new int[2 * vars][];
+		watchCount = new int[2 * vars];
+		for ( int l = 0; l < 2 * vars; l++ )
+			watches[l] = new int[8];
+
+		values = new byte[vars];
+		Arrays.fill(values, (byte)-1);
+		phase = new byte[vars];
+		level = new int[vars];
+		reason = new int[vars];
+		trail = new int[vars];
+		levelStamp = new int[vars + 1];
+
+		activity = new double[vars];
+		heap = new int[vars];
+		heapIndex = new int[vars];
+		for ( int v = 0; v < vars; v++ ) {
+			heap[v] = v;
+			heapIndex[v] = v;
+		}
+		heapSize = vars;
+	}
+
+	// Setters and getters
+	//-------------------------------------------------------------------------
+	public int GetVarCount() {
+		return vars;
+	}
+
+	public long GetConflicts() {
+		return conflicts;
+	}
+
+	public long GetDecisions() {
+		return decisions;
+	}
+
+	/**
+	 * Sets the number of conflicts after which Solve gives up
+	 * @param maxConflicts -- conflicts limit, 0 for no limit
+	 */
+	public void SetConflictLimit(long maxConflicts) {
+		this.maxConflicts = maxConflicts;
+	}
+
+	/**
+	 * Returns the variable value of the found model
+	 * @param var -- variable 1..vars
+	 * @return true if the variable is true
+	 */
+	public boolean GetValue(int var) {
+		return values[var - 1] == 1;
+	}
+
+
+
+
+	// Functionality
+	//-------------------------------------------------------------------------
+
+	/**
+	 * Adds a clause. Should be called before Solve
+	 * @param literals -- DIMACS literals of the clause
+	 */
+	public void AddClause(int... literals) {
+
+		int[] c = new int[literals.length];
+		int size = 0;
+		for ( int dimacs : literals ) {
+			int v = Math.abs(dimacs) - 1;
+			if ( dimacs == 0 || v >= vars )
+				throw new RuntimeException("Invalid literal " + dimacs);
+
+			int lit = 2 * v + (dimacs < 0 ? 1 : 0);
+			boolean skip = false;
+			for ( int i = 0; i < size; i++ ) {
+				if ( c[i] == (lit ^ 1) )
+					return;			// tautology
+				if ( c[i] == lit )
+					skip = true;
+			}
+			if ( !skip )
+				c[size++] = lit;
+		}
+
+		if ( size == 0 ) {
+			unsatisfiable = true;
+			return;
+		}
+
+		if ( size == 1 ) {
+			int value = LitValue(c[0]);
+			if ( value == 0 )
+				unsatisfiable = true;
+			else if ( value < 0 )
+				Assign(c[0], -1);
+			return;
+		}
+
+		AttachClause(Arrays.copyOf(c, size), 0);
+	}
+
+	/**
+	 * Searches for a model
+	 * @return true if the clauses are satisfiable, false if they aren't
+	 * 		   and null if the thread was interrupted or the conflict limit was reached
+	 */
+	public Boolean Solve() {
+
+		if ( unsatisfiable || Propagate() >= 0 ) {
+			unsatisfiable = true;
+			return false;
+		}
+
+		maxLearnt = clauses.size() / 3 + 2000;
+		int restarts = 0;
+		long restartLimit = Luby(restarts) * RESTART_UNIT,
+			 sinceRestart = 0;
+		int[] learntBuffer = new int[vars + 1];
+		boolean[] seen = new boolean[vars];
+
+		while ( true ) {
+			int conflict = Propagate();
+
+			if ( conflict >= 0 ) {
+				conflicts++;
+				sinceRestart++;
+				if ( levels == 0 ) {
+					unsatisfiable = true;
+					return false;
+				}
+
+				int size = Analyze(conflict, learntBuffer, seen);
+				int[] c = Arrays.copyOf(learntBuffer, size);
+				int back = size == 1 ? 0 : level[c[1] >> 1],
+					distinctLevels = Lbd(c);
+				Backtrack(back);
+
+				if ( size == 1 )
+					Assign(c[0], -1);
+				else {
+					Assign(c[0], AttachClause(c, distinctLevels));
+					learntCount++;
+				}
+
+				increment /= VAR_DECAY;
+				continue;
+			}
+
+			if ( sinceRestart >= restartLimit ) {
+				if ( Thread.currentThread().isInterrupted() || (maxConflicts > 0 && conflicts >= maxConflicts) )
+					return null;
+
+				Backtrack(0);
+				restarts++;
+				restartLimit = Luby(restarts) * RESTART_UNIT;
+				sinceRestart = 0;
+				ReduceLearnt();
+				continue;
+			}
+
+			int v = PickVariable();
+			if ( v < 0 )
+				return true;
+
+			decisions++;
+			if ( levels == levelStart.length )
+				levelStart = Arrays.copyOf(levelStart, levels * 2);
+			levelStart[levels++] = trailSize;
+			Assign(2 * v + (phase[v] == 1 ? 0 : 1), -1);
+		}
+	}
+
+	/**
+	 * Returns the value of a literal
+	 * @param lit -- internal literal, 2 * variable + negation
+	 * @return 1 if true, 0 if false, -1 if unassigned
+	 */
+	private int LitValue(int lit) {
+		int v = values[lit >> 1];
+
+		return v < 0 ? -1 : v ^ (lit & 1);
+	}
+
+	private void Assign(int lit, int from) {
+		int v = lit >> 1;
+
+		values[v] = (byte)((lit & 1) ^ 1);
+		level[v] = levels;
+		reason[v] = from;
+		trail[trailSize++] = lit;
+	}
+
+	/**
+	 * Adds the clause to the clauses and watches its first two literals
+	 * @return clause id
+	 */
+	private int AttachClause(int[] c, int distinctLevels) {
+		int id = clauses.size();
+
+		clauses.add(c);
+		lbd.add(distinctLevels);
+		Watch(c[0], id, c[1]);
+		Watch(c[1], id, c[0]);
+
+		return id;
+	}
+
+	/**
+	 * Watches the literal
+	 * @param lit -- watched literal
+	 * @param id -- clause id
+	 * @param blocker -- another literal of the clause, the clause isn't visited while it's true
+	 */
+	private void Watch(int lit, int id, int blocker) {
+		if ( watchCount[lit] + 2 > watches[lit].length )
+			watches[lit] = Arrays.copyOf(watches[lit], watches[lit].length * 2);
+		watches[lit][watchCount[lit]++] = id;
+		watches[lit][watchCount[lit]++] = blocker;
+	}
+
+	/**
+	 * Propagates assignments of the trail through the watched clauses
+	 * @return id of a conflicting clause or -1
+	 */
+	private int Propagate() {
+
+		while ( propagated < trailSize ) {
+			int falseLit = trail[propagated++] ^ 1;
+			int[] ws = watches[falseLit];
+			int count = watchCount[falseLit],
+				kept = 0;
+
+			for ( int i = 0; i < count; i += 2 ) {
+				int id = ws[i],
+					blocker = ws[i + 1];
+
+				// the clause is satisfied, no need to look at it
+				if ( LitValue(blocker) == 1 ) {
+					ws[kept++] = id;
+					ws[kept++] = blocker;
+					continue;
+				}
+
+				// the false literal goes second
+				int[] c = clauses.get(id);
+				if ( c[0] == falseLit ) {
+					c[0] = c[1];
+					c[1] = falseLit;
+				}
+
+				int first = c[0];
+				if ( first != blocker && LitValue(first) == 1 ) {
+					ws[kept++] = id;
+					ws[kept++] = first;
+					continue;
+				}
+
+				// look for another literal to watch
+				boolean moved = false;
+				for ( int k = 2; k < c.length; k++ )
+					if ( LitValue(c[k]) != 0 ) {
+						c[1] = c[k];
+						c[k] = falseLit;
+						Watch(c[1], id, first);
+						moved = true;
+						break;
+					}
+				if ( moved )
+					continue;
+
+				ws[kept++] = id;
+				ws[kept++] = first;
+				if ( LitValue(first) == 0 ) {
+					// conflict, the rest of the watches stays
+					for ( i += 2; i < count; i++ )
+						ws[kept++] = ws[i];
+					watchCount[falseLit] = kept;
+					propagated = trailSize;
+					return id;
+				}
+
+				Assign(first, id);
+			}
+
+			watchCount[falseLit] = kept;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Learns a clause from the conflict, cut at the first unique implication point
+	 * @param conflict -- id of the conflicting clause
+	 * @param out -- receives the learnt clause: the asserting literal first,
+	 * 				 a literal of the backjump level second
+	 * @param seen -- cleared marks of variables
+	 * @return learnt clause size
+	 */
+	private int Analyze(int conflict, int[] out, boolean[] seen) {
+
+		int size = 1, pending = 0, lit = -1,
+			index = trailSize - 1;
+		int id = conflict;
+
+		do {
+			int[] c = clauses.get(id);
+
+			for ( int k = lit < 0 ? 0 : 1; k < c.length; k++ ) {
+				int q = c[k], v = q >> 1;
+				if ( seen[v] || level[v] == 0 )
+					continue;
+
+				seen[v] = true;
+				BumpVariable(v);
+				if ( level[v] == levels )
+					pending++;
+				else
+					out[size++] = q;
+			}
+
+			// the next marked literal of the trail
+			while ( !seen[trail[index] >> 1] )
+				index--;
+			lit = trail[index--];
+			id = reason[lit >> 1];
+			seen[lit >> 1] = false;
+			pending--;
+		} while ( pending > 0 );
+
+		out[0] = lit ^ 1;
+
+		// a literal implied by other literals of the clause only is redundant
+		int[] marked = Arrays.copyOfRange(out, 1, size);
+		size = 1;
+		for ( int q : marked ) {
+			int v = q >> 1;
+			boolean redundant = reason[v] >= 0;
+			if ( redundant ) {
+				int[] c = clauses.get(reason[v]);
+				for ( int j = 1; j < c.length && redundant; j++ )
+					redundant = seen[c[j] >> 1] || level[c[j] >> 1] == 0;
+			}
+			if ( !redundant )
+				out[size++] = q;
+		}
+
+		// the literal of the highest level after the asserting one goes second
+		int max = 1;
+		for ( int k = 2; k < size; k++ )
+			if ( level[out[k] >> 1] > level[out[max] >> 1] )
+				max = k;
+		if ( size > 1 ) {
+			int t = out[1];
+			out[1] = out[max];
+			out[max] = t;
+		}
+
+		for ( int q : marked )
+			seen[q >> 1] = false;
+
+		return size;
+	}
+
+	private void BumpVariable(int v) {
+		activity[v] += increment;
+		if ( activity[v] > 1e100 ) {
+			for ( int i = 0; i < vars; i++ )
+				activity[i] *= 1e-100;
+			increment *= 1e-100;
+		}
+		if ( heapIndex[v] >= 0 )
+			SiftUp(heapIndex[v]);
+	}
+
+	/**
+	 * Number of distinct decision levels in the clause
+	 */
+	private int Lbd(int[] c) {
+		stamp++;
+		int count = 0;
+		for ( int lit : c )
+			if ( levelStamp[level[lit >> 1]] != stamp ) {
+				levelStamp[level[lit >> 1]] = stamp;
+				count++;
+			}
+
+		return count;
+	}
+
+	/**
+	 * Undoes assignments above the level
+	 * @param target -- level to keep
+	 */
+	private void Backtrack(int target) {
+		if ( levels <= target )
+			return;
+
+		for ( int i = trailSize - 1; i >= levelStart[target]; i-- ) {
+			int v = trail[i] >> 1;
+			phase[v] = values[v];
+			values[v] = -1;
+			reason[v] = -1;
+			if ( heapIndex[v] < 0 )
+				HeapInsert(v);
+		}
+
+		trailSize = levelStart[target];
+		propagated = trailSize;
+		levels = target;
+	}
+
+	/**
+	 * Drops half of learnt clauses, the ones spanning the most decision levels, once there
+	 * are too many of them. Clauses of 2 levels are kept. Called at the level 0 only,
+	 * when no clause is a reason of any decision
+	 */
+	private void ReduceLearnt() {
+		if ( learntCount < maxLearnt )
+			return;
+
+		List<Integer> weak = new ArrayList<Integer>();
+		for ( int id = 0; id < clauses.size(); id++ )
+			if ( lbd.get(id) > 2 )
+				weak.add(id);
+		Collections.sort(weak, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return lbd.get(b) - lbd.get(a);
+			}
+		});
+
+		boolean[] drop = new boolean[clauses.size()];
+		int dropped = Math.min(weak.size(), learntCount / 2);
+		for ( int i = 0; i < dropped; i++ )
+			drop[weak.get(i)] = true;
+
+		List<int[]> keep = new ArrayList<int[]>();
+		List<Integer> keepLbd = new ArrayList<Integer>();
+		for ( int id = 0; id < clauses.size(); id++ )
+			if ( !drop[id] ) {
+				keep.add(clauses.get(id));
+				keepLbd.add(lbd.get(id));
+			}
+
+		clauses = keep;
+		lbd = keepLbd;
+		learntCount -= dropped;
+		maxLearnt += maxLearnt / 10;
+		Arrays.fill(watchCount, 0);
+		for ( int id = 0; id < clauses.size(); id++ ) {
+			int[] c = clauses.get(id);
+			Watch(c[0], id, c[1]);
+			Watch(c[1], id, c[0]);
+		}
+		for ( int i = 0; i < trailSize; i++ )
+			reason[trail[i] >> 1] = -1;
+	}
+
+	/**
+	 * Takes the unassigned variable of the highest activity
+	 * @return variable or -1 if all are assigned
+	 */
+	private int PickVariable() {
+		while ( heapSize > 0 ) {
+			int v = heap[0];
+			HeapRemoveTop();
+			if ( values[v] < 0 )
+				return v;
+		}
+
+		return -1;
+	}
+
+	private void HeapInsert(int v) {
+		heap[heapSize] = v;
+		heapIndex[v] = heapSize;
+		SiftUp(heapSize++);
+	}
+
+	private void HeapRemoveTop() {
+		heapIndex[heap[0]] = -1;
+		heapSize--;
+		if ( heapSize > 0 ) {
+			heap[0] = heap[heapSize];
+			heapIndex[heap[0]] = 0;
+			SiftDown(0);
+		}
+	}
+
+	private void SiftUp(int i) {
+		int v = heap[i];
+		while ( i > 0 ) {
+			int parent = (i - 1) / 2;
+			if ( activity[heap[parent]] >= activity[v] )
+				break;
+			heap[i] = heap[parent];
+			heapIndex[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = v;
+		heapIndex[v] = i;
+	}
+
+	private void SiftDown(int i) {
+		int v = heap[i];
+		while ( 2 * i + 1 < heapSize ) {
+			int child = 2 * i + 1;
+			if ( child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]] )
+				child++;
+			if ( activity[heap[child]] <= activity[v] )
+				break;
+			heap[i] = heap[child];
+			heapIndex[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = v;
+		heapIndex[v] = i;
+	}
+
+	/**
+	 * Returns an element of the Luby sequence 1 1 2 1 1 2 4 1 1 2 ...
+	 * @param i -- 0-based index
+	 * @return element
+	 */
+	static long Luby(int i) {
+		int size = 1, seq = 0;
+		while ( size < i + 1 ) {
+			seq++;
+			size = 2 * size + 1;
+		}
+
+		while ( size - 1 != i ) {
+			size = (size - 1) >> 1;
+			seq--;
+			i = i % size;
+		}
+
+		return 1L << seq;
+	}
+}
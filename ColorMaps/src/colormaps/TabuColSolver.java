@@ -0,0 +1,247 @@
+package colormaps;
+
+import java.util.*;
+
+/**
+ * TabuCol local search.
+ * Keeps a matrix of neighbours of every node by colors, so the change of conflicts made by
+ * moving a node to another color is known in O(1). Every iteration makes the best move of
+ * a node in conflict, even a worsening one, and forbids the node to get its old color back
+ * for a while depending on the number of conflicts. A tabu move is still allowed if it leads
+ * to fewer conflicts than ever before.
+ * Minimize looks for the smallest palette: after every success the colors are squeezed
+ * into one color less and the search goes on from there.
+ * Gives up after the iterations limit or when its thread is interrupted.
+ * @author Dober
+ *
+ */
+public class TabuColSolver implements ColorSolver {
+
+	private long seed;
+	private long maxIterations;					// 0 for the default limit
+
+	/**
+	 * Creates a solver with the default iterations limit
+	 * @param seed -- seed of the search
+	 */
+	public TabuColSolver(long seed) {
+		this(seed, 0);
+	}
+
+	/**
+	 * Creates a solver
+	 * @param seed -- seed of the search
+	 * @param maxIterations -- moves to make for every palette, 0 for 100 per node plus 100000
+	 */
+	public TabuColSolver(long seed, long maxIterations) {
+		this.seed = seed;
+		this.maxIterations = maxIterations;
+	}
+
+	@Override
+	public int[] Solve(IndexedMesh mesh, int colors) {
+		Random rnd = new Random(seed);
+
+		int[] clr = Search(mesh, Squeeze(mesh, Start(mesh), colors), colors, rnd);
+		if ( clr == null )
+			return null;
+
+		for ( int id = 0; id < clr.length; id++ )
+			clr[id]++;
+
+		return clr;
+	}
+
+	/**
+	 * Colors the mesh starting from a given coloring, for example an almost good one
+	 * @param mesh -- mesh to color
+	 * @param start -- colors from 1, those beyond the palette are moved into it first
+	 * @param colors -- number of available colors
+	 * @return color by node id in 1..colors or null if the search gave up
+	 */
+	public int[] Solve(IndexedMesh mesh, int[] start, int colors) {
+		Random rnd = new Random(seed);
+
+		int[] clr = new int[start.length];
+		for ( int id = 0; id < clr.length; id++ )
+			clr[id] = start[id] - 1;
+
+		clr = Search(mesh, Squeeze(mesh, clr, colors), colors, rnd);
+		if ( clr == null )
+			return null;
+
+		for ( int id = 0; id < clr.length; id++ )
+			clr[id]++;
+
+		return clr;
+	}
+
+	/**
+	 * Colors the mesh with as few colors as it can find: starts from DSatur and
+	 * takes a color away after every success
+	 * @param mesh -- mesh to color
+	 * @return color by node id in 1..number of colors
+	 */
+	public int[] Minimize(IndexedMesh mesh) {
+		Random rnd = new Random(seed);
+		int[] best = Start(mesh);
+
+		int colors = 0;
+		for ( int c : best )
+			colors = Math.max(colors, c + 1);
+
+		while ( colors > 1 ) {
+			int[] clr = Search(mesh, Squeeze(mesh, best, colors - 1), colors - 1, rnd);
+			if ( clr == null )
+				break;
+
+			best = clr;
+			colors--;
+		}
+
+		for ( int id = 0; id < best.length; id++ )
+			best[id]++;
+
+		return best;
+	}
+
+	/**
+	 * Colors the mesh by DSatur with as many colors as it needs
+	 * @return 0-based colors
+	 */
+	private static int[] Start(IndexedMesh mesh) {
+		int maxDegree = 0;
+		for ( int id = 0; id < mesh.GetNodeCount(); id++ )
+			maxDegree = Math.max(maxDegree, mesh.GetDegree(id));
+
+		int[] clr = new DSaturSolver().Solve(mesh, maxDegree + 1);
+		for ( int id = 0; id < clr.length; id++ )
+			clr[id]--;
+
+		return clr;
+	}
+
+	/**
+	 * Moves nodes of colors out of the palette to the colors least used by their neighbours
+	 * @param clr -- 0-based colors
+	 * @param colors -- palette size
+	 * @return new 0-based colors in the palette
+	 */
+	private static int[] Squeeze(IndexedMesh mesh, int[] clr, int colors) {
+		int[] offsets = mesh.GetOffsets(),
+			  targets = mesh.GetTargets();
+		int[] res = clr.clone();
+		int[] counts = new int[colors];
+
+		for ( int id = 0; id < res.length; id++ ) {
+			if ( res[id] < colors )
+				continue;
+
+			Arrays.fill(counts, 0);
+			for ( int k = offsets[id]; k < offsets[id + 1]; k++ )
+				if ( res[targets[k]] < colors )
+					counts[res[targets[k]]]++;
+
+			int best = 0;
+			for ( int c = 1; c < colors; c++ )
+				if ( counts[c] < counts[best] )
+					best = c;
+			res[id] = best;
+		}
+
+		return res;
+	}
+
+	/**
+	 * Runs the tabu search
+	 * @param clr -- 0-based start colors in the palette, changed by the search
+	 * @param colors -- palette size
+	 * @return 0-based colors without conflicts or null
+	 */
+	private int[] Search(IndexedMesh mesh, int[] clr, int colors, Random rnd) {
+
+		int n = mesh.GetNodeCount();
+		int[] offsets = mesh.GetOffsets(),
+			  targets = mesh.GetTargets();
+
+		// neighbours of every node by colors and the number of conflicting links
+		int[] gamma = new int[n * colors];
+		long conflicts = 0;
+		for ( int id = 0; id < n; id++ )
+			for ( int k = offsets[id]; k < offsets[id + 1]; k++ ) {
+				gamma[id * colors + clr[targets[k]]]++;
+				if ( clr[targets[k]] == clr[id] && id < targets[k] )
+					conflicts++;
+			}
+
+		int[] conflicted = new int[n],
+			  position = new int[n];
+		int size = 0;
+		Arrays.fill(position, -1);
+		for ( int id = 0; id < n; id++ )
+			if ( gamma[id * colors + clr[id]] > 0 )
+				size = LocalSearchSolver.Update(id, true, conflicted, position, size);
+
+		long[] tabu = new long[n * colors];			// iteration the move becomes allowed at
+		long limit = maxIterations > 0 ? maxIterations : 100L * n + 100000,
+			 bestConflicts = conflicts;
+
+		for ( long iter = 0; conflicts > 0; iter++ ) {
+			if ( iter == limit || colors == 1 )
+				return null;
+			if ( (iter & 1023) == 0 && Thread.currentThread().isInterrupted() )
+				return null;
+
+			// the best move of a node in conflict, ties are broken randomly
+			int moveNode = -1, moveColor = -1, bestDelta = Integer.MAX_VALUE, ties = 0;
+			for ( int i = 0; i < size; i++ ) {
+				int v = conflicted[i],
+					row = v * colors,
+					current = gamma[row + clr[v]];
+
+				for ( int c = 0; c < colors; c++ ) {
+					if ( c == clr[v] )
+						continue;
+
+					int delta = gamma[row + c] - current;
+					if ( tabu[row + c] > iter && conflicts + delta >= bestConflicts )
+						continue;
+
+					if ( delta < bestDelta ) {
+						bestDelta = delta;
+						moveNode = v;
+						moveColor = c;
+						ties = 1;
+					}
+					else if ( delta == bestDelta && rnd.nextInt(++ties) == 0 ) {
+						moveNode = v;
+						moveColor = c;
+					}
+				}
+			}
+
+			// everything is tabu, a random move
+			if ( moveNode < 0 ) {
+				moveNode = conflicted[rnd.nextInt(size)];
+				moveColor = (clr[moveNode] + 1 + rnd.nextInt(colors - 1)) % colors;
+				bestDelta = gamma[moveNode * colors + moveColor] - gamma[moveNode * colors + clr[moveNode]];
+			}
+
+			int from = clr[moveNode];
+			clr[moveNode] = moveColor;
+			conflicts += bestDelta;
+			bestConflicts = Math.min(bestConflicts, conflicts);
+			tabu[moveNode * colors + from] = iter + rnd.nextInt(10) + (6 * size) / 10 + 1;
+
+			size = LocalSearchSolver.Update(moveNode, gamma[moveNode * colors + moveColor] > 0, conflicted, position, size);
+			for ( int k = offsets[moveNode]; k < offsets[moveNode + 1]; k++ ) {
+				int u = targets[k];
+				gamma[u * colors + from]--;
+				gamma[u * colors + moveColor]++;
+				size = LocalSearchSolver.Update(u, gamma[u * colors + clr[u]] > 0, conflicted, position, size);
+			}
+		}
+
+		return clr;
+	}
+}
@@ -0,0 +1,238 @@
+package life;
+
+import java.util.*;
+
+/**
+ * Ages of colony cells kept as saturating byte counters on a plane laid over the colony.
+ * Zero means there is no cell. The plane grows on demand in any direction and keeps
+ * a margin around the colony, so cells born next to the colony bounds or
+ * colony normalisation don't need a reallocation every generation.
+ * The plane is the only storage of the colony cells, generations are made on it by Step.
+ */
+class AgePlane {
+
+	static final int MAX_AGE = 255;
+	static final int MARGIN = 8;
+
+	private byte[] ages;
+	private byte[] spare;		// next generation plane of the same size, reused by Step
+	private int[] columns;		// neighbours counting buffer of Step
+	private int ox, oy;			// plane position of colony point [0:0]
+	private int pw, ph;			// plane size
+
+	public AgePlane() {
+		ages = new byte[0];
+		ox = 0;
+		oy = 0;
+		pw = 0;
+		ph = 0;
+	}
+
+	/**
+	 * Returns an age of the cell at the colony position
+	 * @param x -- X in the colony
+	 * @param y -- Y in the colony
+	 * @return cell age or 0 if there is no cell
+	 */
+	public int Get(int x, int y) {
+		int px = x + ox,
+			py = y + oy;
+
+		if ( px < 0 || py < 0 || px >= pw || py >= ph )
+			return 0;
+
+		return ages[py * pw + px] & 0xFF;
+	}
+
+	/**
+	 * Sets an age of the cell at the colony position
+	 * @param x -- X in the colony
+	 * @param y -- Y in the colony
+	 * @param age -- age of the cell. Saturates at MAX_AGE
+	 */
+	public void Set(int x, int y, int age) {
+		Ensure(x, y);
+		ages[(y + oy) * pw + x + ox] = (byte)Math.min(age, MAX_AGE);
+	}
+
+	/**
+	 * Removes a cell from the position
+	 * @param x -- X in the colony
+	 * @param y -- Y in the colony
+	 */
+	public void Clear(int x, int y) {
+		int px = x + ox,
+			py = y + oy;
+
+		if ( px >= 0 && py >= 0 && px < pw && py < ph )
+			ages[py * pw + px] = 0;
+	}
+
+	/**
+	 * Makes the next generation of the colony on the plane.
+	 * Cells are checked within the colony area and one cell around it, the result
+	 * goes into a spare plane of the same size which then replaces the current one
+	 * @param width -- colony width
+	 * @param height -- colony height
+	 * @param born -- receives colony positions of born cells
+	 * @param died -- receives colony positions of died cells
+	 * @param box -- receives colony bounds of the new generation: min X, min Y, max X, max Y
+	 * @return number of cells in the new generation
+	 */
+	public int Step(int width, int height, List<Point> born, List<Point> died, int[] box) {
+
+		// neighbours of all checked positions are within the plane
+		Ensure(-2, -2);
+		Ensure(width + 1, height + 1);
+
+		if ( spare == null || spare.length != ages.length )
+			spare = new byte[ages.length];
+		else
+			Arrays.fill(spare, (byte)0);
+		if ( columns == null || columns.length < pw )
+			columns = new int[pw];
+
+		byte[] a = ages, n = spare;
+		int[] cnt = columns;
+		int x0 = ox - 1, x1 = ox + width,
+			y0 = oy - 1, y1 = oy + height;
+		int population = 0,
+			minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE,
+			maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+
+		for ( int py = y0; py <= y1; py++ ) {
+			int row = py * pw, up = row - pw, down = row + pw;
+
+			// live cells in the three rows by columns
+			for ( int px = x0 - 1; px <= x1 + 1; px++ )
+				cnt[px] = (a[up + px] != 0 ? 1 : 0) + (a[row + px] != 0 ? 1 : 0) + (a[down + px] != 0 ? 1 : 0);
+
+			for ( int px = x0; px <= x1; px++ ) {
+				int age = a[row + px] & 0xFF,
+					nb = cnt[px - 1] + cnt[px] + cnt[px + 1] - (age != 0 ? 1 : 0);
+
+				if ( age == 0 ) {
+					if ( nb != 3 )
+						continue;
+					n[row + px] = 1;
+					born.add(new Point(px - ox, py - oy));
+				}
+				else if ( nb == 2 || nb == 3 )
+					n[row + px] = (byte)(age == MAX_AGE ? MAX_AGE : age + 1);
+				else {
+					died.add(new Point(px - ox, py - oy));
+					continue;
+				}
+
+				population++;
+				minX = Math.min(minX, px - ox);
+				maxX = Math.max(maxX, px - ox);
+				minY = Math.min(minY, py - oy);
+				maxY = Math.max(maxY, py - oy);
+			}
+		}
+
+		spare = a;
+		ages = n;
+
+		box[0] = minX;
+		box[1] = minY;
+		box[2] = maxX;
+		box[3] = maxY;
+
+		return population;
+	}
+
+	/**
+	 * Visits all cells of the plane
+	 * @param visitor -- visitor to call with colony positions
+	 */
+	public void ForEachCell(CellVisitor visitor) {
+		byte[] a = ages;
+
+		for ( int py = 0; py < ph; py++ ) {
+			int row = py * pw;
+			for ( int px = 0; px < pw; px++ )
+				if ( a[row + px] != 0 )
+					visitor.Visit(px - ox, py - oy, a[row + px] & 0xFF);
+		}
+	}
+
+	/**
+	 * Moves all cells of the plane
+	 * @param dx -- shift along X in the colony
+	 * @param dy -- shift along Y in the colony
+	 */
+	public void Translate(int dx, int dy) {
+		ox -= dx;
+		oy -= dy;
+	}
+
+	/**
+	 * Shrinks the plane if it became much bigger than the colony.
+	 * Should be called when the colony is normalised and all its cells
+	 * are within [0:0]-[width:height]
+	 * @param width -- colony width
+	 * @param height -- colony height
+	 */
+	public void Fit(int width, int height) {
+		if ( (long)pw * ph <= 4L * (width + 2 * MARGIN) * (height + 2 * MARGIN) )
+			return;
+
+		Reallocate(-MARGIN, -MARGIN, width + 2 * MARGIN, height + 2 * MARGIN);
+	}
+
+	/**
+	 * Grows the plane so the colony position fits it
+	 * @param x -- X in the colony
+	 * @param y -- Y in the colony
+	 */
+	private void Ensure(int x, int y) {
+		int px = x + ox,
+			py = y + oy;
+
+		if ( px >= 0 && py >= 0 && px < pw && py < ph )
+			return;
+
+		// new plane covers the old one and the position with a half-size margin on the growing sides
+		int minX = Math.min(-ox, x), minY = Math.min(-oy, y),
+			maxX = Math.max(pw - ox, x + 1), maxY = Math.max(ph - oy, y + 1),
+			growX = Math.max(MARGIN, pw / 2), growY = Math.max(MARGIN, ph / 2);
+
+		if ( px < 0 )		minX -= growX;
+		if ( px >= pw )		maxX += growX;
+		if ( py < 0 )		minY -= growY;
+		if ( py >= ph )		maxY += growY;
+
+		Reallocate(minX, minY, maxX - minX, maxY - minY);
+	}
+
+	/**
+	 * Moves the plane to a new area of the colony
+	 * @param x -- colony X of the new plane corner
+	 * @param y -- colony Y of the new plane corner
+	 * @param w -- new plane width
+	 * @param h -- new plane height
+	 */
+	private void Reallocate(int x, int y, int w, int h) {
+		byte[] na = new byte[w * h];
+
+		for ( int r = 0; r < ph; r++ ) {
+			int ny = r - oy - y;
+			if ( ny < 0 || ny >= h )
+				continue;
+
+			for ( int c = 0; c < pw; c++ ) {
+				int nx = c - ox - x;
+				if ( nx >= 0 && nx < w && ages[r * pw + c] != 0 )
+					na[ny * w + nx] = ages[r * pw + c];
+			}
+		}
+
+		ages = na;
+		ox = -x;
+		oy = -y;
+		pw = w;
+		ph = h;
+	}
+}
@@ -1,7 +1,5 @@
 package life;
 
-import java.util.*;
-
 class Cell {
 	
 	public static final int N  = 0,
@@ -13,20 +11,16 @@ class Cell {
 							W  = 6,
 							NW = 7;
 	
-	int generation;
 	Cell[] neighbours;
 	Colony colony;
 	int id;
 	Point pos;
-	int age;
 	
 	public Cell(Colony col, int newID, Point pos) {
 		id = newID;
 		colony = col;
-		generation = col.GetCurrGeneration();
 		neighbours = new Cell[8];
 		this.pos = pos;
-		age = 1;
 	}
 
 	public int GetID() {
@@ -37,22 +31,20 @@ class Cell {
 		return pos;
 	}
 	
-	public void SetPosition(Point newPos) {
-		pos = newPos;
-	}
-	
+	/**
+	 * All cells of the colony live in the colony generation
+	 * @return generation of the cell
+	 */
 	public int GetGeneration() {
-		return generation;
-	}
-	
-	public void SetGeneration(int newGen) {
-		if ( newGen > generation )
-			generation = newGen;
-		age++;
+		return colony.GetCurrGeneration();
 	}
 	
+	/**
+	 * Cell age is kept in the colony age plane
+	 * @return cell age saturated at AgePlane.MAX_AGE
+	 */
 	public int GetAge() {
-		return age;
+		return colony.ages.Get(pos.x, pos.y);
 	}
 	
 	public void Bind(Cell cell, int dir){
@@ -63,36 +55,6 @@ class Cell {
 		neighbours[dir] = cell;
 	}
 	
-	public void UnBind(int dir) {
-		neighbours[dir] = null;
-	}
-	
-	/**
-	 * Returns an opposite direction index
-	 * 0 - N, 1 - NE 2 - E, 3 - SE, 4 - S, 5 - SW, 6 - W, 7 - NW
-	 * @param dir
-	 * @return opposite direction index for a given direction
-	 */
-	static public int GetOppositeDir(int dir) {
-		
-		int oppDir;
-		
-		switch ( dir ) {
-			case N  : 	oppDir = S; 	break;
-			case NE : 	oppDir = SW; 	break;
-			case E  : 	oppDir = W; 	break;
-			case SE : 	oppDir = NW; 	break;
-			case S  : 	oppDir = N; 	break;
-			case SW : 	oppDir = NE; 	break;
-			case W  : 	oppDir = E; 	break;
-			case NW : 	oppDir = SE; 	break;
-			default:
-				throw new RuntimeException("Invalid direction [" + dir + "]");
-		}
-		
-		return oppDir;
-	}
-
 	/**
 	 * Returns a point for an opposite direction for the current cell
 	 * @param dir -- direction to look for
@@ -137,52 +99,17 @@ class Cell {
 	}
 	
 	/**
-	 * Unbind all the neighbours for a dying cell
-	 */
-	public void Die() {
-		for ( int dir = 0; dir < 8 ; dir ++ ) {
-			if ( neighbours[dir] != null )
-				neighbours[dir].UnBind(GetOppositeDir(dir));
-		}
-	}
-
-	/**
-	 * Returns number of cell's neighbours.
-	 * @param sameGen -- if sameGen is true, only neighbours with same generation count. If it's false all neighbours' count returns
-	 * @return
+	 * Returns number of cell's neighbours
+	 * @return neighbours count
 	 */
-	public int GetNeighboursCount(boolean sameGen) {
+	public int GetNeighboursCount() {
 		
 		int nCount = 0;
 		
 		for ( Cell cell : neighbours ) 
 			if ( cell != null )
-				if ( sameGen ) {
-					if ( cell.generation == generation )
-						nCount++;
-				}
-				else
-					nCount++;
-				
+				nCount++;
 		
 		return nCount;
 	}
-	
-	/**
-	 * Returns all empty slots around the cell
-	 * @return list of empty slots
-	 */
-	public List<Point> GetEmptyNeighboursSlots() {
-		
-		List<Point> emptySlots = new ArrayList<Point>();
-		
-		for ( int dir = 0; dir < 8; dir ++ ) 
-			if ( neighbours[dir] == null ) {
-				Point emptySlot = GetOppositeDirPoint(this, dir);
-				emptySlots.add(emptySlot);
-			}
-		
-		return emptySlots;
-	}
-		
 }
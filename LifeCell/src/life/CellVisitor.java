@@ -0,0 +1,15 @@
+package life;
+
+/**
+ * Receives live cells of a Life engine one by one
+ */
+public interface CellVisitor {
+
+	/**
+	 * Called for every live cell
+	 * @param x -- cell X in the engine coordinates
+	 * @param y -- cell Y in the engine coordinates
+	 * @param age -- cell age, saturated at 255
+	 */
+	void Visit(int x, int y, int age);
+}
@@ -0,0 +1,241 @@
+package life;
+
+import java.util.*;
+
+/**
+ * Counts objects living in a Life engine: blocks, beehives, gliders and so on.
+ * Live cells are split into islands of cells within two cells of each other, so parts
+ * of an object which share dead neighbours, as quadrants of the pulsar or the two blocks
+ * of the beacon do, stay in one island. Every island is looked up
+ * by its translated form in a cache of already seen islands, and only on the first
+ * sighting it's brought to the canonical form under rotations and reflections and
+ * looked up in the table of known objects. So a repeated object costs one hash lookup
+ * of its cells regardless of its orientation.
+ * Census keeps the cache between calls and isn't thread-safe.
+ */
+public class Census {
+
+	private Map<Shape, String> known;		// canonical shape -> object name
+	private Map<Shape, String> seen;		// translated shape -> object name
+	private int unknownCounter;
+
+	public Census() {
+		known = new HashMap<Shape, String>();
+		seen = new HashMap<Shape, String>();
+		unknownCounter = 0;
+
+		// still lifes
+		AddKnown("block",		new String[] {"oo", "oo"}, 1);
+		AddKnown("beehive",		new String[] {".oo.", "o..o", ".oo."}, 1);
+		AddKnown("loaf",		new String[] {".oo.", "o..o", ".o.o", "..o."}, 1);
+		AddKnown("boat",		new String[] {"oo.", "o.o", ".o."}, 1);
+		AddKnown("ship",		new String[] {"oo.", "o.o", ".oo"}, 1);
+		AddKnown("tub",			new String[] {".o.", "o.o", ".o."}, 1);
+		AddKnown("pond",		new String[] {".oo.", "o..o", "o..o", ".oo."}, 1);
+		AddKnown("long boat",	new String[] {"oo..", "o.o.", ".o.o", "..o."}, 1);
+		AddKnown("barge",		new String[] {".o..", "o.o.", ".o.o", "..o."}, 1);
+		AddKnown("snake",		new String[] {"oo.o", "o.oo"}, 1);
+		AddKnown("aircraft carrier", new String[] {"oo..", "o..o", "..oo"}, 1);
+		// oscillators
+		AddKnown("blinker",		new String[] {"ooo"}, 2);
+		AddKnown("toad",		new String[] {".ooo", "ooo."}, 2);
+		AddKnown("beacon",		new String[] {"oo..", "oo..", "..oo", "..oo"}, 2);
+		AddKnown("pulsar",		new String[] {
+											  "..ooo...ooo..",
+											  ".............",
+											  "o....o.o....o",
+											  "o....o.o....o",
+											  "o....o.o....o",
+											  "..ooo...ooo..",
+											  ".............",
+											  "..ooo...ooo..",
+											  "o....o.o....o",
+											  "o....o.o....o",
+											  "o....o.o....o",
+											  ".............",
+											  "..ooo...ooo..",
+											 }, 3);
+		// spaceships
+		AddKnown("glider",		new String[] {".o.", "..o", "ooo"}, 4);
+		AddKnown("lwss",		new String[] {".o..o", "o....", "o...o", "oooo."}, 4);
+	}
+
+	/**
+	 * Adds an object with all its phases to the known objects
+	 * @param name -- object name
+	 * @param rows -- picture of the object, 'o' is a live cell
+	 * @param period -- number of phases to add
+	 */
+	public void AddKnown(String name, String[] rows, int period) {
+
+		List<Point> cells = new ArrayList<Point>();
+		for ( int y = 0; y < rows.length; y++ )
+			for ( int x = 0; x < rows[y].length(); x++ )
+				if ( rows[y].charAt(x) == 'o' )
+					cells.add(new Point(x, y));
+
+		SparseLife engine = new SparseLife();
+		engine.Load(cells);
+		for ( int phase = 0; phase < period; phase++ ) {
+			if ( phase > 0 )
+				engine.Step(1);
+			known.put(Canonical(engine.Snapshot()), name);
+		}
+	}
+
+	/**
+	 * Takes a census of the engine cells
+	 * @param engine -- engine to take the census of
+	 * @return object name -> number of objects. Objects out of the known ones are
+	 * 		   named by their cells count, e.g. "unknown 12 cells #3"
+	 */
+	public SortedMap<String, Integer> Take(LifeEngine engine) {
+
+		final LongIntMap cells = new LongIntMap((int)engine.GetPopulation());
+		engine.ForEachCell(new CellVisitor() {
+			public void Visit(int x, int y, int age) {
+				cells.Put(Point.Pack(x, y), 0);
+			}
+		});
+
+		SortedMap<String, Integer> counts = new TreeMap<String, Integer>();
+		long[] stack = new long[16];
+		long[] island = new long[16];
+
+		for ( int s = 0; s < cells.Capacity(); s++ ) {
+			if ( !cells.IsUsed(s) || cells.ValueAt(s) != 0 )
+				continue;
+
+			// collect the island, visited cells are marked by 1
+			int size = 0, top = 0;
+			cells.Put(cells.KeyAt(s), 1);
+			stack[top++] = cells.KeyAt(s);
+			while ( top > 0 ) {
+				long p = stack[--top];
+				if ( size == island.length )
+					island = Arrays.copyOf(island, size * 2);
+				island[size++] = p;
+
+				int x = Point.UnpackX(p), y = Point.UnpackY(p);
+				for ( int dy = -2; dy <= 2; dy++ )
+					for ( int dx = -2; dx <= 2; dx++ ) {
+						long n = Point.Pack(x + dx, y + dy);
+						if ( cells.Get(n, 1) == 0 ) {
+							cells.Put(n, 1);
+							if ( top == stack.length )
+								stack = Arrays.copyOf(stack, top * 2);
+							stack[top++] = n;
+						}
+					}
+			}
+
+			String name = Classify(Arrays.copyOf(island, size));
+			Integer count = counts.get(name);
+			counts.put(name, count == null ? 1 : count + 1);
+		}
+
+		return counts;
+	}
+
+	/**
+	 * Names the island
+	 * @param island -- packed positions of the island cells
+	 * @return object name
+	 */
+	private String Classify(long[] island) {
+
+		Shape shape = new Shape(Translate(island));
+		String name = seen.get(shape);
+		if ( name != null )
+			return name;
+
+		Shape canonical = Canonical(island);
+		name = known.get(canonical);
+		if ( name == null ) {
+			name = "unknown " + island.length + " cells #" + ++unknownCounter;
+			known.put(canonical, name);
+		}
+		seen.put(shape, name);
+
+		return name;
+	}
+
+	/**
+	 * Returns the smallest of the translated forms of all 8 rotations and reflections
+	 * @param cells -- packed positions
+	 * @return canonical shape
+	 */
+	private static Shape Canonical(long[] cells) {
+
+		long[] best = null;
+		long[] t = new long[cells.length];
+
+		for ( int sym = 0; sym < 8; sym++ ) {
+			for ( int i = 0; i < cells.length; i++ ) {
+				int x = Point.UnpackX(cells[i]), y = Point.UnpackY(cells[i]);
+				if ( (sym & 1) != 0 )	{ int tmp = x; x = y; y = tmp; }	// transpose
+				if ( (sym & 2) != 0 )	x = -x;								// mirror X
+				if ( (sym & 4) != 0 )	y = -y;								// mirror Y
+				t[i] = Point.Pack(x, y);
+			}
+
+			long[] form = Translate(t);
+			if ( best == null || Compare(form, best) < 0 )
+				best = form;
+		}
+
+		return new Shape(best);
+	}
+
+	/**
+	 * Moves cells to the [0:0] corner
+	 * @param cells -- packed positions
+	 * @return sorted packed positions
+	 */
+	private static long[] Translate(long[] cells) {
+
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+		for ( long p : cells ) {
+			minX = Math.min(minX, Point.UnpackX(p));
+			minY = Math.min(minY, Point.UnpackY(p));
+		}
+
+		long[] res = new long[cells.length];
+		for ( int i = 0; i < cells.length; i++ )
+			res[i] = Point.Pack(Point.UnpackX(cells[i]) - minX, Point.UnpackY(cells[i]) - minY);
+		Arrays.sort(res);
+
+		return res;
+	}
+
+	private static int Compare(long[] a, long[] b) {
+		for ( int i = 0; i < a.length; i++ )
+			if ( a[i] != b[i] )
+				return a[i] < b[i] ? -1 : 1;
+
+		return 0;
+	}
+
+	/**
+	 * Sorted packed positions usable as a hash key
+	 */
+	private static class Shape {
+		final long[] cells;
+		final int hash;
+
+		Shape(long[] cells) {
+			this.cells = cells;
+			hash = Arrays.hashCode(cells);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Shape && Arrays.equals(cells, ((Shape)o).cells);
+		}
+	}
+}
@@ -1,23 +1,33 @@
 package life;
 
+import java.io.*;
 import java.util.*;
 
+/**
+ * Colony of cells living on its own plane.
+ * Cells are kept only as ages on the AgePlane, Cell objects are made on demand by GetCells
+ */
 class Colony {
-	Map<Point, Cell> cells;
+	AgePlane ages;				// the colony cells with their ages
+	int population;
 	int generation;
 	int id;
 	int width, height;
 	Point origin;
 	int cellCounter;
+	List<Point> born, died;		// flatland positions of cells born and died in the last generation
 	
 	public Colony(int newID, Point origin) {
 		id = newID;
-		cells = new HashMap<Point, Cell>();
+		ages = new AgePlane();
+		population = 0;
 		generation = 0;
 		this.origin = origin;
 		width = 0;
 		height = 0;
 		cellCounter = 0;
+		born = new ArrayList<Point>();
+		died = new ArrayList<Point>();
 	}
 	
 	public int LoadField(List<Point> points) {
@@ -25,17 +35,52 @@ class Colony {
 		for ( Point p : points )
 			AddNewCell(p);
 		
-		return cells.size();
+		return population;
 	}
 	
 	public Point GetBounds() {
 		return new Point(width, height);
 	}
 	
+	/**
+	 * Creates cells of the colony bound to their neighbours.
+	 * Cells are made anew on every call, numbered in no particular order and
+	 * don't follow the colony changes. ForEachCell is much cheaper if only
+	 * positions and ages are needed
+	 * @return collection of cells
+	 */
 	public Collection<Cell> GetCells() {
+		final Map<Point, Cell> cells = new HashMap<Point, Cell>(population * 2);
+		
+		ForEachCell(new CellVisitor() {
+			public void Visit(int x, int y, int age) {
+				Point p = new Point(x, y);
+				cells.put(p, new Cell(Colony.this, cells.size(), p));
+			}
+		});
+		
+		for ( Cell cell : cells.values() )
+			for ( int dir = 0; dir < 8; dir++ ) {
+				Cell neighbour = cells.get(Cell.GetOppositeDirPoint(cell, dir));
+				if ( neighbour != null )
+					cell.Bind(neighbour, dir);
+			}
+		
 		return cells.values();
 	}
 	
+	/**
+	 * Visits all cells of the colony without creating Cell objects
+	 * @param visitor -- visitor to call with positions relative to the colony origin
+	 */
+	public void ForEachCell(CellVisitor visitor) {
+		ages.ForEachCell(visitor);
+	}
+	
+	public int GetPopulation() {
+		return population;
+	}
+	
 	public int GetID() {
 		return id;
 	}
@@ -48,6 +93,24 @@ class Colony {
 		return origin;
 	}
 	
+	/**
+	 * Returns positions of cells born in the last generation.
+	 * Positions are given relative to the flatland, not to the colony origin
+	 * @return list of points
+	 */
+	public List<Point> GetBorn() {
+		return born;
+	}
+	
+	/**
+	 * Returns positions of cells died in the last generation.
+	 * Positions are given relative to the flatland, not to the colony origin
+	 * @return list of points
+	 */
+	public List<Point> GetDied() {
+		return died;
+	}
+	
 	public static void ShiftColony(Colony col, int x, int y) {
 		col.origin.x += x;
 		col.origin.y += y;
@@ -80,233 +143,192 @@ class Colony {
 	 */
 	public static int[][] ConvertColony2Array(Colony col) {
 		
-		int[][] pattern = new int[col.height][col.width];
+		final int[][] pattern = new int[col.height][col.width];
 		
-		for ( Cell cell : col.cells.values() )
-			pattern[cell.GetPosition().y][cell.GetPosition().x] = 1;
+		col.ForEachCell(new CellVisitor() {
+			public void Visit(int x, int y, int age) {
+				pattern[y][x] = 1;
+			}
+		});
 		
 		return pattern;		
 	}
 	
 	/**
-	 * Adds a new cell into position pos
-	 * @param pos
+	 * Writes the colony state into a snapshot stream
+	 * @param out -- stream to write the colony to
+	 * @throws IOException
 	 */
-	private void AddNewCell(Point pos) {
+	public void WriteSnapshot(DataOutputStream out) throws IOException {
+		out.writeInt(id);
+		out.writeInt(generation);
+		out.writeInt(cellCounter);
+		out.writeInt(origin.x);
+		out.writeInt(origin.y);
+		out.writeInt(width);
+		out.writeInt(height);
 		
-		if ( cells.containsKey(pos) )
-				throw new RuntimeException("The position [" + pos.x + ":" + pos.y + 
-						                   "] already occupied by cell [" + cells.get(pos).GetID() + 
-						                   " in the colony [" + id + "]!!!");
+		out.writeInt(population);
 		
-		Cell cell = new Cell(this, cellCounter++, pos);
-		cells.put(pos, cell);
+		final int[] data = new int[population * 3];
+		final int[] count = {0};
+		ForEachCell(new CellVisitor() {
+			public void Visit(int x, int y, int age) {
+				data[count[0]++] = x;
+				data[count[0]++] = y;
+				data[count[0]++] = age;
+			}
+		});
 		
-		// expand the colony bounds
-		if ( pos.x >= width )
-			width = pos.x + 1;
-		if ( pos.y >= height )
-			height = pos.y + 1;
+		for ( int v : data )
+			out.writeInt(v);
+	}
+	
+	/**
+	 * Restores a colony from a snapshot stream written by WriteSnapshot
+	 * @param in -- stream to read the colony from
+	 * @return restored colony
+	 * @throws IOException
+	 */
+	public static Colony ReadSnapshot(DataInputStream in) throws IOException {
+		Colony col = new Colony(in.readInt(), new Point(0, 0));
 		
-		// meet with a new neighbourhood
-		if ( cells.size() < 2 ) // if there is only one cell yet, no need to check neighbourhood
-			return;
+		col.generation = in.readInt();
+		int counter = in.readInt();
+		col.origin.x = in.readInt();
+		col.origin.y = in.readInt();
+		int w = in.readInt(),
+			h = in.readInt();
 		
-		Point chkPoint;
-		for ( int dir = 0; dir < 8; dir++ ) {
-			chkPoint = Cell.GetOppositeDirPoint(cell, dir);
-			if ( cells.containsKey(chkPoint) ) {
-				cell.Bind(cells.get(chkPoint), dir);  							// bind a new cell to an existed one
-				cells.get(chkPoint).Bind(cell, Cell.GetOppositeDir(dir));	 	// bind an existed cell to a new one
-			}
+		int count = in.readInt();
+		for ( int i = 0; i < count; i++ ) {
+			Point p = new Point(in.readInt(), in.readInt());
+			col.AddNewCell(p);
+			col.ages.Set(p.x, p.y, in.readInt());
 		}
+		
+		// bounds and counter are restored as they were, not as AddNewCell grows them
+		col.width = w;
+		col.height = h;
+		col.cellCounter = counter;
+		
+		return col;
 	}
 	
 	/**
-	 * Returns a number of neighbours for a given position
-	 * @param p -- Point to check
-	 * @return 
+	 * Adds a new cell into position pos
+	 * @param pos
 	 */
-	private int GetNeighboursCount(Point p) {
+	private void AddNewCell(Point pos) {
 		
-		int nCount = 0;
+		if ( ages.Get(pos.x, pos.y) != 0 )
+				throw new RuntimeException("The position [" + pos.x + ":" + pos.y + 
+						                   "] already occupied in the colony [" + id + "]!!!");
 		
-		// N
-		if ( p.y > 0 && cells.containsKey(new Point(p.x, p.y - 1) ) )
-			nCount++;
-		// NE
-		if ( p.y > 0 && p.x < width - 1 && cells.containsKey(new Point(p.x + 1, p.y - 1) ) )
-			nCount++;
-		// E
-		if ( p.x < width - 1 && cells.containsKey(new Point(p.x + 1, p.y) ) )
-			nCount++;
-		// SE
-		if ( p.y < height - 1 && p.x < width - 1 && cells.containsKey(new Point(p.x + 1, p.y + 1) ) )
-			nCount++;
-		// S
-		if ( p.y < height - 1 && cells.containsKey(new Point(p.x, p.y + 1) ) )
-			nCount++;
-		// SW
-		if ( p.y < height -1 && p.x > 0 && cells.containsKey(new Point(p.x - 1, p.y + 1) ) )
-			nCount++;
-		// W
-		if ( p.x > 0 && cells.containsKey(new Point(p.x - 1, p.y) ) )
-			nCount++;
-		// NW
-		if ( p.y > 0 && p.x > 0 && cells.containsKey(new Point(p.x - 1, p.y - 1) ) )
-			nCount++;
+		ages.Set(pos.x, pos.y, 1);
+		population++;
+		cellCounter++;
 		
-		return nCount;
+		// expand the colony bounds
+		if ( pos.x >= width )
+			width = pos.x + 1;
+		if ( pos.y >= height )
+			height = pos.y + 1;
 	}
-
+	
 	/**
-	 * Shifts all cell and expands the colony bounds if any cell has negative position
+	 * Shifts all cells so the colony starts at [0:0] and fits the colony bounds to the cells
+	 * @param box -- bounds of the cells: min X, min Y, max X, max Y
 	 */
-	private void NormalizeField() {
+	private void NormalizeField(int[] box) {
 		
-		boolean needShift = true;
 		int shiftX, shiftY; 		// the global shift of the whole field
-		int minX, minY;				// minimal X and Y position of cell to detect of empty space from left and top sides.
 		
-		while ( needShift ) {
-			shiftX = 0;
-			shiftY = 0;
-
-			minX = width - 1;	 
-			minY = height - 1;
-			
+		if ( population == 0 ) {
+			// an empty colony collapses into its last cell position
+			shiftX = -Math.max(width - 1, 0);
+			shiftY = -Math.max(height - 1, 0);
 			width = 0;
 			height = 0;
-
-			for ( Cell cell : cells.values() ) {
-				if ( cell.GetPosition().x < 0 ) {
-					shiftX = 1;
-					origin.x--;  // if we expand the field to the left,
-								 // we also shift the colony origin to the left as well.
-								 // Colony moves to the left
-				}
-				if ( cell.GetPosition().y < 0 ) {
-					shiftY = 1;
-					origin.y--;  // in case colony field need to expand up, we shift 
-								 // the colony origin to the top too. The whole colony moves to the top.
-				}
-				
-				if ( cell.GetPosition().x < minX )
-					minX = cell.GetPosition().x;
-				if ( cell.GetPosition().y < minY )
-					minY = cell.GetPosition().y;
-				
-
-				if ( width <= cell.GetPosition().x )
-					width = cell.GetPosition().x + 1;
-				if ( height <= cell.GetPosition().y )
-					height = cell.GetPosition().y + 1;
-			}
-			
-			if ( shiftX == 0 && shiftY == 0 ) {
-				if ( minX > 0 ) {	// shift the whole field to the left if there are empty columns
-					shiftX = -minX;
-					width -= minX;
-					origin.x += minX; // move colony to the right if we trim an empty space from the left
-				}
-				if ( minY > 0 ) {
-					shiftY = -minY;	// shift the whole field to the top if there are empty rows
-					height -= minY;
-					origin.y += minY; // move colony to the bottom if we trim an empty rows from the top
-				}
-				if ( shiftX == 0 && shiftY == 0 ) {
-					needShift = false;
-					continue;
-				}
-			}
-						
-			Point np;
-			Map<Point, Cell> newCells = new HashMap<Point, Cell>();
-			for ( Cell cell : cells.values() ) {
-				np = new Point(cell.GetPosition().x + shiftX, cell.GetPosition().y + shiftY);
-				cell.SetPosition(np);
-				newCells.put(np, cell);
-			}
-			
-			cells = newCells;
 		}
+		else {
+			shiftX = -box[0];
+			shiftY = -box[1];
+			width = box[2] - box[0] + 1;
+			height = box[3] - box[1] + 1;
+		}
+		
+		origin.x -= shiftX;  // if we expand the field to the left, the colony moves to the left
+		origin.y -= shiftY;  // and if we trim empty rows from the top, the colony moves to the bottom
+		
+		if ( shiftX != 0 || shiftY != 0 )
+			ages.Translate(shiftX, shiftY);
+		
+		ages.Fit(width, height);
 	}
 	
 	/**
 	 * Changes current generation onto a new one
+	 * @param metrics -- metrics to time the colony phases into or null
 	 */
-	public void NextGeneration() {
+	public void NextGeneration(LifeMetrics metrics) {
+		long start = metrics != null ? System.nanoTime() : 0;
+		
 		// switch generation onto a next one
 		generation++;
 		
-		int nCount; 
+		born.clear();
+		died.clear();
+		int[] box = new int[4];
+		population = ages.Step(width, height, born, died, box);
+		cellCounter += born.size();
 		
-		Set<Point> emptySlots = new HashSet<Point>(); 		// pretenders for a creating a new born cell
-		List<Cell> dyingCells = new LinkedList<Cell>();		// a list of cell to die in a next generation
-		List<Point> newCells = new LinkedList<Point>();		// a list of a newly created cells 
-		
-		// check all cells lived in past generation and prepare a list of dying cells
-		for ( Cell cell : cells.values() ) {
-			emptySlots.addAll(cell.GetEmptyNeighboursSlots());
-			
-			nCount = cell.GetNeighboursCount(true);
-			
-			if ( nCount < 2 )				// it's too few neighbours over there
-				dyingCells.add(cell);
-			
-			if ( nCount > 3 )				// it's too crowdy over there
-				dyingCells.add(cell);
-		}
+		long stepped = metrics != null ? System.nanoTime() : 0;
 		
-		// check all emptySlots if it possible to create a new cell over there
-		for ( Point es : emptySlots ) {
-			if ( GetNeighboursCount(es) == 3 )
-				newCells.add(es);
+		// changes are reported in the flatland coordinates
+		for ( Point p : born ) {
+			p.x += origin.x;
+			p.y += origin.y;
 		}
-		
-		// delete all dying cells
-		for ( Cell cell : dyingCells ) {
-			cell.Die();
-			cells.remove(cell.GetPosition());
+		for ( Point p : died ) {
+			p.x += origin.x;
+			p.y += origin.y;
 		}
 		
-		// set new generation for the existed cells
-		for ( Cell cell : cells.values() )
-			cell.SetGeneration(generation);
+		NormalizeField(box);
 		
-		// add all new cells
-		for ( Point p : newCells )
-			AddNewCell(p);
-		
-		NormalizeField();
+		if ( metrics != null )
+			metrics.ColonyDone(this, stepped - start, System.nanoTime() - stepped);
 	}
 	
 	/**
 	 * Merges the colony col to the current one
 	 * @param col -- Colony to merge
 	 */
-	public void MergeColony(Colony col) {
-		int x, y;
-		for ( Cell cell : col.cells.values() ) {
-			if ( origin.x + width == col.origin.x ) 	// if the new col is next to the right
-				x = width + cell.GetPosition().x;
-			else
-				if ( origin.x >= col.origin.x )			// new col is placed left to the current one
-					x = origin.x - col.origin.x + cell.GetPosition().x;
+	public void MergeColony(final Colony col) {
+		col.ForEachCell(new CellVisitor() {
+			public void Visit(int cx, int cy, int age) {
+				int x, y;
+				
+				if ( origin.x + width == col.origin.x ) 	// if the new col is next to the right
+					x = width + cx;
 				else
-					x = col.origin.x - origin.x + cell.GetPosition().x;
-			
-			if ( origin.y + height == col.origin.y )	// if the new col is next to the bottom
-				y = height + cell.GetPosition().y;
-			else
-				if ( origin.y >= col.origin.y )        // if the new col is higher that the current one
-					y = origin.y - col.origin.y + cell.GetPosition().y;
+					if ( origin.x >= col.origin.x )			// new col is placed left to the current one
+						x = origin.x - col.origin.x + cx;
+					else
+						x = col.origin.x - origin.x + cx;
+				
+				if ( origin.y + height == col.origin.y )	// if the new col is next to the bottom
+					y = height + cy;
 				else
-					y = col.origin.y - origin.y + cell.GetPosition().y;
-			
-			AddNewCell(new Point(x, y));
-		}
-			
+					if ( origin.y >= col.origin.y )        // if the new col is higher that the current one
+						y = origin.y - col.origin.y + cy;
+					else
+						y = col.origin.y - origin.y + cy;
+				
+				AddNewCell(new Point(x, y));
+			}
+		});
 	}
 
 }
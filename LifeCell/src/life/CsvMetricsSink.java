@@ -0,0 +1,51 @@
+package life;
+
+import java.io.*;
+
+/**
+ * Writes flatland metrics of every generation as a CSV line.
+ * Lines are buffered and flushed every FLUSH_LINES lines and on Close
+ */
+public class CsvMetricsSink implements MetricsSink {
+
+	public static final int FLUSH_LINES = 256;
+
+	private PrintWriter out;
+	private int lines = 0;
+
+	public CsvMetricsSink(Writer writer) {
+		out = new PrintWriter(new BufferedWriter(writer));
+		out.println("generation,step_ns,shift_ns,merge_ns,bounds_ns,total_ns,births,deaths,population,colonies,merges,allocated_bytes,slowest_colony,slowest_colony_ns");
+	}
+
+	@Override
+	public synchronized void Publish(LifeMetrics m) {
+		if ( out == null )
+			return;
+
+		out.printf("%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d%n",
+				   m.getGeneration(), m.getStepNanos(), m.getShiftNanos(), m.getMergeNanos(), m.getBoundsNanos(),
+				   m.getTotalNanos(), m.getBirths(), m.getDeaths(), m.getPopulation(), m.getColonies(),
+				   m.getMerges(), m.getAllocatedBytes(), m.getSlowestColony(), m.getSlowestColonyNanos());
+		if ( ++lines % FLUSH_LINES == 0 )
+			out.flush();
+	}
+
+	/**
+	 * Writes buffered lines out
+	 */
+	public synchronized void Flush() {
+		if ( out != null )
+			out.flush();
+	}
+
+	/**
+	 * Writes buffered lines out and closes the writer. Lines published after it are dropped
+	 */
+	public synchronized void Close() {
+		if ( out != null ) {
+			out.close();
+			out = null;
+		}
+	}
+}
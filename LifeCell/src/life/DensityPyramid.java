@@ -0,0 +1,159 @@
+package life;
+
+/**
+ * Density mipmaps of the flatland.
+ * Level L keeps the number of live cells in every 2^L x 2^L block of the flatland.
+ * After a regular generation change levels are updated by born and died cells only,
+ * the full rebuild happens after loads, snapshot restores, colonies merges or when the flatland
+ * outgrows the area the pyramid was built for. Freshness is keyed on the flatland version,
+ * since generation numbers repeat after Load or ReadSnapshot.
+ */
+class DensityPyramid {
+
+	static final int MAX_LEVEL = 12;
+
+	private Flatland flatland;
+
+	private int[][] levels;		// levels[L] keeps counts of 2^L x 2^L blocks, levels[0] is unused
+	private int[] lWidth, lHeight;
+	private int maxLevel;
+	private int capWidth, capHeight;	// area covered by the pyramid in cells
+	private int ox, oy;					// position of the flatland origin in the pyramid
+
+	private int version;		// flatland version the pyramid counts
+
+	public DensityPyramid(Flatland fland) {
+		flatland = fland;
+		version = -1;
+		maxLevel = 0;
+	}
+
+	public int GetMaxLevel() {
+		return maxLevel;
+	}
+
+	public int GetLevelWidth(int level) {
+		return lWidth[level];
+	}
+
+	public int GetLevelHeight(int level) {
+		return lHeight[level];
+	}
+
+	/**
+	 * Returns raw block counts of the level, row by row
+	 * @param level -- level from 1 to GetMaxLevel()
+	 * @return array of GetLevelWidth(level) * GetLevelHeight(level) counts
+	 */
+	public int[] GetLevel(int level) {
+		return levels[level];
+	}
+
+	/**
+	 * Returns the block column of the level which holds the flatland origin.
+	 * Block borders are aligned to the pyramid, not to the flatland, so the
+	 * origin could lay inside the block
+	 * @param level -- level to check
+	 * @return block position of the flatland origin
+	 */
+	public Point GetOriginBlock(int level) {
+		return new Point(ox >> level, oy >> level);
+	}
+
+	/**
+	 * Brings the pyramid to the current flatland cells
+	 */
+	public void Update() {
+
+		int ver = flatland.GetVersion();
+		if ( ver == version && levels != null )
+			return;
+
+		// births and deaths describe the change only if a single generation went by since the last update
+		if ( levels == null || ver != version + 1 || !flatland.IsDeltaExact() || !ApplyShift(flatland.GetShift()) )
+			Rebuild();
+		else {
+			for ( Point p : flatland.GetDied() )
+				AddCell(p.x + ox, p.y + oy, -1);
+			for ( Point p : flatland.GetBorn() )
+				AddCell(p.x + ox, p.y + oy, 1);
+		}
+
+		version = ver;
+	}
+
+	/**
+	 * Moves the flatland origin in the pyramid if the whole flatland was shifted
+	 * @param shift -- the flatland shift
+	 * @return false if the shifted flatland doesn't fit the pyramid anymore
+	 */
+	private boolean ApplyShift(Point shift) {
+		int nx = ox - shift.x,
+			ny = oy - shift.y,
+			bounds[] = flatland.GetBounds();
+
+		if ( nx < 0 || ny < 0 || nx + bounds[0] > capWidth || ny + bounds[1] > capHeight )
+			return false;
+
+		ox = nx;
+		oy = ny;
+
+		return true;
+	}
+
+	/**
+	 * Changes block counts on all levels for a single cell
+	 * @param x -- cell X in the pyramid
+	 * @param y -- cell Y in the pyramid
+	 * @param delta -- 1 for a new cell, -1 for a dead one
+	 */
+	private void AddCell(int x, int y, int delta) {
+		for ( int l = 1; l <= maxLevel; l++ )
+			levels[l][(y >> l) * lWidth[l] + (x >> l)] += delta;
+	}
+
+	/**
+	 * Builds the pyramid anew with a free margin around the flatland,
+	 * so the flatland could grow and shift for a while without a rebuild
+	 */
+	private void Rebuild() {
+
+		int[] bounds = flatland.GetBounds();
+		int marginX = Math.max(64, bounds[0] / 4),
+			marginY = Math.max(64, bounds[1] / 4);
+
+		ox = marginX;
+		oy = marginY;
+		capWidth = bounds[0] + 2 * marginX;
+		capHeight = bounds[1] + 2 * marginY;
+
+		maxLevel = 1;
+		while ( maxLevel < MAX_LEVEL && ((capWidth - 1) >> maxLevel > 0 || (capHeight - 1) >> maxLevel > 0) )
+			maxLevel++;
+
+		levels = new int[maxLevel + 1][];
+		lWidth = new int[maxLevel + 1];
+		lHeight = new int[maxLevel + 1];
+		for ( int l = 1; l <= maxLevel; l++ ) {
+			lWidth[l] = ((capWidth - 1) >> l) + 1;
+			lHeight[l] = ((capHeight - 1) >> l) + 1;
+			levels[l] = new int[lWidth[l] * lHeight[l]];
+		}
+
+		// the first level is counted from cells, the others are summed from the previous level
+		final int[] first = levels[1];
+		final int w = lWidth[1];
+		flatland.ForEachCell(new CellVisitor() {
+			public void Visit(int x, int y, int age) {
+				first[((y + oy) >> 1) * w + ((x + ox) >> 1)]++;
+			}
+		});
+
+		for ( int l = 2; l <= maxLevel; l++ ) {
+			int[] prev = levels[l - 1], curr = levels[l];
+			for ( int y = 0; y < lHeight[l - 1]; y++ )
+				for ( int x = 0; x < lWidth[l - 1]; x++ )
+					curr[(y >> 1) * lWidth[l] + (x >> 1)] += prev[y * lWidth[l - 1] + x];
+		}
+	}
+}
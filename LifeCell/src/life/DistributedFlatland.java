@@ -0,0 +1,288 @@
+package life;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+/**
+ * Coordinator of a flatland distributed over several StripWorker processes.
+ * The flatland is cut into vertical or horizontal strips of the global coordinates,
+ * every strip is owned by one worker JVM. Colonies crossing strip borders are split
+ * between the workers on load and joined back into a single colony on gather,
+ * during the run cells move between strips through the halo exchange of the workers.
+ * Coordinator only sends commands and waits for all workers at the end of every step.
+ * <p>
+ * Workers don't keep colonies. They run plain B3/S23 Life on the union of all cells,
+ * so cells of different colonies see each other at once. Flatland colonies don't see
+ * each other until they are merged, so a multi-colony flatland goes the same way only
+ * while its colonies stay far apart. A single colony flatland always goes the same way.
+ */
+public class DistributedFlatland {
+
+	public enum Orientation {
+		VERTICAL,		// strips are cut along X
+		HORIZONTAL,		// strips are cut along Y
+	}
+
+	static final int ACCEPT_TIMEOUT = 60000;
+
+	private Orientation orientation;
+	private int generation;
+	private long population;
+
+	private List<Process> processes;
+	private List<Socket> sockets;
+	private List<DataInputStream> ins;
+	private List<DataOutputStream> outs;
+
+	/**
+	 * Launches worker JVMs on the local host and distributes the flatland between them
+	 * @param fland -- flatland to distribute. It isn't changed
+	 * @param workers -- number of worker processes
+	 * @param orientation -- strips orientation
+	 */
+	public DistributedFlatland(Flatland fland, int workers, Orientation orientation) {
+
+		if ( workers < 1 )
+			throw new RuntimeException("Invalid number of workers [" + workers + "]");
+
+		this.orientation = orientation;
+		generation = fland.GetGeneration();
+		processes = new ArrayList<Process>();
+		sockets = new ArrayList<Socket>();
+		ins = new ArrayList<DataInputStream>();
+		outs = new ArrayList<DataOutputStream>();
+
+		try ( ServerSocket ctlServer = new ServerSocket(0, workers, InetAddress.getLoopbackAddress()) ) {
+
+			ctlServer.setSoTimeout(ACCEPT_TIMEOUT);
+
+			String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+			for ( int i = 0; i < workers; i++ )
+				processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+												 StripWorker.class.getName(),
+												 ctlServer.getInetAddress().getHostAddress(),
+												 Integer.toString(ctlServer.getLocalPort()))
+								.inheritIO()
+								.start());
+
+			Distribute(fland, ctlServer, workers);
+		}
+		catch ( IOException e ) {
+			Close();
+			throw new RuntimeException("Could not start distributed flatland: " + e.getMessage(), e);
+		}
+	}
+
+	public int GetGeneration() {
+		return generation;
+	}
+
+	public long GetPopulation() {
+		return population;
+	}
+
+	public int GetWorkersCount() {
+		return outs.size();
+	}
+
+	public void NextGeneration() {
+		Step(1);
+	}
+
+	/**
+	 * Makes n generations on all workers.
+	 * Workers exchange halos between themselves, the coordinator waits for them all at the end
+	 * @param n -- number of generations
+	 */
+	public void Step(int n) {
+		try {
+			for ( DataOutputStream out : outs ) {
+				out.writeByte(StripWorker.CMD_STEP);
+				out.writeInt(n);
+				out.flush();
+			}
+
+			long pop = 0;
+			for ( DataInputStream in : ins )
+				pop += in.readLong();
+
+			population = pop;
+			generation += n;
+		}
+		catch ( IOException e ) {
+			throw new RuntimeException("Distributed step failed: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Collects cells from all workers into a local flatland with a single colony
+	 * @return a new flatland of the current generation
+	 */
+	public Flatland Gather() {
+
+		List<Long> positions = new ArrayList<Long>();
+		List<Integer> ages = new ArrayList<Integer>();
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+
+		try {
+			for ( DataOutputStream out : outs ) {
+				out.writeByte(StripWorker.CMD_GATHER);
+				out.flush();
+			}
+
+			for ( DataInputStream in : ins ) {
+				int count = in.readInt();
+				for ( int i = 0; i < count; i++ ) {
+					long p = FromStrip(in.readLong());
+					positions.add(p);
+					ages.add(in.readUnsignedByte());
+					minX = Math.min(minX, Point.UnpackX(p));
+					minY = Math.min(minY, Point.UnpackY(p));
+				}
+			}
+		}
+		catch ( IOException e ) {
+			throw new RuntimeException("Distributed gather failed: " + e.getMessage(), e);
+		}
+
+		// flatland coordinates couldn't be negative, so the colony is placed at the cells minimum
+		Flatland fland = new Flatland();
+		List<Point> pattern = new ArrayList<Point>();
+		for ( long p : positions )
+			pattern.add(new Point(Point.UnpackX(p) - minX, Point.UnpackY(p) - minY));
+
+		fland.AddNewColony(positions.isEmpty() ? new Point(0, 0) : new Point(minX, minY), pattern);
+
+		Colony col = fland.GetColoniesList().get(0);
+		for ( int i = 0; i < pattern.size(); i++ )
+			col.ages.Set(pattern.get(i).x, pattern.get(i).y, ages.get(i));
+		fland.generation = generation;
+
+		return fland;
+	}
+
+	/**
+	 * Stops all the workers
+	 */
+	public void Close() {
+		for ( DataOutputStream out : outs )
+			try {
+				out.writeByte(StripWorker.CMD_STOP);
+				out.flush();
+			}
+			catch ( IOException e ) {
+				// worker is already gone
+			}
+
+		for ( Socket s : sockets )
+			try {
+				s.close();
+			}
+			catch ( IOException e ) {
+				// nothing to do
+			}
+
+		for ( Process p : processes )
+			try {
+				if ( !p.waitFor(5, java.util.concurrent.TimeUnit.SECONDS) )
+					p.destroyForcibly();
+			}
+			catch ( InterruptedException e ) {
+				p.destroyForcibly();
+				Thread.currentThread().interrupt();
+			}
+
+		outs.clear();
+		ins.clear();
+		sockets.clear();
+		processes.clear();
+	}
+
+	/**
+	 * Accepts workers, cuts the flatland into strips of equal population and sends them out
+	 * @param fland -- flatland to distribute
+	 * @param ctlServer -- control socket the workers connect to
+	 * @param workers -- number of workers
+	 * @throws IOException
+	 */
+	private void Distribute(Flatland fland, ServerSocket ctlServer, int workers) throws IOException {
+
+		int[] peerPorts = new int[workers];
+		for ( int i = 0; i < workers; i++ ) {
+			Socket s = ctlServer.accept();
+			s.setTcpNoDelay(true);
+			sockets.add(s);
+			ins.add(new DataInputStream(new BufferedInputStream(s.getInputStream())));
+			outs.add(new DataOutputStream(new BufferedOutputStream(s.getOutputStream())));
+			peerPorts[i] = ins.get(i).readInt();
+		}
+
+		// all cells in strip coordinates, colonies are split by the strip borders here
+		final List<Long> positions = new ArrayList<Long>();
+		final List<Integer> ages = new ArrayList<Integer>();
+		fland.ForEachCell(new CellVisitor() {
+			public void Visit(int x, int y, int age) {
+				positions.add(ToStrip(Point.Pack(x, y)));
+				ages.add(age);
+			}
+		});
+		population = positions.size();
+
+		// borders are placed at population quantiles along the strip axis
+		int[] xs = new int[positions.size()];
+		for ( int i = 0; i < xs.length; i++ )
+			xs[i] = Point.UnpackX(positions.get(i));
+		Arrays.sort(xs);
+
+		int[] borders = new int[workers + 1];
+		borders[0] = Integer.MIN_VALUE;
+		borders[workers] = Integer.MAX_VALUE;
+		for ( int i = 1; i < workers; i++ ) {
+			int b = xs.length == 0 ? i : xs[(int)((long)xs.length * i / workers)];
+			borders[i] = Math.max(b, borders[i - 1] == Integer.MIN_VALUE ? b : borders[i - 1] + 1);
+		}
+
+		for ( int i = 0; i < workers; i++ ) {
+			DataOutputStream out = outs.get(i);
+			out.writeInt(borders[i]);
+			out.writeInt(borders[i + 1]);
+			out.writeBoolean(i > 0);
+			out.writeBoolean(i < workers - 1);
+			out.writeUTF(ctlServer.getInetAddress().getHostAddress());
+			out.writeInt(i < workers - 1 ? peerPorts[i + 1] : -1);
+
+			int count = 0;
+			for ( long p : positions )
+				if ( Point.UnpackX(p) >= borders[i] && Point.UnpackX(p) < borders[i + 1] )
+					count++;
+
+			out.writeInt(count);
+			for ( int c = 0; c < positions.size(); c++ ) {
+				long p = positions.get(c);
+				if ( Point.UnpackX(p) >= borders[i] && Point.UnpackX(p) < borders[i + 1] ) {
+					out.writeLong(p);
+					out.writeByte(ages.get(c));
+				}
+			}
+			out.flush();
+		}
+
+		for ( DataInputStream in : ins )
+			if ( !in.readBoolean() )
+				throw new IOException("Worker isn't ready");
+	}
+
+	/**
+	 * Workers always cut strips along X, so horizontal strips are made by swapping the axes
+	 * @param p -- packed flatland position
+	 * @return packed strip position
+	 */
+	private long ToStrip(long p) {
+		return orientation == Orientation.VERTICAL ? p : Point.Pack(Point.UnpackY(p), Point.UnpackX(p));
+	}
+
+	private long FromStrip(long p) {
+		return ToStrip(p);
+	}
+}
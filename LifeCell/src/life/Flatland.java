@@ -1,10 +1,20 @@
 package life;
 
+import java.io.*;
 import java.util.*;
 
-public class Flatland {
+public class Flatland implements LifeEngine {
 	
 	int fWidth, fHeight;
+	int generation;
+	int version;				// grows on every change of cells, generation numbers could repeat after Load
+	
+	List<Point> born, died;		// flatland positions of cells born and died in the last generation
+	Point shift;				// shift of the whole flatland made in the last generation
+	boolean deltaExact;			// true if born, died and shift exactly describe the last generation change
+	int merges;					// number of colonies merged in the last generation
+	
+	LifeMetrics metrics;		// null if metrics are disabled
 
 	List<Colony> colonies;
 	
@@ -12,6 +22,7 @@ public class Flatland {
 	 * Returns bounds of the flatland
 	 * @return integer array of bounds. 0 - X, 1 - Y
 	 */
+	@Override
 	public int[] GetBounds() {
 		
 		int[] bounds = {fWidth, fHeight,};
@@ -23,6 +34,14 @@ public class Flatland {
 		colonies = new ArrayList<Colony>();
 		fWidth = 0;
 		fHeight = 0;
+		generation = 0;
+		version = 0;
+		born = new ArrayList<Point>();
+		died = new ArrayList<Point>();
+		shift = new Point(0, 0);
+		deltaExact = false;
+		merges = 0;
+		metrics = null;
 	}
 	
 	public void AddNewColony(Point origin, List<Point> pattern) {
@@ -39,6 +58,8 @@ public class Flatland {
 			fHeight = col.GetOrigin().y + col.GetBounds().y;
 		
 		colonies.add(col);
+		deltaExact = false;		// the new colony isn't in the born cells
+		version++;
 	}
 	
 	public List<Colony> GetColoniesList() {
@@ -49,13 +70,191 @@ public class Flatland {
 		return colonies.size();
 	}
 	
+	@Override
+	public int GetGeneration() {
+		return generation;
+	}
+	
+	/**
+	 * Returns the cells version. It changes with every generation, colony addition,
+	 * Load and ReadSnapshot, so caches of the flatland cells are keyed on it
+	 * @return cells version
+	 */
+	int GetVersion() {
+		return version;
+	}
+	
+	/**
+	 * Replaces all colonies with a single colony of the pattern.
+	 * Separate colonies don't see each other until they are merged, so
+	 * exact Life comparison is possible only for a single colony flatland
+	 * @param cells -- positions of live cells
+	 */
+	@Override
+	public void Load(List<Point> cells) {
+		
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+		for ( Point p : cells ) {
+			minX = Math.min(minX, p.x);
+			minY = Math.min(minY, p.y);
+		}
+		
+		List<Point> pattern = new ArrayList<Point>();
+		for ( Point p : cells )
+			pattern.add(new Point(p.x - minX, p.y - minY));
+		
+		colonies.clear();
+		fWidth = 0;
+		fHeight = 0;
+		generation = 0;
+		born.clear();
+		died.clear();
+		deltaExact = false;
+		
+		AddNewColony(new Point(0, 0), pattern);
+	}
+	
+	@Override
+	public void Step(int n) {
+		for ( int i = 0; i < n; i++ )
+			NextGeneration();
+	}
+	
+	@Override
+	public long GetPopulation() {
+		long pop = 0;
+		for ( Colony col : colonies )
+			pop += col.GetPopulation();
+		
+		return pop;
+	}
+	
+	@Override
+	public void ForEachCell(final CellVisitor visitor) {
+		for ( Colony col : colonies ) {
+			final int ox = col.GetOrigin().x, oy = col.GetOrigin().y;
+			col.ForEachCell(new CellVisitor() {
+				public void Visit(int x, int y, int age) {
+					visitor.Visit(ox + x, oy + y, age);
+				}
+			});
+		}
+	}
+	
+	@Override
+	public long[] Snapshot() {
+		return LifeEngines.Snapshot(this);
+	}
+	
+	/**
+	 * Returns positions of cells born in the last generation
+	 * @return list of points in the current flatland coordinates
+	 */
+	public List<Point> GetBorn() {
+		return born;
+	}
+	
+	/**
+	 * Returns positions of cells died in the last generation
+	 * @return list of points in the current flatland coordinates
+	 */
+	public List<Point> GetDied() {
+		return died;
+	}
+	
+	/**
+	 * Returns the shift of the whole flatland made in the last generation.
+	 * Every cell survived the last generation moved on this shift
+	 * @return shift along X and Y
+	 */
+	public Point GetShift() {
+		return shift;
+	}
+	
+	/**
+	 * Returns number of colonies merged in the last generation
+	 * @return merges count
+	 */
+	public int GetMerges() {
+		return merges;
+	}
+	
+	public LifeMetrics GetMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Turns the generation metrics on or off
+	 * @param metrics -- metrics to collect into or null to turn them off
+	 */
+	public void SetMetrics(LifeMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Checks if the last generation change is fully described by born and died cells and the shift.
+	 * It isn't so after a snapshot restore or if colonies were merged in the last generation
+	 * @return true if the delta of the last generation is exact
+	 */
+	public boolean IsDeltaExact() {
+		return deltaExact;
+	}
+	
+	/**
+	 * Writes the whole flatland state into a snapshot stream
+	 * @param out -- stream to write the flatland to
+	 * @throws IOException
+	 */
+	public void WriteSnapshot(DataOutputStream out) throws IOException {
+		out.writeInt(generation);
+		out.writeInt(fWidth);
+		out.writeInt(fHeight);
+		
+		out.writeInt(colonies.size());
+		for ( Colony col : colonies )
+			col.WriteSnapshot(out);
+	}
+	
+	/**
+	 * Replaces the flatland state with one read from a snapshot stream
+	 * @param in -- stream written by WriteSnapshot
+	 * @throws IOException
+	 */
+	public void ReadSnapshot(DataInputStream in) throws IOException {
+		generation = in.readInt();
+		fWidth = in.readInt();
+		fHeight = in.readInt();
+		
+		born.clear();
+		died.clear();
+		shift = new Point(0, 0);
+		deltaExact = false;
+		
+		colonies.clear();
+		int count = in.readInt();
+		for ( int i = 0; i < count; i++ )
+			colonies.add(Colony.ReadSnapshot(in));
+		version++;
+	}
+	
 	public void NextGeneration() {
 		
+		generation++;
+		version++;
+		
+		LifeMetrics m = metrics;
+		if ( m != null )
+			m.StartGeneration();
+		
 		for ( Colony col : colonies )
-			col.NextGeneration();
+			col.NextGeneration(m);
+		
+		if ( m != null )
+			m.PhaseDone(LifeMetrics.Phase.STEP);
 		
 		// compensate the common field size according to colonies movement
 		int shiftX, shiftY;
+		shift = new Point(0, 0);
 		while ( true ) {
 			
 			shiftX = 0;
@@ -75,9 +274,27 @@ public class Flatland {
 			
 			for ( Colony col : colonies )
 				Colony.ShiftColony(col, shiftX, shiftY);
+			shift.x += shiftX;
+			shift.y += shiftY;
+		}
+		
+		// collect cells changes of all colonies in the flatland coordinates
+		born.clear();
+		died.clear();
+		for ( Colony col : colonies ) {
+			for ( Point p : col.GetBorn() )
+				born.add(new Point(p.x + shift.x, p.y + shift.y));
+			for ( Point p : col.GetDied() )
+				died.add(new Point(p.x + shift.x, p.y + shift.y));
 		}
+		deltaExact = true;
+		
+		if ( m != null )
+			m.PhaseDone(LifeMetrics.Phase.SHIFT);
+		
 		// check if colonies bumping
 		// if so, the colonies should be merged
+		merges = 0;
 		boolean merged = true;
 		while ( merged ) {
 			for ( Colony col : colonies )
@@ -97,7 +314,9 @@ public class Flatland {
 				       )) {
 						col.MergeColony(chkCol);
 						colonies.remove(chkCol);
+						deltaExact = false;		// merged cells are placed anew
 						merged = true;
+						merges++;
 						break;
 					}
 				}
@@ -106,6 +325,8 @@ public class Flatland {
 			}
 		}
 
+		if ( m != null )
+			m.PhaseDone(LifeMetrics.Phase.MERGE);
 		
 		// recalculate flatland bounds
 		fWidth = 0;
@@ -117,7 +338,11 @@ public class Flatland {
 			if ( fHeight <= col.GetOrigin().y + col.GetBounds().y )
 				fHeight = col.GetOrigin().y + col.GetBounds().y;
 		}
-	
+		
+		if ( m != null ) {
+			m.PhaseDone(LifeMetrics.Phase.BOUNDS);
+			m.GenerationDone(this);
+		}
 	}
 
 }
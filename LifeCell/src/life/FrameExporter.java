@@ -0,0 +1,397 @@
+package life;
+
+import java.awt.Color;
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.imageio.*;
+import javax.imageio.metadata.*;
+import javax.imageio.stream.*;
+
+/**
+ * Records Life engine generations into images.
+ * The simulation thread only takes a compact LifeFrame copy, frames are painted
+ * and encoded by a bounded pool of background encoders. If encoders fall behind
+ * for more than maxPending frames, Capture blocks until they catch up.
+ * Frames are stored as a sequence of PNG files or as a single animated GIF.
+ * GIF frames are encoded as they come too. Unless the canvas size is set up front, a frame
+ * is painted on the canvas of the largest frame so far, so every frame covers the ones
+ * before it, and the GIF screen is sized to the largest frame on Close. With the size set
+ * cells out of the canvas are clipped with a warning.
+ */
+public class FrameExporter {
+
+	public enum Format {
+		PNG_SEQUENCE,
+		ANIMATED_GIF,
+	}
+
+	private Format format;
+	private File target;
+	private int every;
+	private int cellSize;
+	private int canvasWidth, canvasHeight;	// GIF canvas in cells, grows with frames unless it's fixed
+	private boolean fixedCanvas;			// canvas size was set, cells out of it are clipped
+	private volatile boolean clipped;		// some cells were out of the fixed canvas
+	private int frameDelay;					// GIF frame delay in hundredths of a second
+
+	private ExecutorService encoders;
+	private ExecutorService gifWriter;		// single thread, writes rendered frames in capture order
+	private Semaphore pending;
+	private volatile Throwable failure;
+
+	private ImageWriter writer;
+	private ImageOutputStream gifStream;
+	private static final IndexColorModel palette = CreatePalette();
+
+	/**
+	 * Creates an exporter
+	 * @param target -- GIF file or directory for PNG files
+	 * @param format -- output format
+	 * @param every -- capture every Nth generation
+	 * @param cellSize -- cell size in pixels
+	 * @param encodersCount -- number of background encoder threads
+	 * @param maxPending -- number of frames captured but not stored yet before Capture blocks
+	 */
+	public FrameExporter(File target, Format format, int every, int cellSize, int encodersCount, int maxPending) {
+
+		if ( every < 1 || cellSize < 1 || encodersCount < 1 || maxPending < 1 )
+			throw new RuntimeException("Invalid export settings: every [" + every + "], cell size [" + cellSize +
+									   "], encoders [" + encodersCount + "], pending frames [" + maxPending + "]");
+
+		this.target = target;
+		this.format = format;
+		this.every = every;
+		this.cellSize = cellSize;
+		frameDelay = 10;
+
+		encoders = Executors.newFixedThreadPool(encodersCount, DaemonThreads("life-encoder"));
+		pending = new Semaphore(maxPending);
+
+		if ( format == Format.PNG_SEQUENCE ) {
+			if ( !target.isDirectory() && !target.mkdirs() )
+				throw new RuntimeException("Could not create export directory [" + target + "]");
+		}
+		else {
+			gifWriter = Executors.newSingleThreadExecutor(DaemonThreads("life-gif-writer"));
+		}
+	}
+
+	/**
+	 * Fixes the animated GIF canvas size, so all frames have the same size.
+	 * Cells out of the canvas are clipped. Should be called before the first capture
+	 * @param width -- canvas width in cells
+	 * @param height -- canvas height in cells
+	 */
+	public void SetCanvasSize(int width, int height) {
+
+		if ( width < 1 || height < 1 )
+			throw new RuntimeException("Invalid canvas size [" + width + "x" + height + "]");
+
+		canvasWidth = width;
+		canvasHeight = height;
+		fixedCanvas = true;
+	}
+
+	/**
+	 * Sets delay between animated GIF frames
+	 * @param delay -- delay in milliseconds
+	 */
+	public void SetFrameDelay(int delay) {
+		frameDelay = Math.max(1, delay / 10);
+	}
+
+	/**
+	 * Captures the current engine generation if it's one of every Nth.
+	 * Blocks if there are too many frames waiting for encoding
+	 * @param engine -- engine to capture
+	 */
+	public void Capture(LifeEngine engine) {
+
+		CheckFailure();
+
+		if ( engine.GetGeneration() % every != 0 )
+			return;
+
+		Acquire();
+		Store(LifeFrame.Capture(engine));
+	}
+
+	/**
+	 * Captures an already taken frame if it's one of every Nth generation.
+	 * Blocks if there are too many frames waiting for encoding
+	 * @param frame -- frame to capture
+	 */
+	public void Capture(LifeFrame frame) {
+
+		CheckFailure();
+
+		if ( frame.GetGeneration() % every != 0 )
+			return;
+
+		Acquire();
+		Store(frame);
+	}
+
+	private void Acquire() {
+		try {
+			pending.acquire();
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Frame capture interrupted", e);
+		}
+	}
+
+	/**
+	 * Hands the frame to encoders. A pending frame slot should be acquired
+	 * @param frame -- frame to store
+	 */
+	private void Store(final LifeFrame frame) {
+
+		if ( format == Format.PNG_SEQUENCE ) {
+			encoders.execute(new Runnable() {
+				public void run() {
+					try {
+						ImageIO.write(Paint(frame, frame.GetWidth(), frame.GetHeight()), "png",
+									  new File(target, String.format("gen-%08d.png", frame.GetGeneration())));
+					}
+					catch ( Throwable e ) {
+						Fail(e);
+					}
+					finally {
+						pending.release();
+					}
+				}
+			});
+			return;
+		}
+
+		if ( !fixedCanvas ) {
+			canvasWidth = Math.max(canvasWidth, frame.GetWidth());
+			canvasHeight = Math.max(canvasHeight, frame.GetHeight());
+		}
+
+		// the canvas is read here, encoders could paint later frames on a larger one
+		final int width = canvasWidth, height = canvasHeight;
+		final Future<BufferedImage> image = encoders.submit(new Callable<BufferedImage>() {
+			public BufferedImage call() {
+				return Paint(frame, width, height);
+			}
+		});
+
+		gifWriter.execute(new Runnable() {
+			public void run() {
+				try {
+					WriteGifFrame(image.get());
+				}
+				catch ( Throwable e ) {
+					Fail(e);
+				}
+				finally {
+					pending.release();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Waits until all captured frames are stored and finishes the output
+	 */
+	public void Close() {
+
+		try {
+			encoders.shutdown();
+			encoders.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+			if ( gifWriter != null ) {
+				gifWriter.shutdown();
+				gifWriter.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+				if ( writer != null ) {
+					writer.endWriteSequence();
+					gifStream.close();
+					writer.dispose();
+					SetScreenSize();
+				}
+			}
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Export closing interrupted", e);
+		}
+		catch ( IOException e ) {
+			throw new RuntimeException("Could not finish GIF file [" + target + "]: " + e.getMessage(), e);
+		}
+
+		if ( clipped )
+			System.err.println("Warning: cells out of the " + canvasWidth + "x" + canvasHeight +
+							   " GIF canvas were clipped in [" + target + "]");
+
+		CheckFailure();
+	}
+
+	/**
+	 * Sets the GIF logical screen to the largest frame. The screen is written with
+	 * the size of the first frame, which could be smaller than the later ones
+	 * @throws IOException
+	 */
+	private void SetScreenSize() throws IOException {
+
+		int w = Math.max(1, canvasWidth) * cellSize,
+			h = Math.max(1, canvasHeight) * cellSize;
+
+		// the screen size follows the 6 bytes signature as two little-endian shorts
+		try ( RandomAccessFile gif = new RandomAccessFile(target, "rw") ) {
+			gif.seek(6);
+			gif.write(new byte[] {(byte)w, (byte)(w >> 8), (byte)h, (byte)(h >> 8)});
+		}
+	}
+
+	/**
+	 * Paints the frame into an indexed image
+	 * @param frame -- frame to paint
+	 * @param width -- image width in cells. Cells out of it are clipped
+	 * @param height -- image height in cells
+	 * @return painted image
+	 */
+	private BufferedImage Paint(LifeFrame frame, int width, int height) {
+
+		int w = Math.max(1, width) * cellSize,
+			h = Math.max(1, height) * cellSize;
+		BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_INDEXED, palette);
+		byte[] pixels = ((DataBufferByte)img.getRaster().getDataBuffer()).getData();
+
+		// cells are painted a pixel smaller than their size to keep the grid visible as on the screen
+		int fill = cellSize > 2 ? cellSize - 1 : cellSize;
+
+		for ( int i = 0; i < frame.GetCellsCount(); i++ ) {
+			int x = frame.GetX(i), y = frame.GetY(i);
+			if ( x < 0 || y < 0 || x >= width || y >= height ) {
+				clipped = true;
+				continue;
+			}
+
+			byte clr = (byte)Math.min(frame.GetAge(i), 5);
+			for ( int py = 0; py < fill; py++ ) {
+				int row = (y * cellSize + py) * w + x * cellSize;
+				Arrays.fill(pixels, row, row + fill, clr);
+			}
+		}
+
+		return img;
+	}
+
+	/**
+	 * Appends an image to the animated GIF. Called on the GIF writer thread only
+	 * @param img -- image to write
+	 * @throws IOException
+	 */
+	private void WriteGifFrame(BufferedImage img) throws IOException {
+
+		boolean first = writer == null;
+		if ( first ) {
+			writer = ImageIO.getImageWritersByFormatName("gif").next();
+			gifStream = ImageIO.createImageOutputStream(target);
+			if ( gifStream == null )
+				throw new IOException("Could not open [" + target + "]");
+			writer.setOutput(gifStream);
+			writer.prepareWriteSequence(null);
+		}
+
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		IIOMetadata meta = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(img), param);
+		String fmt = meta.getNativeMetadataFormatName();
+		IIOMetadataNode root = (IIOMetadataNode)meta.getAsTree(fmt);
+
+		IIOMetadataNode gce = GetMetaNode(root, "GraphicControlExtension");
+		gce.setAttribute("disposalMethod", "none");
+		gce.setAttribute("userInputFlag", "FALSE");
+		gce.setAttribute("transparentColorFlag", "FALSE");
+		gce.setAttribute("delayTime", Integer.toString(frameDelay));
+		gce.setAttribute("transparentColorIndex", "0");
+
+		// the default metadata carries a stock palette, so the frame palette is set explicitly
+		IIOMetadataNode table = GetMetaNode(root, "LocalColorTable");
+		while ( table.getFirstChild() != null )
+			table.removeChild(table.getFirstChild());
+		table.setAttribute("sizeOfLocalColorTable", Integer.toString(palette.getMapSize()));
+		table.setAttribute("sortFlag", "FALSE");
+		for ( int i = 0; i < palette.getMapSize(); i++ ) {
+			IIOMetadataNode entry = new IIOMetadataNode("ColorTableEntry");
+			entry.setAttribute("index", Integer.toString(i));
+			entry.setAttribute("red", Integer.toString(palette.getRed(i)));
+			entry.setAttribute("green", Integer.toString(palette.getGreen(i)));
+			entry.setAttribute("blue", Integer.toString(palette.getBlue(i)));
+			table.appendChild(entry);
+		}
+
+		// loop the animation forever, the extension belongs to the first image only
+		if ( first ) {
+			IIOMetadataNode ext = new IIOMetadataNode("ApplicationExtension");
+			ext.setAttribute("applicationID", "NETSCAPE");
+			ext.setAttribute("authenticationCode", "2.0");
+			ext.setUserObject(new byte[] {1, 0, 0});
+			GetMetaNode(root, "ApplicationExtensions").appendChild(ext);
+		}
+
+		meta.setFromTree(fmt, root);
+		writer.writeToSequence(new IIOImage(img, null, meta), param);
+	}
+
+	private static IIOMetadataNode GetMetaNode(IIOMetadataNode root, String name) {
+
+		for ( int i = 0; i < root.getLength(); i++ )
+			if ( root.item(i).getNodeName().equalsIgnoreCase(name) )
+				return (IIOMetadataNode)root.item(i);
+
+		IIOMetadataNode node = new IIOMetadataNode(name);
+		root.appendChild(node);
+
+		return node;
+	}
+
+	/**
+	 * Creates the image palette. Index 0 is background, indexes from 1 to 5 are cell ages,
+	 * the rest are unused
+	 * @return color model
+	 */
+	private static IndexColorModel CreatePalette() {
+
+		// GIF color tables have a power of two entries
+		byte[] r = new byte[8], g = new byte[8], b = new byte[8];
+
+		for ( int i = 0; i < 6; i++ ) {
+			Color clr = i == 0 ? Color.WHITE : LifeDisplay.GetAgeColor(i);
+			r[i] = (byte)clr.getRed();
+			g[i] = (byte)clr.getGreen();
+			b[i] = (byte)clr.getBlue();
+		}
+
+		return new IndexColorModel(8, 8, r, g, b);
+	}
+
+	private void Fail(Throwable e) {
+		if ( failure == null )
+			failure = e;
+	}
+
+	private void CheckFailure() {
+		if ( failure != null )
+			throw new RuntimeException("Frame export failed: " + failure.getMessage(), failure);
+	}
+
+	private static ThreadFactory DaemonThreads(final String name) {
+		return new ThreadFactory() {
+			private int counter = 0;
+
+			public synchronized Thread newThread(Runnable r) {
+				Thread t = new Thread(r, name + "-" + counter++);
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+}
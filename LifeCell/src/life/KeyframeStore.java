@@ -0,0 +1,244 @@
+package life;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Keeps compressed flatland snapshots every few generations and allows to seek
+ * the flatland to any generation by restoring the nearest earlier keyframe and
+ * simulating forward from it.
+ * Recent keyframes are held in a bounded LRU cache, evicted ones are spilled
+ * to disk if spill directory is given or forgotten otherwise.
+ * The keyframe of the very first recorded generation is never evicted.
+ */
+public class KeyframeStore {
+
+	private Flatland flatland;
+	private int interval;
+	private File spillDir;
+
+	private int baseGeneration;
+	private byte[] baseFrame;
+
+	private LinkedHashMap<Integer, byte[]> cache;	// generation -> compressed snapshot, in access order
+	private TreeSet<Integer> keyframes;				// generations of all available keyframes (cached and spilled)
+	private Set<Integer> spilled;					// generations of keyframes stored on disk
+	private int lastGeneration;						// the latest generation the flatland has reached
+
+	/**
+	 * Creates a keyframe store for the flatland.
+	 * The current flatland state becomes the base keyframe
+	 * @param fland -- flatland to take keyframes from
+	 * @param interval -- number of generations between keyframes
+	 * @param capacity -- number of keyframes to keep in memory
+	 * @param spillDir -- directory for evicted keyframes. If null, evicted keyframes are dropped
+	 */
+	public KeyframeStore(Flatland fland, int interval, final int capacity, File spillDir) {
+
+		if ( interval < 1 || capacity < 1 )
+			throw new RuntimeException("Invalid keyframe interval [" + interval + "] or capacity [" + capacity + "]");
+
+		if ( spillDir != null && !spillDir.isDirectory() && !spillDir.mkdirs() )
+			throw new RuntimeException("Could not create keyframe spill directory [" + spillDir + "]");
+
+		flatland = fland;
+		this.interval = interval;
+		this.spillDir = spillDir;
+
+		keyframes = new TreeSet<Integer>();
+		spilled = new HashSet<Integer>();
+		cache = new LinkedHashMap<Integer, byte[]>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+				if ( size() <= capacity )
+					return false;
+
+				Evict(eldest.getKey(), eldest.getValue());
+				return true;
+			}
+		};
+
+		baseGeneration = fland.GetGeneration();
+		baseFrame = Compress(fland);
+		lastGeneration = baseGeneration;
+	}
+
+	public int GetInterval() {
+		return interval;
+	}
+
+	public int GetBaseGeneration() {
+		return baseGeneration;
+	}
+
+	/**
+	 * Returns the latest generation the flatland has ever reached
+	 * @return generation number
+	 */
+	public int GetLastGeneration() {
+		return lastGeneration;
+	}
+
+	/**
+	 * Registers the current flatland generation.
+	 * Should be called after every flatland.NextGeneration() made outside of the store.
+	 * Takes a keyframe if the generation falls on the interval and there is no keyframe for it yet.
+	 */
+	public void Record() {
+
+		int gen = flatland.GetGeneration();
+
+		if ( gen > lastGeneration )
+			lastGeneration = gen;
+
+		if ( gen == baseGeneration || gen % interval != 0 || keyframes.contains(gen) )
+			return;
+
+		keyframes.add(gen);
+		cache.put(gen, Compress(flatland));
+	}
+
+	/**
+	 * Brings the flatland to the given generation.
+	 * Restores the nearest keyframe before the generation and simulates forward from it.
+	 * If the generation is ahead of the current one and closer than any keyframe, just steps forward.
+	 * @param gen -- generation to seek to. Couldn't be earlier than the base generation
+	 */
+	public void SeekTo(int gen) {
+
+		if ( gen < baseGeneration )
+			throw new RuntimeException("Generation [" + gen + "] is earlier than the first keyframe [" + baseGeneration + "]");
+
+		int curr = flatland.GetGeneration();
+		if ( gen == curr )
+			return;
+
+		Integer key = keyframes.floor(gen);
+		int from = key == null ? baseGeneration : key;
+
+		// restore the keyframe only if stepping from the current generation is longer
+		if ( gen < curr || from > curr ) {
+			byte[] frame = from == baseGeneration ? baseFrame : Load(from);
+			Decompress(frame, flatland);
+		}
+
+		while ( flatland.GetGeneration() < gen ) {
+			flatland.NextGeneration();
+			Record();
+		}
+	}
+
+	/**
+	 * Removes all the spilled keyframe files
+	 */
+	public void Close() {
+		for ( int gen : spilled )
+			SpillFile(gen).delete();
+
+		keyframes.removeAll(spilled);
+		spilled.clear();
+	}
+
+	/**
+	 * Returns compressed keyframe for generation gen from cache or disk
+	 * @param gen -- keyframe generation
+	 * @return compressed snapshot
+	 */
+	private byte[] Load(int gen) {
+
+		byte[] frame = cache.get(gen);
+		if ( frame != null )
+			return frame;
+
+		if ( !spilled.contains(gen) )
+			throw new RuntimeException("There is no keyframe for generation [" + gen + "]");
+
+		try ( DataInputStream in = new DataInputStream(new FileInputStream(SpillFile(gen))) ) {
+			frame = new byte[in.readInt()];
+			in.readFully(frame);
+		}
+		catch ( IOException e ) {
+			throw new RuntimeException("Could not read keyframe [" + gen + "]: " + e.getMessage(), e);
+		}
+
+		// loaded keyframe is likely to be used again soon
+		spilled.remove(gen);
+		SpillFile(gen).delete();
+		cache.put(gen, frame);
+
+		return frame;
+	}
+
+	/**
+	 * Moves an evicted keyframe to disk or forgets it if there is no spill directory
+	 * @param gen -- keyframe generation
+	 * @param frame -- compressed snapshot
+	 */
+	private void Evict(int gen, byte[] frame) {
+
+		if ( spillDir == null ) {
+			keyframes.remove(gen);
+			return;
+		}
+
+		File file = SpillFile(gen);
+		try ( DataOutputStream out = new DataOutputStream(new FileOutputStream(file)) ) {
+			out.writeInt(frame.length);
+			out.write(frame);
+		}
+		catch ( IOException e ) {
+			throw new RuntimeException("Could not spill keyframe [" + gen + "]: " + e.getMessage(), e);
+		}
+
+		file.deleteOnExit();
+		spilled.add(gen);
+	}
+
+	private File SpillFile(int gen) {
+		return new File(spillDir, "keyframe-" + gen + ".lkf");
+	}
+
+	/**
+	 * Makes a compressed snapshot of the flatland
+	 * @param fland -- flatland to take a snapshot of
+	 * @return deflated snapshot bytes
+	 */
+	static byte[] Compress(Flatland fland) {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		// a given deflater isn't ended by the stream
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+		try ( DataOutputStream out = new DataOutputStream(
+										new BufferedOutputStream(
+											new DeflaterOutputStream(bytes, deflater))) ) {
+			fland.WriteSnapshot(out);
+		}
+		catch ( IOException e ) {
+			throw new RuntimeException("Could not take a flatland snapshot: " + e.getMessage(), e);
+		}
+		finally {
+			deflater.end();
+		}
+
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Restores the flatland from a compressed snapshot
+	 * @param frame -- deflated snapshot bytes
+	 * @param fland -- flatland to restore
+	 */
+	static void Decompress(byte[] frame, Flatland fland) {
+
+		try ( DataInputStream in = new DataInputStream(
+									  new BufferedInputStream(
+										  new InflaterInputStream(new ByteArrayInputStream(frame)))) ) {
+			fland.ReadSnapshot(in);
+		}
+		catch ( IOException e ) {
+			throw new RuntimeException("Could not restore a flatland snapshot: " + e.getMessage(), e);
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package life;
 
+import java.io.*;
 import java.util.*;
 import javax.swing.*;
 import java.awt.*;
@@ -53,6 +54,39 @@ public class LifeCells {
 		
 		desert.AddNewColony(new Point(50, 80), Colony.ConvertArr2PointsList(pattern4, 5, 11));
 
+		// -Dlife.metrics=true publishes the flatland metrics through JMX,
+		// -Dlife.metrics.csv=<file> also writes them into a CSV file
+		if ( Boolean.getBoolean("life.metrics") ) {
+			LifeMetrics metrics = new LifeMetrics();
+			metrics.Register("desert");
+			
+			String csv = System.getProperty("life.metrics.csv");
+			if ( csv != null )
+				try {
+					final CsvMetricsSink sink = new CsvMetricsSink(new FileWriter(csv));
+					metrics.AddSink(sink);
+					// the sink buffers lines, so the rest of them is written out on exit
+					Runtime.getRuntime().addShutdownHook(new Thread() {
+						public void run() {
+							sink.Close();
+						}
+					});
+				}
+				catch ( IOException e ) {
+					throw new RuntimeException("Could not open metrics file [" + csv + "]: " + e.getMessage(), e);
+				}
+			
+			desert.SetMetrics(metrics);
+		}
+		
+		// life-cells -export png|gif <target> [-every N] [-generations N] [-cell pixels] [-torus WxH]
+		// runs the flatland without GUI and records it into images,
+		// -torus runs the same cells on a fixed-size torus instead
+		if ( args.length > 0 ) {
+			RunExport(desert, args);
+			return;
+		}
+		
 		SwingUtilities.invokeLater(new Runnable() {
 			public void run() {
 				CreateAndShowGUI(desert);
@@ -72,6 +106,86 @@ public class LifeCells {
 */	
 	}
 	
+	/**
+	 * Runs the flatland for a number of generations recording it into images
+	 * @param fland -- flatland to run
+	 * @param args -- command line arguments
+	 */
+	private static void RunExport(Flatland fland, String[] args) {
+		
+		FrameExporter.Format format = null;
+		File target = null;
+		int every = 1, generations = 100, cellSize = 4;
+		LifeEngine engine = fland;
+		
+		for ( int i = 0; i < args.length; i++ ) {
+			if ( i + 1 >= args.length )
+				throw new RuntimeException("There is no value for argument " + args[i]);
+			
+			switch ( args[i] ) {
+				case "-export" :
+					format = args[++i].equalsIgnoreCase("gif") ? FrameExporter.Format.ANIMATED_GIF : FrameExporter.Format.PNG_SEQUENCE;
+					if ( i + 1 >= args.length )
+						throw new RuntimeException("There is no export target");
+					target = new File(args[++i]);
+					break;
+				case "-every" :			every = Integer.parseInt(args[++i]);		break;
+				case "-generations" :	generations = Integer.parseInt(args[++i]);	break;
+				case "-cell" :			cellSize = Integer.parseInt(args[++i]);		break;
+				case "-torus" :			engine = CreateTorus(fland, args[++i]);		break;
+				default:
+					throw new RuntimeException("Unknown argument " + args[i]);
+			}
+		}
+		
+		if ( format == null )
+			throw new RuntimeException("Usage: -export png|gif <target> [-every N] [-generations N] [-cell pixels] [-torus WxH]");
+		
+		int encoders = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		final FrameExporter exporter = new FrameExporter(target, format, every, cellSize, encoders, 4 * encoders);
+		
+		// the torus doesn't grow, so GIF frames needn't wait for the largest canvas
+		if ( format == FrameExporter.Format.ANIMATED_GIF && engine instanceof TorusLife )
+			exporter.SetCanvasSize(engine.GetBounds()[0], engine.GetBounds()[1]);
+		
+		// frames are handed to the exporter while the engine makes the next generation
+		java.util.List<LifePipeline.Consumer> consumers = new ArrayList<LifePipeline.Consumer>();
+		consumers.add(new LifePipeline.Consumer() {
+			public void Consume(LifeFrame frame) {
+				exporter.Capture(frame);
+			}
+		});
+		
+		LifePipeline pipeline = new LifePipeline(engine, consumers);
+		pipeline.Run(generations);
+		exporter.Close();
+	}
+	
+	/**
+	 * Moves the flatland cells onto a torus
+	 * @param fland -- flatland with the cells
+	 * @param size -- torus size as WxH
+	 * @return loaded torus
+	 */
+	private static TorusLife CreateTorus(Flatland fland, String size) {
+		
+		String[] wh = size.toLowerCase().split("x");
+		if ( wh.length != 2 )
+			throw new RuntimeException("Invalid torus size [" + size + "], should be WxH");
+		
+		final java.util.List<Point> cells = new ArrayList<Point>();
+		fland.ForEachCell(new CellVisitor() {
+			public void Visit(int x, int y, int age) {
+				cells.add(new Point(x, y));
+			}
+		});
+		
+		TorusLife torus = new TorusLife(Integer.parseInt(wh[0]), Integer.parseInt(wh[1]));
+		torus.Load(cells);
+		
+		return torus;
+	}
+	
 	private static void CreateAndShowGUI(Flatland fland) {
 		LifeWindow wnd = new LifeWindow(fland);
 		wnd.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -0,0 +1,758 @@
+package life;
+
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+
+import javax.imageio.*;
+import javax.imageio.stream.*;
+
+/**
+ * Test class for the project
+ */
+public class LifeCellsTst {
+
+	/**
+	 * Tests it all
+	 * @param args
+	 */
+	public static void main(String[] args) {
+
+		EngineConformanceTest();
+		
+		ReplayTest();
+
+		KeyframeTest();
+		
+		DistributedTest();
+
+		DistributedColoniesTest();
+
+		CensusTest();
+
+		TorusTest();
+
+		AgePlaneTest();
+
+		PipelineTest();
+
+		MetricsTest();
+
+		PyramidTest();
+
+		ExportTest();
+
+	}
+
+	/**
+	 * Runs random soups through all registered engines
+	 */
+	private static void EngineConformanceTest() {
+		LifeEngineConformance.Run(1, 30, 150, System.out);
+	}
+	
+	/**
+	 * Records the acorn run and compares replayed generations with the simulated ones
+	 */
+	private static void ReplayTest() {
+		
+		int[][] acorn = {
+						 {0, 1, 0, 0, 0, 0, 0,},
+						 {0, 0, 0, 1, 0, 0, 0,},
+						 {1, 1, 0, 0, 1, 1, 1,},
+						};
+		
+		Flatland fland = new Flatland();
+		fland.AddNewColony(new Point(20, 20), Colony.ConvertArr2PointsList(acorn, 3, 7));
+		
+		try {
+			File log = File.createTempFile("acorn", ".lrl");
+			log.deleteOnExit();
+			
+			List<long[]> generations = new ArrayList<long[]>();
+			generations.add(fland.Snapshot());
+			
+			ReplayRecorder recorder = new ReplayRecorder(fland, log, 100);
+			for ( int i = 0; i < 500; i++ ) {
+				fland.NextGeneration();
+				recorder.Record();
+				generations.add(fland.Snapshot());
+			}
+			recorder.Close();
+			
+			Replayer replayer = new Replayer(log);
+			Flatland replayed = new Flatland();
+			boolean same = true;
+			for ( int gen = 500; gen >= 0 && same; gen -= 7 ) {
+				replayer.SeekTo(gen);
+				replayer.LoadInto(replayed);
+				same = Arrays.equals(generations.get(gen), replayed.Snapshot());
+			}
+			replayer.Close();
+			
+			System.out.printf("Replay of 500 generations from %d bytes log -- %s\n", log.length(), same ? "OK" : "FAILED");
+		}
+		catch ( IOException e ) {
+			System.out.println("Exception fired: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Seeks the acorn back and forth through keyframes held in memory, spilled to disk
+	 * or dropped, and compares the generations with the simulated ones.
+	 * A snapshot round trip should keep cells with their ages
+	 */
+	private static void KeyframeTest() {
+
+		int[][] acorn = {
+						 {0, 1, 0, 0, 0, 0, 0,},
+						 {0, 0, 0, 1, 0, 0, 0,},
+						 {1, 1, 0, 0, 1, 1, 1,},
+						};
+		final int generations = 400;
+
+		Flatland fland = new Flatland();
+		fland.AddNewColony(new Point(20, 20), Colony.ConvertArr2PointsList(acorn, 3, 7));
+
+		List<long[]> expected = new ArrayList<long[]>();
+		Flatland reference = new Flatland();
+		reference.AddNewColony(new Point(20, 20), Colony.ConvertArr2PointsList(acorn, 3, 7));
+		for ( int gen = 0; gen <= generations; gen++ ) {
+			expected.add(reference.Snapshot());
+			reference.NextGeneration();
+		}
+
+		File dir = null;
+		try {
+			dir = File.createTempFile("keyframes", "");
+			dir.delete();
+
+			// 20 keyframes, 4 of them in memory
+			KeyframeStore spilling = new KeyframeStore(fland, 20, 4, dir);
+			spilling.SeekTo(generations);
+			int spilledCount = dir.list().length;
+
+			// a keyframe read back from disk moves to memory
+			File spilled = new File(dir, "keyframe-260.lkf");
+			boolean same = fland.GetGeneration() == generations && spilledCount == 20 - 4 && spilled.exists();
+			int[] seeks = {390, 15, 263, 264, 100, 399, 0, 377, 40, 41, 400, 7};
+			for ( int i = 0; i < seeks.length && same; i++ ) {
+				spilling.SeekTo(seeks[i]);
+				same = fland.GetGeneration() == seeks[i] && Arrays.equals(expected.get(seeks[i]), fland.Snapshot()) &&
+					   (seeks[i] != 263 || !spilled.exists());
+			}
+			spilling.Close();
+			same = same && dir.list().length == 0;
+			System.out.printf("Keyframe seeks with %d spilled keyframes -- %s\n", spilledCount, same ? "OK" : "FAILED");
+
+			// without a spill directory evicted keyframes are dropped, seeks go from the base
+			Flatland other = new Flatland();
+			other.AddNewColony(new Point(20, 20), Colony.ConvertArr2PointsList(acorn, 3, 7));
+			KeyframeStore dropping = new KeyframeStore(other, 20, 2, null);
+			dropping.SeekTo(generations);
+			same = dropping.GetLastGeneration() == generations;
+			for ( int gen = generations - 3; gen >= 0 && same; gen -= 37 ) {
+				dropping.SeekTo(gen);
+				same = Arrays.equals(expected.get(gen), other.Snapshot());
+			}
+			System.out.printf("Keyframe seeks with dropped keyframes -- %s\n", same ? "OK" : "FAILED");
+
+			// a snapshot round trip keeps cells with their ages
+			spilling = new KeyframeStore(fland, 20, 4, null);
+			spilling.SeekTo(250);
+			Flatland restored = new Flatland();
+			KeyframeStore.Decompress(KeyframeStore.Compress(fland), restored);
+			same = restored.GetGeneration() == 250 && Ages(restored).equals(Ages(fland)) && Ages(fland).containsValue(2);
+			System.out.printf("Snapshot round trip of %d cells with ages -- %s\n", fland.GetPopulation(), same ? "OK" : "FAILED");
+		}
+		catch ( IOException e ) {
+			System.out.println("Exception fired: " + e.getMessage());
+		}
+		finally {
+			if ( dir != null && dir.isDirectory() ) {
+				for ( File f : dir.listFiles() )
+					f.delete();
+				dir.delete();
+			}
+		}
+	}
+
+	/**
+	 * Collects ages of the engine cells
+	 * @return age by packed position
+	 */
+	private static Map<Long, Integer> Ages(LifeEngine engine) {
+		final Map<Long, Integer> ages = new HashMap<Long, Integer>();
+
+		engine.ForEachCell(new CellVisitor() {
+			public void Visit(int x, int y, int age) {
+				ages.put(Point.Pack(x, y), age);
+			}
+		});
+
+		return ages;
+	}
+
+	/**
+	 * Runs the acorn on the local flatland and on three worker processes
+	 * in both strip orientations and compares generations
+	 */
+	private static void DistributedTest() {
+
+		int[][] acorn = {
+						 {0, 1, 0, 0, 0, 0, 0,},
+						 {0, 0, 0, 1, 0, 0, 0,},
+						 {1, 1, 0, 0, 1, 1, 1,},
+						};
+
+		for ( DistributedFlatland.Orientation o : DistributedFlatland.Orientation.values() ) {
+			Flatland local = new Flatland();
+			local.AddNewColony(new Point(20, 20), Colony.ConvertArr2PointsList(acorn, 3, 7));
+
+			DistributedFlatland dist = new DistributedFlatland(local, 3, o);
+			try {
+				for ( int step = 0; step < 10; step++ ) {
+					for ( int i = 0; i < 25; i++ )
+						local.NextGeneration();
+					dist.Step(25);
+
+					Flatland gathered = dist.Gather();
+					boolean same = Arrays.equals(local.Snapshot(), gathered.Snapshot());
+					System.out.printf("%s strips, generation %d: %d local cells, %d distributed cells -- %s\n",
+									  o, dist.GetGeneration(), local.Snapshot().length, dist.GetPopulation(),
+									  same ? "OK" : "FAILED");
+					if ( !same )
+						break;
+				}
+			}
+			finally {
+				dist.Close();
+			}
+		}
+	}
+
+	/**
+	 * Runs several colonies on workers. Far apart colonies should go as on the local
+	 * flatland. Close ones are run as plain Life on the union of their cells, so they should
+	 * go as SparseLife loaded with all cells, and not as the local flatland
+	 */
+	private static void DistributedColoniesTest() {
+
+		int[][] glider = {
+						  {0, 1, 0,},
+						  {0, 0, 1,},
+						  {1, 1, 1,},
+						 };
+		int[][] rpentomino = {
+							  {0, 1, 1,},
+							  {1, 1, 0,},
+							  {0, 1, 0,},
+							 };
+
+		// glider and R-pentomino a column apart and a lone pair of them far away,
+		// colonies move their origins, so every flatland gets its own
+		int[][] origins = {{10, 10}, {14, 10}, {200, 200}, {260, 200}};
+		Flatland local = new Flatland();
+		for ( int i = 0; i < origins.length; i++ )
+			local.AddNewColony(new Point(origins[i][0], origins[i][1]), Colony.ConvertArr2PointsList(i % 2 == 0 ? glider : rpentomino, 3, 3));
+
+		final List<Point> near = new ArrayList<Point>();
+		local.ForEachCell(new CellVisitor() {
+			public void Visit(int x, int y, int age) {
+				near.add(new Point(x, y));
+			}
+		});
+		SparseLife union = new SparseLife();
+		union.Load(near);
+
+		// the far pair alone on a flatland of its own
+		Flatland far = new Flatland();
+		for ( int i = 2; i < origins.length; i++ )
+			far.AddNewColony(new Point(origins[i][0], origins[i][1]), Colony.ConvertArr2PointsList(i % 2 == 0 ? glider : rpentomino, 3, 3));
+
+		DistributedFlatland farDist = new DistributedFlatland(far, 2, DistributedFlatland.Orientation.VERTICAL),
+							dist = new DistributedFlatland(local, 3, DistributedFlatland.Orientation.VERTICAL);
+		try {
+			boolean same = true, differs = false;
+			for ( int step = 0; step < 4 && same; step++ ) {
+				local.Step(15);
+				union.Step(15);
+				dist.Step(15);
+				far.Step(15);
+				farDist.Step(15);
+
+				same = Arrays.equals(union.Snapshot(), dist.Gather().Snapshot()) &&
+					   Arrays.equals(far.Snapshot(), farDist.Gather().Snapshot());
+				differs = differs || !Arrays.equals(local.Snapshot(), union.Snapshot());
+			}
+			same = same && differs;
+
+			System.out.printf("%d colonies on workers, generation %d: %d cells as the union of colonies -- %s\n",
+							  origins.length, dist.GetGeneration(), dist.GetPopulation(), same ? "OK" : "FAILED");
+		}
+		finally {
+			dist.Close();
+			farDist.Close();
+		}
+	}
+
+	/**
+	 * Scatters objects in different orientations and phases and checks the census
+	 * of a few generations, oscillators should be known in all their phases
+	 */
+	private static void CensusTest() {
+
+		String[][] objects = {
+							  {"oo", "oo"},							// block
+							  {".oo.", "o..o", ".oo."},				// beehive
+							  {".o", "o.o", "o.o", ".o"},			// beehive, rotated
+							  {"ooo"},								// blinker
+							  {"o", "o", "o"},						// blinker, other phase
+							  {".o.", "..o", "ooo"},				// glider
+							  {"ooo", "o..", ".o."},				// glider, rotated
+							  {"o.o", ".oo", ".o."},				// glider, other phase
+							  {".o.", "o..", "ooo"},				// glider, mirrored
+							  {"oo.", "o.o", ".o."},				// boat
+							  {"oo", "o."},							// unknown, becomes a block
+							  {".ooo", "ooo."},						// toad
+							  {"oo..", "o...", "...o", "..oo"},		// beacon, the phase of two islands
+							  {
+							   "..ooo...ooo..",
+							   ".............",
+							   "o....o.o....o",
+							   "o....o.o....o",
+							   "o....o.o....o",
+							   "..ooo...ooo..",
+							   ".............",
+							   "..ooo...ooo..",
+							   "o....o.o....o",
+							   "o....o.o....o",
+							   "o....o.o....o",
+							   ".............",
+							   "..ooo...ooo..",
+							  },										// pulsar
+							 };
+
+		List<Point> cells = new ArrayList<Point>();
+		for ( int i = 0; i < objects.length; i++ )
+			for ( int y = 0; y < objects[i].length; y++ )
+				for ( int x = 0; x < objects[i][y].length(); x++ )
+					if ( objects[i][y].charAt(x) == 'o' )
+						cells.add(new Point(i * 20 + x, (i % 3) * 20 + y));
+
+		SparseLife engine = new SparseLife();
+		engine.Load(cells);
+		Census census = new Census();
+
+		SortedMap<String, Integer> expected = new TreeMap<String, Integer>();
+		expected.put("beehive", 2);
+		expected.put("blinker", 2);
+		expected.put("block", 1);
+		expected.put("boat", 1);
+		expected.put("glider", 4);
+		expected.put("toad", 1);
+		expected.put("beacon", 1);
+		expected.put("pulsar", 1);
+		expected.put("unknown 3 cells #1", 1);
+
+		for ( int gen = 0; gen < 4; gen++ ) {
+			if ( gen == 1 ) {
+				expected.remove("unknown 3 cells #1");
+				expected.put("block", 2);
+			}
+
+			SortedMap<String, Integer> counts = census.Take(engine);
+			boolean same = counts.equals(expected);
+			System.out.printf("Census, generation %d: %s -- %s\n", gen, counts, same ? "OK" : "FAILED");
+			engine.Step(1);
+		}
+	}
+
+	/**
+	 * Runs a glider around a small torus, it should come back to the same cells
+	 * after crossing the torus edges
+	 */
+	private static void TorusTest() {
+
+		int[][] glider = {
+						  {0, 1, 0,},
+						  {0, 0, 1,},
+						  {1, 1, 1,},
+						 };
+
+		TorusLife torus = new TorusLife(16, 16);
+		torus.Load(Colony.ConvertArr2PointsList(glider, 3, 3));
+
+		final long[] start = new long[5];
+		final int[] count = {0};
+		torus.ForEachCell(new CellVisitor() {
+			public void Visit(int x, int y, int age) {
+				start[count[0]++] = Point.Pack(x, y);
+			}
+		});
+
+		boolean same = true;
+		for ( int gen = 1; gen <= 64 && same; gen++ ) {
+			torus.Step(1);
+			same = torus.GetPopulation() == 5;
+		}
+
+		final long[] end = new long[5];
+		count[0] = 0;
+		torus.ForEachCell(new CellVisitor() {
+			public void Visit(int x, int y, int age) {
+				end[count[0]++] = Point.Pack(x, y);
+			}
+		});
+		same = same && Arrays.equals(start, end);
+
+		System.out.printf("Glider around 16x16 torus in %d generations -- %s\n", torus.GetGeneration(), same ? "OK" : "FAILED");
+	}
+
+	/**
+	 * Steps a block until its ages saturate, then moves a glider across the plane
+	 * as a colony does and compares it with SparseLife while the plane grows and shrinks
+	 */
+	private static void AgePlaneTest() {
+
+		AgePlane plane = new AgePlane();
+		for ( int y = 0; y < 2; y++ )
+			for ( int x = 0; x < 2; x++ )
+				plane.Set(x, y, 1);
+
+		List<Point> born = new ArrayList<Point>(), died = new ArrayList<Point>();
+		int[] box = new int[4];
+		boolean ok = true;
+		for ( int gen = 1; gen <= 300 && ok; gen++ )
+			ok = plane.Step(2, 2, born, died, box) == 4 && born.isEmpty() && died.isEmpty() &&
+				 plane.Get(1, 1) == Math.min(gen + 1, AgePlane.MAX_AGE);
+		plane.Set(-40, 70, 1000);
+		ok = ok && plane.Get(-40, 70) == AgePlane.MAX_AGE && plane.Get(0, 0) == AgePlane.MAX_AGE;
+		System.out.printf("Age plane block saturates at %d -- %s\n", AgePlane.MAX_AGE, ok ? "OK" : "FAILED");
+
+		int[][] glider = {
+						  {0, 1, 0,},
+						  {0, 0, 1,},
+						  {1, 1, 1,},
+						 };
+		List<Point> cells = Colony.ConvertArr2PointsList(glider, 3, 3);
+		SparseLife reference = new SparseLife();
+		reference.Load(cells);
+		plane = new AgePlane();
+		for ( Point p : cells )
+			plane.Set(p.x, p.y, 1);
+
+		// the colony keeps its cells in [0:0]-[width:height], so the plane is moved after every step
+		int width = 3, height = 3;
+		for ( int gen = 1; gen <= 400 && ok; gen++ ) {
+			born.clear();
+			died.clear();
+			ok = plane.Step(width, height, born, died, box) == 5 && born.size() == died.size();
+			plane.Translate(-box[0], -box[1]);
+			width = box[2] - box[0] + 1;
+			height = box[3] - box[1] + 1;
+			plane.Fit(width, height);
+
+			reference.Step(1);
+			final List<Long> packed = new ArrayList<Long>();
+			plane.ForEachCell(new CellVisitor() {
+				public void Visit(int x, int y, int age) {
+					packed.add(Point.Pack(x, y));
+				}
+			});
+			long[] got = new long[packed.size()];
+			for ( int i = 0; i < got.length; i++ )
+				got[i] = packed.get(i);
+			ok = ok && Arrays.equals(Normalize(got), reference.Snapshot());
+		}
+		System.out.printf("Age plane glider of 400 generations -- %s\n", ok ? "OK" : "FAILED");
+	}
+
+	/**
+	 * Runs the acorn through the pipeline with a fast and a slow consumer and
+	 * compares the frames they got with generations made one by one
+	 */
+	private static void PipelineTest() {
+
+		int[][] acorn = {
+						 {0, 1, 0, 0, 0, 0, 0,},
+						 {0, 0, 0, 1, 0, 0, 0,},
+						 {1, 1, 0, 0, 1, 1, 1,},
+						};
+		final int generations = 200;
+
+		SparseLife reference = new SparseLife();
+		reference.Load(Colony.ConvertArr2PointsList(acorn, 3, 7));
+		final List<Long> expected = new ArrayList<Long>();
+		for ( int gen = 0; gen <= generations; gen++ ) {
+			expected.add(reference.GetPopulation() * 1000003 + Arrays.hashCode(reference.Snapshot()));
+			reference.Step(1);
+		}
+
+		final List<List<Long>> got = new ArrayList<List<Long>>();
+		List<LifePipeline.Consumer> consumers = new ArrayList<LifePipeline.Consumer>();
+		for ( int i = 0; i < 2; i++ ) {
+			final List<Long> frames = new ArrayList<Long>();
+			final boolean slow = i == 1;
+			got.add(frames);
+			consumers.add(new LifePipeline.Consumer() {
+				public void Consume(LifeFrame frame) {
+					long[] cells = new long[frame.GetCellsCount()];
+					for ( int c = 0; c < cells.length; c++ )
+						cells[c] = Point.Pack(frame.GetX(c), frame.GetY(c));
+					frames.add(frame.GetCellsCount() * 1000003L + Arrays.hashCode(Normalize(cells)));
+					if ( slow )
+						Thread.yield();
+				}
+			});
+		}
+
+		Flatland fland = new Flatland();
+		fland.Load(Colony.ConvertArr2PointsList(acorn, 3, 7));
+		new LifePipeline(fland, consumers).Run(generations);
+
+		boolean same = got.get(0).equals(expected) && got.get(1).equals(expected);
+		System.out.printf("Pipeline of %d generations with %d consumers -- %s\n", generations, consumers.size(), same ? "OK" : "FAILED");
+	}
+
+	/**
+	 * Runs two colonies with metrics on and checks the counters against the flatland
+	 * and the CSV lines written by the sink
+	 */
+	private static void MetricsTest() {
+
+		int[][] glider = {
+						  {0, 1, 0,},
+						  {0, 0, 1,},
+						  {1, 1, 1,},
+						 };
+		int[][] blinker = {
+						   {1, 1, 1,},
+						  };
+		final int generations = 40;
+
+		Flatland fland = new Flatland();
+		fland.AddNewColony(new Point(10, 10), Colony.ConvertArr2PointsList(glider, 3, 3));
+		fland.AddNewColony(new Point(40, 10), Colony.ConvertArr2PointsList(blinker, 1, 3));
+
+		LifeMetrics metrics = new LifeMetrics();
+		StringWriter csv = new StringWriter();
+		CsvMetricsSink sink = new CsvMetricsSink(csv);
+		metrics.AddSink(sink);
+		fland.SetMetrics(metrics);
+
+		boolean ok = true;
+		long births = 0, deaths = 0, population = fland.GetPopulation();
+		for ( int gen = 0; gen < generations && ok; gen++ ) {
+			fland.NextGeneration();
+			births += metrics.getBirths();
+			deaths += metrics.getDeaths();
+
+			boolean slowest = false;
+			for ( LifeMetrics.ColonyTimes ct : metrics.GetColonyTimes() )
+				slowest = slowest || (ct.GetID() == metrics.getSlowestColony() && ct.GetTotalNanos() == metrics.getSlowestColonyNanos());
+
+			ok = metrics.getGeneration() == fland.GetGeneration() &&
+				 metrics.getPopulation() == fland.GetPopulation() &&
+				 metrics.getPopulation() == population + metrics.getBirths() - metrics.getDeaths() &&
+				 metrics.getColonies() == 2 && metrics.GetColonyTimes().size() == 2 && slowest;
+			population = fland.GetPopulation();
+		}
+		ok = ok && metrics.getTotalBirths() == births && metrics.getTotalDeaths() == deaths;
+
+		// lines stay in the buffer till the sink is closed
+		boolean buffered = csv.getBuffer().length() == 0;
+		sink.Close();
+		String[] lines = csv.toString().split("\\R");
+		ok = ok && buffered && lines.length == generations + 1 &&
+			 lines[generations].startsWith(generations + ",") &&
+			 lines[generations].split(",").length == lines[0].split(",").length;
+
+		System.out.printf("Metrics of %d generations, %d births, %d deaths -- %s\n", generations, births, deaths, ok ? "OK" : "FAILED");
+	}
+
+	/**
+	 * Updates the density pyramid generation by generation and after loads and snapshot
+	 * restores which repeat generation numbers, and compares its levels with block counts
+	 * made from the flatland cells
+	 */
+	private static void PyramidTest() {
+
+		int[][] acorn = {
+						 {0, 1, 0, 0, 0, 0, 0,},
+						 {0, 0, 0, 1, 0, 0, 0,},
+						 {1, 1, 0, 0, 1, 1, 1,},
+						};
+		int[][] rpentomino = {
+							  {0, 1, 1,},
+							  {1, 1, 0,},
+							  {0, 1, 0,},
+							 };
+
+		Flatland fland = new Flatland();
+		fland.Load(Colony.ConvertArr2PointsList(acorn, 3, 7));
+		DensityPyramid pyramid = new DensityPyramid(fland);
+
+		boolean same = true;
+		byte[] snapshot = null;
+		for ( int gen = 0; gen <= 300 && same; gen++ ) {
+			if ( gen == 150 )
+				snapshot = KeyframeStore.Compress(fland);
+			pyramid.Update();
+			same = SameDensity(fland, pyramid);
+			fland.NextGeneration();
+		}
+
+		// generation numbers repeat after a load and a snapshot restore
+		fland.Load(Colony.ConvertArr2PointsList(rpentomino, 3, 3));
+		fland.Step(301);
+		pyramid.Update();
+		same = same && SameDensity(fland, pyramid);
+
+		fland.Load(Colony.ConvertArr2PointsList(rpentomino, 3, 3));
+		fland.Step(151);
+		pyramid.Update();
+		same = same && SameDensity(fland, pyramid);
+		KeyframeStore.Decompress(snapshot, fland);
+		fland.NextGeneration();
+		pyramid.Update();
+		same = same && SameDensity(fland, pyramid);
+
+		System.out.printf("Density pyramid after generations, loads and restores -- %s\n", same ? "OK" : "FAILED");
+	}
+
+	/**
+	 * Counts flatland cells into the pyramid blocks and compares them with all levels
+	 * @return true if all levels have the right counts
+	 */
+	private static boolean SameDensity(Flatland fland, DensityPyramid pyramid) {
+		Point origin = pyramid.GetOriginBlock(0);
+
+		for ( int l = 1; l <= pyramid.GetMaxLevel(); l++ ) {
+			final int level = l, w = pyramid.GetLevelWidth(l), ox = origin.x, oy = origin.y;
+			final int[] counts = new int[w * pyramid.GetLevelHeight(l)];
+			fland.ForEachCell(new CellVisitor() {
+				public void Visit(int x, int y, int age) {
+					counts[((y + oy) >> level) * w + ((x + ox) >> level)]++;
+				}
+			});
+			if ( !Arrays.equals(counts, pyramid.GetLevel(l)) )
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Exports the growing acorn into PNG files and an animated GIF and reads them back.
+	 * Every image should have as many painted pixels as its frame has cells, and the GIF
+	 * screen should fit the largest frame
+	 */
+	private static void ExportTest() {
+
+		int[][] acorn = {
+						 {0, 1, 0, 0, 0, 0, 0,},
+						 {0, 0, 0, 1, 0, 0, 0,},
+						 {1, 1, 0, 0, 1, 1, 1,},
+						};
+		final int generations = 120, every = 10, cellSize = 3;
+
+		File dir = null, gif = null;
+		try {
+			dir = File.createTempFile("export", "");
+			dir.delete();
+			gif = File.createTempFile("export", ".gif");
+
+			List<LifeFrame> frames = new ArrayList<LifeFrame>();
+			Flatland fland = new Flatland();
+			fland.Load(Colony.ConvertArr2PointsList(acorn, 3, 7));
+			for ( int gen = 0; gen <= generations; gen++ ) {
+				frames.add(LifeFrame.Capture(fland));
+				fland.NextGeneration();
+			}
+
+			FrameExporter png = new FrameExporter(dir, FrameExporter.Format.PNG_SEQUENCE, every, cellSize, 2, 2),
+						  anim = new FrameExporter(gif, FrameExporter.Format.ANIMATED_GIF, every, cellSize, 2, 2);
+			for ( LifeFrame frame : frames ) {
+				png.Capture(frame);
+				anim.Capture(frame);
+			}
+			png.Close();
+			anim.Close();
+
+			boolean ok = dir.list().length == generations / every + 1;
+			int maxWidth = 0, maxHeight = 0;
+			for ( int gen = 0; gen <= generations && ok; gen += every ) {
+				LifeFrame frame = frames.get(gen);
+				BufferedImage img = ImageIO.read(new File(dir, String.format("gen-%08d.png", gen)));
+				ok = img.getWidth() == frame.GetWidth() * cellSize && img.getHeight() == frame.GetHeight() * cellSize &&
+					 PaintedPixels(img) == frame.GetCellsCount() * (cellSize - 1) * (cellSize - 1);
+				maxWidth = Math.max(maxWidth, frame.GetWidth());
+				maxHeight = Math.max(maxHeight, frame.GetHeight());
+			}
+			System.out.printf("PNG export of %d frames -- %s\n", dir.list().length, ok ? "OK" : "FAILED");
+
+			try ( ImageInputStream in = ImageIO.createImageInputStream(gif) ) {
+				ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+				reader.setInput(in);
+				int count = reader.getNumImages(true);
+				ok = count == generations / every + 1;
+				for ( int i = 0; i < count && ok; i++ )
+					ok = PaintedPixels(reader.read(i)) == frames.get(i * every).GetCellsCount() * (cellSize - 1) * (cellSize - 1);
+				reader.dispose();
+			}
+			try ( DataInputStream in = new DataInputStream(new FileInputStream(gif)) ) {
+				byte[] header = new byte[10];
+				in.readFully(header);
+				ok = ok && (header[6] & 0xFF | (header[7] & 0xFF) << 8) == maxWidth * cellSize &&
+						   (header[8] & 0xFF | (header[9] & 0xFF) << 8) == maxHeight * cellSize;
+			}
+			System.out.printf("Animated GIF export, %dx%d screen -- %s\n", maxWidth * cellSize, maxHeight * cellSize, ok ? "OK" : "FAILED");
+		}
+		catch ( IOException | RuntimeException e ) {
+			System.out.println("Export test -- FAILED: " + e);
+		}
+		finally {
+			if ( dir != null && dir.isDirectory() ) {
+				for ( File f : dir.listFiles() )
+					f.delete();
+				dir.delete();
+			}
+			if ( gif != null )
+				gif.delete();
+		}
+	}
+
+	/**
+	 * Counts pixels which aren't of the background color
+	 */
+	private static int PaintedPixels(BufferedImage img) {
+		int count = 0;
+
+		for ( int y = 0; y < img.getHeight(); y++ )
+			for ( int x = 0; x < img.getWidth(); x++ )
+				if ( (img.getRGB(x, y) & 0xFFFFFF) != 0xFFFFFF )
+					count++;
+
+		return count;
+	}
+
+	/**
+	 * Moves packed positions to the [0:0] corner and sorts them as LifeEngine.Snapshot does
+	 * @param cells -- packed positions
+	 * @return sorted packed positions
+	 */
+	private static long[] Normalize(long[] cells) {
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+		for ( long p : cells ) {
+			minX = Math.min(minX, Point.UnpackX(p));
+			minY = Math.min(minY, Point.UnpackY(p));
+		}
+
+		for ( int i = 0; i < cells.length; i++ )
+			cells[i] = Point.Pack(Point.UnpackX(cells[i]) - minX, Point.UnpackY(cells[i]) - minY);
+		Arrays.sort(cells);
+
+		return cells;
+	}
+}
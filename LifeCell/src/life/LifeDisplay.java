@@ -5,6 +5,7 @@ import java.util.List;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.*;
 
 public class LifeDisplay extends JLabel 
 						 implements Scrollable {
@@ -12,12 +13,37 @@ public class LifeDisplay extends JLabel
 	private Flatland flatland;
 	private int fWidth, fHeight;
 	
+	private int zoom;					// 0 shows every cell, L > 0 shows a pixel per 2^L x 2^L cells block
+	private DensityPyramid pyramid;
+	private static final int[] densityPalette = CreateDensityPalette();
+	private static final Color[] agePalette = CreateAgePalette();
+	
 	public LifeDisplay(Flatland fland) {
 		flatland = fland;
+		pyramid = new DensityPyramid(fland);
+		zoom = 0;
 		
 		this.setSize(fWidth + 1, fHeight + 1);
 	}
 	
+	public int GetZoom() {
+		return zoom;
+	}
+	
+	/**
+	 * Sets the zoom level
+	 * @param zoom -- 0 for cell view, 1 to DensityPyramid.MAX_LEVEL for density views
+	 */
+	public void SetZoom(int zoom) {
+		if ( zoom < 0 || zoom > DensityPyramid.MAX_LEVEL )
+			throw new RuntimeException("Invalid zoom level [" + zoom + "]");
+		
+		this.zoom = zoom;
+		ResetSize();
+		revalidate();
+		repaint();
+	}
+	
 	@Override
 	public Dimension getPreferredSize() {
 		ResetSize();
@@ -34,7 +60,7 @@ public class LifeDisplay extends JLabel
 			                              int orientation,
 			                              int direction)
 	{
-		return 11;
+		return zoom == 0 ? 11 : 16;
 	}
 	
 	@Override
@@ -42,7 +68,7 @@ public class LifeDisplay extends JLabel
 										   int orientaion,
 										   int direction)
 	{
-		return 55;
+		return zoom == 0 ? 55 : 128;
 	}
 	
 	@Override
@@ -61,30 +87,127 @@ public class LifeDisplay extends JLabel
 	public void paintComponent(Graphics g) {
 		super.paintComponent(g);
 		
+		if ( zoom > 0 ) {
+			PaintDensity(g);
+			return;
+		}
+		
 		for ( Colony col : flatland.GetColoniesList() ) {
-			for ( Cell cell : col.GetCells() ) {
-				switch ( cell.GetAge() ) {
-					case 1 :  g.setColor(Color.GREEN); 		break;
-					case 2 :  g.setColor(Color.YELLOW);		break;
-					case 3 :  g.setColor(Color.ORANGE);		break;
-					case 4 :  g.setColor(Color.RED);		break;
-					default:  g.setColor(Color.DARK_GRAY);  break;
+			if ( col.GetPopulation() == 0 )
+				continue;
+			
+			final int ox = col.GetOrigin().x * 11, oy = col.GetOrigin().y * 11;
+			final Graphics cg = g;
+			col.ForEachCell(new CellVisitor() {
+				public void Visit(int x, int y, int age) {
+					cg.setColor(agePalette[age]);
+					cg.fillRect(ox + x * 11 + 1, oy + y * 11 + 1, 10, 10);
 				}
-				g.fillRect(col.GetOrigin().x * 11 + cell.GetPosition().x * 11 + 1, 
-						   col.GetOrigin().y * 11 + cell.GetPosition().y * 11 + 1, 10, 10);
-				
-				g.setColor(Color.DARK_GRAY);
-				g.drawRect(col.GetOrigin().x * 11, 
-						   col.GetOrigin().y * 11, 
-						   col.width * 11 + 2, col.height * 11 + 2);
+			});
+			
+			g.setColor(Color.DARK_GRAY);
+			g.drawRect(ox, oy, col.width * 11 + 2, col.height * 11 + 2);
+		}
+		
+	}
+	
+	/**
+	 * Returns a color to paint the cell of the given age
+	 * @param age -- cell age
+	 * @return java.awt.Color
+	 */
+	public static Color GetAgeColor(int age) {
+		switch ( age ) {
+			case 1 :  return Color.GREEN;
+			case 2 :  return Color.YELLOW;
+			case 3 :  return Color.ORANGE;
+			case 4 :  return Color.RED;
+			default:  return Color.DARK_GRAY;
+		}
+	}
+	
+	/**
+	 * Creates a lookup table of colors for all possible cell ages
+	 * @return array of colors indexed by age
+	 */
+	private static Color[] CreateAgePalette() {
+		Color[] palette = new Color[AgePlane.MAX_AGE + 1];
+		
+		for ( int age = 0; age <= AgePlane.MAX_AGE; age++ )
+			palette[age] = GetAgeColor(age);
+		
+		return palette;
+	}
+	
+	/**
+	 * Paints the flatland density from the pyramid level of the current zoom.
+	 * Only visible pixels are painted, so it takes time proportional to the
+	 * viewport size regardless of the population
+	 * @param g -- graphics to paint on
+	 */
+	private void PaintDensity(Graphics g) {
+		
+		pyramid.Update();
+		if ( zoom > pyramid.GetMaxLevel() )
+			return;
+		
+		Rectangle clip = g.getClipBounds();
+		if ( clip == null )
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		if ( clip.width <= 0 || clip.height <= 0 )
+			return;
+		
+		BufferedImage img = new BufferedImage(clip.width, clip.height, BufferedImage.TYPE_INT_RGB);
+		int[] pixels = ((DataBufferInt)img.getRaster().getDataBuffer()).getData();
+		
+		int[] counts = pyramid.GetLevel(zoom);
+		int lw = pyramid.GetLevelWidth(zoom),
+			lh = pyramid.GetLevelHeight(zoom),
+			full = 1 << (2 * zoom);
+		Point ob = pyramid.GetOriginBlock(zoom);
+		
+		for ( int y = 0; y < clip.height; y++ ) {
+			int by = clip.y + y + ob.y;
+			for ( int x = 0; x < clip.width; x++ ) {
+				int bx = clip.x + x + ob.x,
+					count = bx < lw && by < lh ? counts[by * lw + bx] : 0;
+				pixels[y * clip.width + x] = densityPalette[(int)((long)count * 255 / full)];
 			}
 		}
 		
+		g.drawImage(img, clip.x, clip.y, null);
+	}
+	
+	/**
+	 * Creates colors for densities from 0 to 255.
+	 * Scale is square root one, so sparse blocks are still visible
+	 * @return array of RGB colors
+	 */
+	private static int[] CreateDensityPalette() {
+		int[] palette = new int[256];
+		
+		for ( int i = 0; i < 256; i++ ) {
+			float v = (float)Math.sqrt(i / 255.0);
+			int r = (int)(255 * (1 - v)),
+				g = (int)(255 * (1 - 0.6 * v)),
+				b = (int)(255 * (1 - v));
+			palette[i] = (r << 16) | (g << 8) | b;
+		}
+		
+		return palette;
 	}
 	
 	public void ResetSize() {
-		fWidth = (flatland.GetBounds()[0]) * 11 + 2;
-		fHeight = (flatland.GetBounds()[1]) * 11 + 2;
+		if ( zoom == 0 ) {
+			fWidth = (flatland.GetBounds()[0]) * 11 + 2;
+			fHeight = (flatland.GetBounds()[1]) * 11 + 2;
+		}
+		else {
+			// keep the pyramid in step with generations so it's updated by changes only
+			pyramid.Update();
+			fWidth = (flatland.GetBounds()[0] >> zoom) + 2;
+			fHeight = (flatland.GetBounds()[1] >> zoom) + 2;
+		}
 		this.setSize(new Dimension(fWidth + 1, fHeight + 1));
 	}
 
@@ -0,0 +1,47 @@
+package life;
+
+import java.util.*;
+
+/**
+ * Life simulation engine.
+ * Engine coordinates are non-negative, all cells lay within [0:0]-[width:height] of GetBounds().
+ * Engines may move the whole population within their coordinates while it grows,
+ * so generations are compared by Snapshot() which doesn't depend on such moves.
+ * Engines are registered in LifeEngines.
+ */
+public interface LifeEngine {
+
+	/**
+	 * Replaces the engine state with a pattern of new cells at generation 0
+	 * @param cells -- positions of live cells
+	 */
+	void Load(List<Point> cells);
+
+	/**
+	 * Makes n generations
+	 * @param n -- number of generations
+	 */
+	void Step(int n);
+
+	int GetGeneration();
+
+	long GetPopulation();
+
+	/**
+	 * Returns the engine area holding all the live cells
+	 * @return integer array of bounds. 0 - X, 1 - Y
+	 */
+	int[] GetBounds();
+
+	/**
+	 * Visits all live cells in no particular order
+	 * @param visitor -- visitor to call
+	 */
+	void ForEachCell(CellVisitor visitor);
+
+	/**
+	 * Returns live cells positions moved to the [0:0] corner
+	 * @return sorted packed positions
+	 */
+	long[] Snapshot();
+}
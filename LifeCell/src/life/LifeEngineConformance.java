@@ -0,0 +1,146 @@
+package life;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Conformance harness for Life engines.
+ * Runs random patterns through every registered engine and checks that all of them
+ * produce the same cells with the same ages and population on every generation.
+ * The first registered engine is the reference for the others.
+ */
+public class LifeEngineConformance {
+
+	public static void main(String[] args) {
+		long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+		int patterns = args.length > 1 ? Integer.parseInt(args[1]) : 50,
+			generations = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+		if ( !Run(seed, patterns, generations, System.out) )
+			System.exit(1);
+	}
+
+	/**
+	 * Checks all registered engines
+	 * @param seed -- random seed of the patterns
+	 * @param patterns -- number of random patterns
+	 * @param generations -- generations to run every pattern for
+	 * @param out -- stream for the report
+	 * @return true if all engines agree on all patterns
+	 */
+	public static boolean Run(long seed, int patterns, int generations, PrintStream out) {
+
+		List<LifeEngines.Factory> factories = LifeEngines.GetFactories();
+		Random rnd = new Random(seed);
+		boolean passed = true;
+
+		for ( int p = 0; p < patterns; p++ ) {
+			List<Point> pattern = RandomPattern(rnd);
+
+			LifeEngine[] engines = new LifeEngine[factories.size()];
+			for ( int e = 0; e < engines.length; e++ ) {
+				engines[e] = factories.get(e).Create();
+				engines[e].Load(pattern);
+			}
+
+			String failure = null;
+			for ( int gen = 0; gen <= generations && failure == null; gen++ ) {
+				if ( gen > 0 )
+					for ( LifeEngine engine : engines )
+						engine.Step(1);
+
+				Generation ref = new Generation(engines[0]);
+				for ( int e = 1; e < engines.length && failure == null; e++ ) {
+					String diff = ref.Compare(new Generation(engines[e]));
+					if ( diff != null )
+						failure = String.format("engine [%s] differs from [%s] at generation %d: %s",
+												factories.get(e).GetName(), factories.get(0).GetName(), gen, diff);
+				}
+			}
+
+			if ( failure != null ) {
+				out.printf("Pattern #%d (%d cells) FAILED: %s\n", p, pattern.size(), failure);
+				passed = false;
+			}
+		}
+
+		out.printf("%d engines, %d patterns, %d generations -- %s\n",
+				   factories.size(), patterns, generations, passed ? "OK" : "FAILED");
+
+		return passed;
+	}
+
+	/**
+	 * Creates a random soup in a random square
+	 * @param rnd -- random generator
+	 * @return positions of live cells
+	 */
+	private static List<Point> RandomPattern(Random rnd) {
+		int size = 4 + rnd.nextInt(29);
+		double density = 0.2 + 0.3 * rnd.nextDouble();
+		List<Point> cells = new ArrayList<Point>();
+
+		for ( int y = 0; y < size; y++ )
+			for ( int x = 0; x < size; x++ )
+				if ( rnd.nextDouble() < density )
+					cells.add(new Point(x, y));
+
+		if ( cells.isEmpty() )
+			cells.add(new Point(0, 0));
+
+		return cells;
+	}
+
+	/**
+	 * Engine generation reduced to what engines should agree on
+	 */
+	private static class Generation {
+		int generation;
+		long population;
+		long[] cells;
+		LongIntMap ages;
+
+		Generation(LifeEngine engine) {
+			generation = engine.GetGeneration();
+			population = engine.GetPopulation();
+			cells = engine.Snapshot();
+
+			final List<long[]> visited = new ArrayList<long[]>();
+			final int[] min = {Integer.MAX_VALUE, Integer.MAX_VALUE};
+			engine.ForEachCell(new CellVisitor() {
+				public void Visit(int x, int y, int age) {
+					visited.add(new long[] {x, y, age});
+					min[0] = Math.min(min[0], x);
+					min[1] = Math.min(min[1], y);
+				}
+			});
+
+			ages = new LongIntMap(visited.size());
+			for ( long[] v : visited )
+				ages.Put(Point.Pack((int)v[0] - min[0], (int)v[1] - min[1]), (int)v[2]);
+		}
+
+		/**
+		 * Compares two generations
+		 * @param other -- generation to compare with
+		 * @return description of the first difference or null if they are the same
+		 */
+		String Compare(Generation other) {
+			if ( generation != other.generation )
+				return "generation " + other.generation + " instead of " + generation;
+			if ( population != other.population )
+				return "population " + other.population + " instead of " + population;
+			if ( !Arrays.equals(cells, other.cells) )
+				return "different cells";
+			if ( ages.Size() != other.ages.Size() )
+				return "visited " + other.ages.Size() + " cells instead of " + ages.Size();
+
+			for ( long c : cells )
+				if ( ages.Get(c, 0) != other.ages.Get(c, 0) )
+					return String.format("cell [%d:%d] age %d instead of %d", Point.UnpackX(c), Point.UnpackY(c),
+										 other.ages.Get(c, 0), ages.Get(c, 0));
+
+			return null;
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package life;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Registry of Life engines.
+ * Built-in engines are registered here, other ones could be added by Register
+ * or as java.util.ServiceLoader providers of LifeEngines.Factory.
+ */
+public class LifeEngines {
+
+	/**
+	 * Creates fresh engines of one kind
+	 */
+	public interface Factory {
+
+		String GetName();
+
+		LifeEngine Create();
+	}
+
+	private static final List<Factory> factories = new CopyOnWriteArrayList<Factory>();
+
+	static {
+		Register(new Factory() {
+			public String GetName() {
+				return "flatland";
+			}
+
+			public LifeEngine Create() {
+				return new Flatland();
+			}
+		});
+
+		Register(new Factory() {
+			public String GetName() {
+				return "sparse";
+			}
+
+			public LifeEngine Create() {
+				return new SparseLife();
+			}
+		});
+
+		Register(new Factory() {
+			public String GetName() {
+				return "torus";
+			}
+
+			public LifeEngine Create() {
+				return new TorusLife(512, 512);
+			}
+		});
+
+		for ( Factory f : ServiceLoader.load(Factory.class) )
+			Register(f);
+	}
+
+	private LifeEngines() {
+	}
+
+	public static void Register(Factory factory) {
+		for ( Factory f : factories )
+			if ( f.GetName().equals(factory.GetName()) )
+				throw new RuntimeException("Life engine [" + factory.GetName() + "] is already registered");
+
+		factories.add(factory);
+	}
+
+	public static List<Factory> GetFactories() {
+		return Collections.unmodifiableList(factories);
+	}
+
+	/**
+	 * Creates an engine by its name
+	 * @param name -- engine name
+	 * @return a new engine
+	 */
+	public static LifeEngine Create(String name) {
+		for ( Factory f : factories )
+			if ( f.GetName().equals(name) )
+				return f.Create();
+
+		throw new RuntimeException("There is no Life engine [" + name + "]");
+	}
+
+	/**
+	 * Makes a snapshot of the engine cells moved to the [0:0] corner
+	 * @param engine -- engine to take the snapshot of
+	 * @return sorted packed positions
+	 */
+	public static long[] Snapshot(LifeEngine engine) {
+
+		final long[] cells = new long[(int)engine.GetPopulation()];
+		final int[] min = {Integer.MAX_VALUE, Integer.MAX_VALUE};
+		final int[] count = {0};
+
+		engine.ForEachCell(new CellVisitor() {
+			public void Visit(int x, int y, int age) {
+				cells[count[0]++] = Point.Pack(x, y);
+				min[0] = Math.min(min[0], x);
+				min[1] = Math.min(min[1], y);
+			}
+		});
+
+		for ( int i = 0; i < cells.length; i++ )
+			cells[i] = Point.Pack(Point.UnpackX(cells[i]) - min[0], Point.UnpackY(cells[i]) - min[1]);
+		Arrays.sort(cells);
+
+		return cells;
+	}
+}
@@ -0,0 +1,77 @@
+package life;
+
+/**
+ * Immutable compact copy of a Life engine generation.
+ * Keeps only positions and ages of live cells, so it's cheap to take
+ * on the simulation thread and safe to hand over to other threads.
+ */
+public class LifeFrame {
+
+	public static final int MAX_AGE = AgePlane.MAX_AGE;
+
+	private final int generation;
+	private final int width, height;
+	private final int[] coords;		// x and y of every cell, one after another
+	private final byte[] ages;		// cell ages, unsigned
+
+	private LifeFrame(int generation, int width, int height, int[] coords, byte[] ages) {
+		this.generation = generation;
+		this.width = width;
+		this.height = height;
+		this.coords = coords;
+		this.ages = ages;
+	}
+
+	/**
+	 * Takes a frame of the current engine generation
+	 * @param engine -- engine to copy
+	 * @return a new frame
+	 */
+	public static LifeFrame Capture(LifeEngine engine) {
+
+		final int count = (int)engine.GetPopulation();
+		final int[] coords = new int[count * 2];
+		final byte[] ages = new byte[count];
+		final int[] i = {0};
+
+		engine.ForEachCell(new CellVisitor() {
+			public void Visit(int x, int y, int age) {
+				coords[2 * i[0]] = x;
+				coords[2 * i[0] + 1] = y;
+				ages[i[0]++] = (byte)age;
+			}
+		});
+
+		int[] bounds = engine.GetBounds();
+
+		return new LifeFrame(engine.GetGeneration(), bounds[0], bounds[1], coords, ages);
+	}
+
+	public int GetGeneration() {
+		return generation;
+	}
+
+	public int GetWidth() {
+		return width;
+	}
+
+	public int GetHeight() {
+		return height;
+	}
+
+	public int GetCellsCount() {
+		return ages.length;
+	}
+
+	public int GetX(int i) {
+		return coords[2 * i];
+	}
+
+	public int GetY(int i) {
+		return coords[2 * i + 1];
+	}
+
+	public int GetAge(int i) {
+		return ages[i] & 0xFF;
+	}
+}
@@ -0,0 +1,312 @@
+package life;
+
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.management.*;
+
+/**
+ * Timers and counters of the flatland simulation.
+ * Flatland fills it on every generation if metrics are set with Flatland.SetMetrics,
+ * its colonies add their own step and field normalization times.
+ * Values of the last generation and running totals are published to registered
+ * sinks and could be read through JMX after Register call.
+ */
+public class LifeMetrics implements LifeMetricsMBean {
+
+	public enum Phase {
+		STEP,		// colonies generation change
+		SHIFT,		// flatland origin shift
+		MERGE,		// bumped colonies merge
+		BOUNDS,		// flatland bounds recalculation
+	}
+
+	private long[] phaseNanos = new long[Phase.values().length];
+	private long phaseStart, genStart;
+	private long allocStart;
+
+	private volatile int generation;
+	private volatile long stepNanos, shiftNanos, mergeNanos, boundsNanos, totalNanos;
+	private volatile int births, deaths, population, colonies, merges;
+	private volatile long allocatedBytes;
+
+	private volatile long totalBirths, totalDeaths, totalMerges, totalGenNanos;
+
+	private List<ColonyTimes> colonyTimes = new ArrayList<ColonyTimes>();	// colonies of the current generation
+	private volatile List<ColonyTimes> lastColonyTimes = Collections.emptyList();
+	private volatile int slowestColony = -1;
+	private volatile long slowestColonyNanos;
+
+	private List<MetricsSink> sinks = new CopyOnWriteArrayList<MetricsSink>();
+
+	private com.sun.management.ThreadMXBean allocBean;
+
+	public LifeMetrics() {
+
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if ( bean instanceof com.sun.management.ThreadMXBean ) {
+			allocBean = (com.sun.management.ThreadMXBean)bean;
+			if ( !allocBean.isThreadAllocatedMemorySupported() )
+				allocBean = null;
+			else if ( !allocBean.isThreadAllocatedMemoryEnabled() )
+				allocBean.setThreadAllocatedMemoryEnabled(true);
+		}
+
+		allocatedBytes = -1;
+	}
+
+	public void AddSink(MetricsSink sink) {
+		sinks.add(sink);
+	}
+
+	public void RemoveSink(MetricsSink sink) {
+		sinks.remove(sink);
+	}
+
+	/**
+	 * Returns times of every colony in the last generation
+	 * @return unmodifiable list in the colonies order
+	 */
+	public List<ColonyTimes> GetColonyTimes() {
+		return lastColonyTimes;
+	}
+
+	/**
+	 * Registers the metrics in the platform MBean server
+	 * @param name -- flatland name to tell it from others
+	 */
+	public void Register(String name) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("life:type=Flatland,name=" + ObjectName.quote(name)));
+		}
+		catch ( JMException e ) {
+			throw new RuntimeException("Could not register metrics for flatland [" + name + "]: " + e.getMessage(), e);
+		}
+	}
+
+	// Flatland instrumentation
+	//-------------------------------------------------------------------------
+	void StartGeneration() {
+		Arrays.fill(phaseNanos, 0);
+		allocStart = AllocatedBytes();
+		colonyTimes = new ArrayList<ColonyTimes>();
+		genStart = System.nanoTime();
+		phaseStart = genStart;
+	}
+
+	// Colony instrumentation
+	//-------------------------------------------------------------------------
+	void ColonyDone(Colony col, long stepNanos, long normalizeNanos) {
+		colonyTimes.add(new ColonyTimes(col.GetID(), stepNanos, normalizeNanos,
+										col.GetBorn().size(), col.GetDied().size(), col.GetPopulation()));
+	}
+
+	void PhaseDone(Phase phase) {
+		long now = System.nanoTime();
+		phaseNanos[phase.ordinal()] += now - phaseStart;
+		phaseStart = now;
+	}
+
+	void GenerationDone(Flatland fland) {
+
+		long total = System.nanoTime() - genStart;
+		long alloc = AllocatedBytes();
+
+		int b = fland.GetBorn().size(),
+			d = fland.GetDied().size(),
+			pop = 0;
+		for ( Colony col : fland.GetColoniesList() )
+			pop += col.GetPopulation();
+
+		generation = fland.GetGeneration();
+		stepNanos = phaseNanos[Phase.STEP.ordinal()];
+		shiftNanos = phaseNanos[Phase.SHIFT.ordinal()];
+		mergeNanos = phaseNanos[Phase.MERGE.ordinal()];
+		boundsNanos = phaseNanos[Phase.BOUNDS.ordinal()];
+		totalNanos = total;
+		births = b;
+		deaths = d;
+		population = pop;
+		colonies = fland.ColoniesCount();
+		merges = fland.GetMerges();
+		allocatedBytes = alloc < 0 || allocStart < 0 ? -1 : alloc - allocStart;
+
+		int slowest = -1;
+		long slowestNanos = 0;
+		for ( ColonyTimes ct : colonyTimes )
+			if ( slowest < 0 || ct.GetTotalNanos() > slowestNanos ) {
+				slowest = ct.GetID();
+				slowestNanos = ct.GetTotalNanos();
+			}
+		lastColonyTimes = Collections.unmodifiableList(colonyTimes);
+		slowestColony = slowest;
+		slowestColonyNanos = slowestNanos;
+
+		totalBirths += b;
+		totalDeaths += d;
+		totalMerges += merges;
+		totalGenNanos += total;
+
+		for ( MetricsSink sink : sinks )
+			sink.Publish(this);
+	}
+
+	private long AllocatedBytes() {
+		return allocBean == null ? -1 : allocBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	// MBean
+	//-------------------------------------------------------------------------
+	@Override
+	public int getGeneration() {
+		return generation;
+	}
+
+	@Override
+	public long getStepNanos() {
+		return stepNanos;
+	}
+
+	@Override
+	public long getShiftNanos() {
+		return shiftNanos;
+	}
+
+	@Override
+	public long getMergeNanos() {
+		return mergeNanos;
+	}
+
+	@Override
+	public long getBoundsNanos() {
+		return boundsNanos;
+	}
+
+	@Override
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	@Override
+	public int getBirths() {
+		return births;
+	}
+
+	@Override
+	public int getDeaths() {
+		return deaths;
+	}
+
+	@Override
+	public int getPopulation() {
+		return population;
+	}
+
+	@Override
+	public int getColonies() {
+		return colonies;
+	}
+
+	@Override
+	public int getMerges() {
+		return merges;
+	}
+
+	@Override
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	@Override
+	public int getSlowestColony() {
+		return slowestColony;
+	}
+
+	@Override
+	public long getSlowestColonyNanos() {
+		return slowestColonyNanos;
+	}
+
+	@Override
+	public long getTotalBirths() {
+		return totalBirths;
+	}
+
+	@Override
+	public long getTotalDeaths() {
+		return totalDeaths;
+	}
+
+	@Override
+	public long getTotalMerges() {
+		return totalMerges;
+	}
+
+	@Override
+	public long getTotalGenerationNanos() {
+		return totalGenNanos;
+	}
+
+	@Override
+	public void resetTotals() {
+		totalBirths = 0;
+		totalDeaths = 0;
+		totalMerges = 0;
+		totalGenNanos = 0;
+	}
+
+	/**
+	 * Times and counters of a colony in one generation
+	 */
+	public static class ColonyTimes {
+		private final int id;
+		private final long stepNanos, normalizeNanos;
+		private final int births, deaths, population;
+
+		ColonyTimes(int id, long stepNanos, long normalizeNanos, int births, int deaths, int population) {
+			this.id = id;
+			this.stepNanos = stepNanos;
+			this.normalizeNanos = normalizeNanos;
+			this.births = births;
+			this.deaths = deaths;
+			this.population = population;
+		}
+
+		public int GetID() {
+			return id;
+		}
+
+		/**
+		 * Returns time of the cells generation change on the age plane
+		 * @return nanoseconds
+		 */
+		public long GetStepNanos() {
+			return stepNanos;
+		}
+
+		/**
+		 * Returns time of the colony field bounds and origin recalculation
+		 * @return nanoseconds
+		 */
+		public long GetNormalizeNanos() {
+			return normalizeNanos;
+		}
+
+		public long GetTotalNanos() {
+			return stepNanos + normalizeNanos;
+		}
+
+		public int GetBirths() {
+			return births;
+		}
+
+		public int GetDeaths() {
+			return deaths;
+		}
+
+		public int GetPopulation() {
+			return population;
+		}
+	}
+}
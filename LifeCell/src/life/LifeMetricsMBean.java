@@ -0,0 +1,43 @@
+package life;
+
+/**
+ * JMX view of the flatland metrics.
+ * Getters follow JMX naming, so they are shown as attributes.
+ * Times are in nanoseconds, totals are accumulated since the metrics creation.
+ */
+public interface LifeMetricsMBean {
+
+	int getGeneration();
+
+	long getStepNanos();
+	long getShiftNanos();
+	long getMergeNanos();
+	long getBoundsNanos();
+	long getTotalNanos();
+
+	int getBirths();
+	int getDeaths();
+	int getPopulation();
+	int getColonies();
+	int getMerges();
+
+	/**
+	 * Returns bytes allocated by the simulation thread in the last generation
+	 * @return bytes count or -1 if JVM doesn't support allocation accounting
+	 */
+	long getAllocatedBytes();
+
+	/**
+	 * Returns id of the colony which took the longest in the last generation
+	 * @return colony id or -1 if there were no colonies
+	 */
+	int getSlowestColony();
+	long getSlowestColonyNanos();
+
+	long getTotalBirths();
+	long getTotalDeaths();
+	long getTotalMerges();
+	long getTotalGenerationNanos();
+
+	void resetTotals();
+}
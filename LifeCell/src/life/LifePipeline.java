@@ -0,0 +1,138 @@
+package life;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs a Life engine with consumers of its generations in a pipeline.
+ * While consumers read the front frame of generation N on their own threads,
+ * the engine makes generation N+1 and captures it into the back frame.
+ * All of them meet at a barrier which swaps the frames, so consumers never see
+ * the engine changing and cost no time of the simulation as long as every one of
+ * them keeps up with the engine on its own core.
+ */
+public class LifePipeline {
+
+	/**
+	 * Reads generations of the pipeline
+	 */
+	public interface Consumer {
+
+		/**
+		 * Called for every generation in order, on the consumer's own thread
+		 * @param frame -- immutable generation frame
+		 */
+		void Consume(LifeFrame frame);
+	}
+
+	private LifeEngine engine;
+	private List<Consumer> consumers;
+
+	private volatile LifeFrame front, back;
+	private volatile Throwable failure;
+
+	/**
+	 * Creates a pipeline
+	 * @param engine -- engine to run. Shouldn't be used by anyone else while the pipeline runs
+	 * @param consumers -- consumers of the generations
+	 */
+	public LifePipeline(LifeEngine engine, List<Consumer> consumers) {
+		this.engine = engine;
+		this.consumers = new ArrayList<Consumer>(consumers);
+	}
+
+	/**
+	 * Makes the generations and hands the current one and all new ones to the consumers.
+	 * Returns when the engine made all the generations and the consumers read all of them
+	 * @param generations -- number of generations to make
+	 */
+	public void Run(int generations) {
+
+		front = LifeFrame.Capture(engine);
+		back = null;
+		failure = null;
+
+		final Phaser barrier = new Phaser(consumers.size() + 1) {
+			@Override
+			protected boolean onAdvance(int phase, int parties) {
+				// everyone is done with the front frame, the back one becomes the front.
+				// There is no back frame after the last generation, that stops the pipeline
+				if ( back == null || failure != null )
+					return true;
+
+				front = back;
+				back = null;
+				return false;
+			}
+		};
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for ( int i = 0; i < consumers.size(); i++ ) {
+			final Consumer consumer = consumers.get(i);
+			Thread t = new Thread(new Runnable() {
+				public void run() {
+					try {
+						// the party arriving last doesn't get a negative phase on termination,
+						// so the termination is checked explicitly
+						do {
+							consumer.Consume(front);
+							barrier.arriveAndAwaitAdvance();
+						} while ( !barrier.isTerminated() );
+					}
+					catch ( Throwable e ) {
+						Fail(e, barrier);
+					}
+				}
+			}, "life-pipeline-consumer-" + i);
+			t.setDaemon(true);
+			threads.add(t);
+			t.start();
+		}
+
+		try {
+			for ( int gen = 0; ; gen++ ) {
+				if ( gen < generations ) {
+					engine.Step(1);
+					back = LifeFrame.Capture(engine);
+				}
+				barrier.arriveAndAwaitAdvance();
+				if ( barrier.isTerminated() )
+					break;
+			}
+		}
+		catch ( Throwable e ) {
+			Fail(e, barrier);
+		}
+
+		try {
+			for ( Thread t : threads )
+				t.join();
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Life pipeline interrupted", e);
+		}
+
+		if ( failure != null )
+			throw new RuntimeException("Life pipeline failed: " + failure.getMessage(), failure);
+	}
+
+	/**
+	 * Returns the last frame handed to the consumers
+	 * @return frame
+	 */
+	public LifeFrame GetFront() {
+		return front;
+	}
+
+	/**
+	 * Stops the pipeline, everyone waiting at the barrier is released
+	 * @param e -- failure to report
+	 * @param barrier -- pipeline barrier
+	 */
+	private synchronized void Fail(Throwable e, Phaser barrier) {
+		if ( failure == null )
+			failure = e;
+		barrier.forceTermination();
+	}
+}
@@ -4,32 +4,87 @@ import java.awt.*;
 import java.awt.event.*;
 
 import javax.swing.*;
+import javax.swing.event.*;
 
 public class LifeWindow extends JFrame {
 
+	static final int KEYFRAME_INTERVAL = 100,
+					 KEYFRAME_CAPACITY = 64;
+
 	private Flatland flatland;
 	private LifeDisplay display;
 	private JScrollPane scroller;
 	private JButton nextGenBtn = new JButton("Next generation");
+	private JButton zoomInBtn = new JButton("Zoom in");
+	private JButton zoomOutBtn = new JButton("Zoom out");
+	private KeyframeStore keyframes;
+	private JSlider scrubber;
+	private JLabel genLabel = new JLabel();
 
 	public LifeWindow(Flatland flatland) {
-		
+
 		this.flatland = flatland;
 		display = new LifeDisplay(flatland);
 		scroller = new JScrollPane(display);
-				
+		keyframes = new KeyframeStore(flatland, KEYFRAME_INTERVAL, KEYFRAME_CAPACITY, null);
+		scrubber = new JSlider(keyframes.GetBaseGeneration(), keyframes.GetBaseGeneration(), keyframes.GetBaseGeneration());
+
 		nextGenBtn.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				flatland.NextGeneration();
-				display.ResetSize();
-				scroller.repaint();
+				keyframes.Record();
+				scrubber.setMaximum(keyframes.GetLastGeneration());
+				scrubber.setValue(flatland.GetGeneration());
+				UpdateView();
+			}
+		});
+
+		zoomInBtn.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				if ( display.GetZoom() > 0 )
+					display.SetZoom(display.GetZoom() - 1);
+				UpdateView();
+			}
+		});
+		
+		zoomOutBtn.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				if ( display.GetZoom() < DensityPyramid.MAX_LEVEL )
+					display.SetZoom(display.GetZoom() + 1);
+				UpdateView();
+			}
+		});
+
+		// scrubbing seeks the flatland back and forth through already reached generations
+		scrubber.addChangeListener(new ChangeListener() {
+			public void stateChanged(ChangeEvent e) {
+				if ( scrubber.getValue() == flatland.GetGeneration() )
+					return;
+
+				keyframes.SeekTo(scrubber.getValue());
+				UpdateView();
 			}
 		});
 
 		setTitle("Flatland life cells view. Press Next generation button to continue");
 		getContentPane().setLayout(new BoxLayout(getContentPane(), BoxLayout.Y_AXIS));
 		add(scroller);
-		add(nextGenBtn);
+		add(scrubber);
+		add(genLabel);
+		
+		JPanel buttons = new JPanel();
+		buttons.add(nextGenBtn);
+		buttons.add(zoomInBtn);
+		buttons.add(zoomOutBtn);
+		add(buttons);
+		UpdateView();
 		pack();
 	}
-}
\ No newline at end of file
+
+	private void UpdateView() {
+		genLabel.setText("Generation " + flatland.GetGeneration() + " of " + keyframes.GetLastGeneration() +
+						 (display.GetZoom() == 0 ? "" : ", zoom 1:" + (1 << display.GetZoom())));
+		display.ResetSize();
+		scroller.repaint();
+	}
+}
@@ -0,0 +1,164 @@
+package life;
+
+import java.util.*;
+
+/**
+ * Open addressing hash map from long keys to int values.
+ * Used for sparse cell sets keyed by packed coordinates, where boxed
+ * HashMap entries would cost several times more memory than the cells.
+ * Iteration goes over slots: for ( int s = 0; s < map.Capacity(); s++ ) if ( map.IsUsed(s) ) ...
+ */
+class LongIntMap {
+
+	private long[] keys;
+	private int[] values;
+	private boolean[] used;
+	private int size;
+	private int mask;
+
+	public LongIntMap(int expected) {
+		int cap = 16;
+		while ( cap < expected * 2 )
+			cap <<= 1;
+
+		Allocate(cap);
+	}
+
+	public int Size() {
+		return size;
+	}
+
+	public int Capacity() {
+		return keys.length;
+	}
+
+	public boolean IsUsed(int slot) {
+		return used[slot];
+	}
+
+	public long KeyAt(int slot) {
+		return keys[slot];
+	}
+
+	public int ValueAt(int slot) {
+		return values[slot];
+	}
+
+	public boolean Contains(long key) {
+		return used[Find(key)];
+	}
+
+	/**
+	 * Returns the key value
+	 * @param key -- key to look for
+	 * @param def -- value to return if there is no key
+	 * @return key value or def
+	 */
+	public int Get(long key, int def) {
+		int slot = Find(key);
+
+		return used[slot] ? values[slot] : def;
+	}
+
+	public void Put(long key, int value) {
+		int slot = Find(key);
+
+		if ( !used[slot] ) {
+			used[slot] = true;
+			keys[slot] = key;
+			if ( ++size * 2 > keys.length ) {
+				values[slot] = value;
+				Allocate(keys.length * 2);
+				return;
+			}
+		}
+		values[slot] = value;
+	}
+
+	/**
+	 * Adds delta to the key value. Missing key is counted as 0
+	 * @param key -- key to change
+	 * @param delta -- value to add
+	 * @return new value of the key
+	 */
+	public int Add(long key, int delta) {
+		int slot = Find(key);
+
+		if ( used[slot] )
+			return values[slot] += delta;
+
+		Put(key, delta);
+		return delta;
+	}
+
+	/**
+	 * Removes the key. Following keys of the probe chain are moved back,
+	 * so there are no deleted slot markers
+	 * @param key -- key to remove
+	 * @return true if the key was in the map
+	 */
+	public boolean Remove(long key) {
+		int slot = Find(key);
+		if ( !used[slot] )
+			return false;
+
+		int gap = slot;
+		for ( int s = (gap + 1) & mask; used[s]; s = (s + 1) & mask ) {
+			int home = Hash(keys[s]);
+			// move the key into the gap if its home isn't between the gap and its slot
+			if ( ((s - home) & mask) >= ((s - gap) & mask) ) {
+				keys[gap] = keys[s];
+				values[gap] = values[s];
+				gap = s;
+			}
+		}
+		used[gap] = false;
+		size--;
+
+		return true;
+	}
+
+	public void Clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	private int Find(long key) {
+		int s = Hash(key);
+
+		while ( used[s] && keys[s] != key )
+			s = (s + 1) & mask;
+
+		return s;
+	}
+
+	private int Hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+
+		return (int)(h >>> 32) & mask;
+	}
+
+	private void Allocate(int cap) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+
+		keys = new long[cap];
+		values = new int[cap];
+		used = new boolean[cap];
+		mask = cap - 1;
+		size = 0;
+
+		if ( oldKeys == null )
+			return;
+
+		for ( int s = 0; s < oldKeys.length; s++ )
+			if ( oldUsed[s] ) {
+				int slot = Find(oldKeys[s]);
+				used[slot] = true;
+				keys[slot] = oldKeys[s];
+				values[slot] = oldValues[s];
+				size++;
+			}
+	}
+}
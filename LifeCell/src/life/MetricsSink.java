@@ -0,0 +1,10 @@
+package life;
+
+/**
+ * Receives flatland metrics after every generation.
+ * Called on the simulation thread, so it should be fast.
+ */
+public interface MetricsSink {
+
+	void Publish(LifeMetrics metrics);
+}
@@ -9,6 +9,24 @@ public class Point {
 		this.y = y;
 	}
 	
+	/**
+	 * Packs coordinates into a single long, X in the high half, Y in the low one
+	 * @param x
+	 * @param y
+	 * @return packed coordinates
+	 */
+	public static long Pack(int x, int y) {
+		return ((long)x << 32) | (y & 0xFFFFFFFFL);
+	}
+	
+	public static int UnpackX(long packed) {
+		return (int)(packed >> 32);
+	}
+	
+	public static int UnpackY(long packed) {
+		return (int)packed;
+	}
+	
 	@Override
 	public boolean equals(Object o) {
 		return x == ((Point)o).x && y == ((Point)o).y;
@@ -0,0 +1,105 @@
+package life;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Format of the generations replay log.
+ *
+ * The log is a sequence of blocks: int first generation, int last generation,
+ * int length and deflated block data. Every block starts with a full frame and
+ * goes on with deltas of the following generations, so it could be read
+ * without any previous block.
+ *
+ * Full frame: FULL, generation, cells count, cells, cells ages as bytes.
+ * Delta: DELTA, generation, flatland shift X and Y, died cells, born cells.
+ * Cells lists are sorted by rows and coded as count followed by the row delta and
+ * X (delta from the previous X in the same row) of every cell.
+ * All numbers inside blocks are zigzag varints.
+ */
+class ReplayLog {
+
+	static final byte FULL  = 1,
+					  DELTA = 2;
+
+	private ReplayLog() {
+	}
+
+	static void WriteVarInt(OutputStream out, int value) throws IOException {
+		int v = (value << 1) ^ (value >> 31);		// zigzag, so small negatives are short too
+
+		while ( (v & ~0x7F) != 0 ) {
+			out.write((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.write(v);
+	}
+
+	static int ReadVarInt(InputStream in) throws IOException {
+		int v = 0, shift = 0, b;
+
+		do {
+			b = in.read();
+			if ( b < 0 )
+				throw new EOFException("Unexpected end of the replay log");
+			v |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ( (b & 0x80) != 0 );
+
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	/**
+	 * Sorts cells by rows and writes them delta coded
+	 * @param out -- stream to write to
+	 * @param cells -- packed positions, sorted in place
+	 * @param count -- number of cells in the array
+	 * @throws IOException
+	 */
+	static void WriteCells(OutputStream out, long[] cells, int count) throws IOException {
+
+		// row-major order is the order of positions packed with Y first
+		for ( int i = 0; i < count; i++ )
+			cells[i] = Point.Pack(Point.UnpackY(cells[i]), Point.UnpackX(cells[i]));
+		Arrays.sort(cells, 0, count);
+
+		WriteVarInt(out, count);
+		int prevX = 0, prevY = 0;
+		for ( int i = 0; i < count; i++ ) {
+			int y = Point.UnpackX(cells[i]),
+				x = Point.UnpackY(cells[i]);
+
+			WriteVarInt(out, y - prevY);
+			WriteVarInt(out, y == prevY ? x - prevX : x);
+			prevX = x;
+			prevY = y;
+			cells[i] = Point.Pack(x, y);
+		}
+	}
+
+	/**
+	 * Reads delta coded cells
+	 * @param in -- stream to read from
+	 * @return packed positions in rows order
+	 * @throws IOException
+	 */
+	static long[] ReadCells(InputStream in) throws IOException {
+
+		long[] cells = new long[ReadVarInt(in)];
+		int prevX = 0, prevY = 0;
+
+		for ( int i = 0; i < cells.length; i++ ) {
+			int dy = ReadVarInt(in),
+				x = ReadVarInt(in);
+			int y = prevY + dy;
+			if ( dy == 0 )
+				x += prevX;
+
+			cells[i] = Point.Pack(x, y);
+			prevX = x;
+			prevY = y;
+		}
+
+		return cells;
+	}
+}
@@ -0,0 +1,258 @@
+package life;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+/**
+ * Records every flatland generation into an append-only replay log.
+ * The simulation thread only codes births and deaths of the generation into a small
+ * byte array, compression and file writes are made by a background writer.
+ * The writer queue holds QUEUE_SIZE entries, when it's full Record waits for the writer
+ * to take one, so a slow disk slows the simulation down instead of filling the memory.
+ * A full frame starts a new block every
+ * fullInterval generations, after snapshot restores and after colonies merges,
+ * when births and deaths don't describe the change exactly.
+ * See ReplayLog for the format and Replayer for reading.
+ */
+public class ReplayRecorder {
+
+	public static final int QUEUE_SIZE = 256;		// coded generations waiting for the writer
+
+	private Flatland flatland;
+	private int fullInterval;
+	private int lastGeneration;
+	private int lastFull;
+
+	private ThreadPoolExecutor writer;
+	private volatile Throwable failure;
+
+	// owned by the writer thread
+	private OutputStream file;
+	private ByteArrayOutputStream block;
+	private Deflater deflater;
+	private DeflaterOutputStream blockStream;
+	private int blockFirst, blockLast;
+
+	/**
+	 * Starts recording with a full frame of the current generation
+	 * @param fland -- flatland to record
+	 * @param target -- log file. Is overwritten
+	 * @param fullInterval -- number of generations between full frames
+	 */
+	public ReplayRecorder(Flatland fland, File target, int fullInterval) {
+
+		if ( fullInterval < 1 )
+			throw new RuntimeException("Invalid full frame interval [" + fullInterval + "]");
+
+		flatland = fland;
+		this.fullInterval = fullInterval;
+
+		try {
+			file = new BufferedOutputStream(new FileOutputStream(target), 1 << 16);
+		}
+		catch ( IOException e ) {
+			throw new RuntimeException("Could not create replay log [" + target + "]: " + e.getMessage(), e);
+		}
+
+		deflater = new Deflater(Deflater.BEST_SPEED);
+		writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(QUEUE_SIZE),
+			new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "life-replay-writer");
+					t.setDaemon(true);
+					return t;
+				}
+			},
+			// a full queue blocks the recording thread till the writer takes an entry
+			new RejectedExecutionHandler() {
+				public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+					if ( executor.isShutdown() )
+						throw new RejectedExecutionException("Replay recorder is closed");
+					try {
+						executor.getQueue().put(r);
+					}
+					catch ( InterruptedException e ) {
+						Thread.currentThread().interrupt();
+						throw new RejectedExecutionException("Replay recording interrupted", e);
+					}
+				}
+			});
+
+		WriteFull();
+	}
+
+	/**
+	 * Records the current flatland generation.
+	 * Should be called after every flatland.NextGeneration()
+	 */
+	public void Record() {
+
+		if ( failure != null )
+			throw new RuntimeException("Replay recording failed: " + failure.getMessage(), failure);
+
+		int gen = flatland.GetGeneration();
+		if ( gen == lastGeneration )
+			return;
+		if ( gen < lastGeneration )
+			throw new RuntimeException("Replay log is append-only, generation [" + gen + "] is already recorded");
+
+		if ( gen != lastGeneration + 1 || !flatland.IsDeltaExact() || gen - lastFull >= fullInterval ) {
+			WriteFull();
+			return;
+		}
+
+		try {
+			ByteArrayOutputStream entry = new ByteArrayOutputStream(16 + 4 * (flatland.GetBorn().size() + flatland.GetDied().size()));
+			entry.write(ReplayLog.DELTA);
+			ReplayLog.WriteVarInt(entry, gen);
+			ReplayLog.WriteVarInt(entry, flatland.GetShift().x);
+			ReplayLog.WriteVarInt(entry, flatland.GetShift().y);
+			WritePoints(entry, flatland.GetDied());
+			WritePoints(entry, flatland.GetBorn());
+
+			Submit(entry.toByteArray(), gen, false);
+		}
+		catch ( IOException e ) {
+			throw new RuntimeException("Could not code generation [" + gen + "]: " + e.getMessage(), e);
+		}
+
+		lastGeneration = gen;
+	}
+
+	/**
+	 * Writes the rest of the log, closes the file and frees the compressor
+	 */
+	public void Close() {
+
+		writer.execute(new Runnable() {
+			public void run() {
+				try {
+					FinishBlock();
+					file.close();
+				}
+				catch ( Throwable e ) {
+					Fail(e);
+				}
+				finally {
+					deflater.end();
+				}
+			}
+		});
+
+		writer.shutdown();
+		try {
+			writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Replay log closing interrupted", e);
+		}
+
+		if ( failure != null )
+			throw new RuntimeException("Replay recording failed: " + failure.getMessage(), failure);
+	}
+
+	private void WriteFull() {
+
+		int gen = flatland.GetGeneration();
+
+		try {
+			final long[] cells = new long[(int)flatland.GetPopulation()];
+			final LongIntMap ageOf = new LongIntMap(cells.length);
+			final int[] count = {0};
+
+			flatland.ForEachCell(new CellVisitor() {
+				public void Visit(int x, int y, int age) {
+					cells[count[0]++] = Point.Pack(x, y);
+					ageOf.Put(Point.Pack(x, y), age);
+				}
+			});
+
+			ByteArrayOutputStream entry = new ByteArrayOutputStream(16 + 3 * cells.length);
+			entry.write(ReplayLog.FULL);
+			ReplayLog.WriteVarInt(entry, gen);
+			ReplayLog.WriteCells(entry, cells, cells.length);
+
+			// ages follow the sorted cells order
+			byte[] ages = new byte[cells.length];
+			for ( int i = 0; i < cells.length; i++ )
+				ages[i] = (byte)ageOf.Get(cells[i], 1);
+			entry.write(ages);
+
+			Submit(entry.toByteArray(), gen, true);
+		}
+		catch ( IOException e ) {
+			throw new RuntimeException("Could not code generation [" + gen + "]: " + e.getMessage(), e);
+		}
+
+		lastGeneration = gen;
+		lastFull = gen;
+	}
+
+	private static void WritePoints(OutputStream out, List<Point> points) throws IOException {
+		long[] cells = new long[points.size()];
+
+		for ( int i = 0; i < cells.length; i++ )
+			cells[i] = Point.Pack(points.get(i).x, points.get(i).y);
+
+		ReplayLog.WriteCells(out, cells, cells.length);
+	}
+
+	/**
+	 * Hands a coded entry to the writer thread
+	 * @param entry -- coded generation
+	 * @param gen -- generation number
+	 * @param full -- true if the entry is a full frame and starts a new block
+	 */
+	private void Submit(final byte[] entry, final int gen, final boolean full) {
+		writer.execute(new Runnable() {
+			public void run() {
+				if ( failure != null )
+					return;
+
+				try {
+					if ( full || block == null ) {
+						FinishBlock();
+						block = new ByteArrayOutputStream(1 << 16);
+						deflater.reset();
+						blockStream = new DeflaterOutputStream(block, deflater);
+						blockFirst = gen;
+					}
+
+					blockStream.write(entry);
+					blockLast = gen;
+				}
+				catch ( Throwable e ) {
+					Fail(e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Writes the current block into the file. Called on the writer thread only
+	 * @throws IOException
+	 */
+	private void FinishBlock() throws IOException {
+		if ( block == null )
+			return;
+
+		blockStream.finish();
+		DataOutputStream out = new DataOutputStream(file);
+		out.writeInt(blockFirst);
+		out.writeInt(blockLast);
+		out.writeInt(block.size());
+		block.writeTo(out);
+		out.flush();
+
+		block = null;
+		blockStream = null;
+	}
+
+	private void Fail(Throwable e) {
+		if ( failure == null )
+			failure = e;
+	}
+}
@@ -0,0 +1,193 @@
+package life;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Reconstructs generations recorded by ReplayRecorder.
+ * Seeking reads only the block holding the generation: its full frame and the
+ * deltas up to the generation. Applying a delta costs the number of births and
+ * deaths, cells keep their birth generation instead of the age and the
+ * flatland shift is kept as an offset, so nothing is done per survived cell.
+ */
+public class Replayer {
+
+	private RandomAccessFile file;
+	private TreeMap<Integer, long[]> blocks;	// first generation -> {offset, length, last generation}
+
+	private LongIntMap cells;					// stored position -> birth generation
+	private int offsetX, offsetY;				// flatland position = stored position + offset
+	private int generation;
+
+	/**
+	 * Opens the log and indexes its blocks
+	 * @param log -- replay log file
+	 */
+	public Replayer(File log) {
+
+		blocks = new TreeMap<Integer, long[]>();
+		generation = -1;
+
+		try {
+			file = new RandomAccessFile(log, "r");
+
+			long pos = 0, size = file.length();
+			while ( pos + 12 <= size ) {
+				file.seek(pos);
+				int first = file.readInt(),
+					last = file.readInt(),
+					length = file.readInt();
+				blocks.put(first, new long[] {pos + 12, length, last});
+				pos += 12 + length;
+			}
+		}
+		catch ( IOException e ) {
+			throw new RuntimeException("Could not open replay log [" + log + "]: " + e.getMessage(), e);
+		}
+	}
+
+	public int GetFirstGeneration() {
+		return blocks.isEmpty() ? -1 : blocks.firstKey();
+	}
+
+	public int GetLastGeneration() {
+		return blocks.isEmpty() ? -1 : (int)blocks.lastEntry().getValue()[2];
+	}
+
+	public int GetGeneration() {
+		return generation;
+	}
+
+	public long GetPopulation() {
+		return cells == null ? 0 : cells.Size();
+	}
+
+	/**
+	 * Reconstructs the generation
+	 * @param gen -- generation to reconstruct
+	 */
+	public void SeekTo(int gen) {
+
+		Map.Entry<Integer, long[]> entry = blocks.floorEntry(gen);
+		if ( entry == null || gen > entry.getValue()[2] )
+			throw new RuntimeException("There is no generation [" + gen + "] in the replay log");
+
+		long[] block = entry.getValue();
+		byte[] data = new byte[(int)block[1]];
+
+		try {
+			file.seek(block[0]);
+			file.readFully(data);
+
+			InputStream in = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(data)));
+			while ( true ) {
+				int type = in.read();
+				if ( type < 0 )
+					break;
+
+				int entryGen = ReplayLog.ReadVarInt(in);
+				if ( entryGen > gen )
+					break;
+
+				if ( type == ReplayLog.FULL )
+					ReadFull(in, entryGen);
+				else if ( type == ReplayLog.DELTA )
+					ReadDelta(in, entryGen);
+				else
+					throw new IOException("Invalid entry type [" + type + "]");
+
+				if ( entryGen == gen )
+					break;
+			}
+		}
+		catch ( IOException e ) {
+			throw new RuntimeException("Could not read generation [" + gen + "]: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Visits cells of the reconstructed generation
+	 * @param visitor -- visitor to call
+	 */
+	public void ForEachCell(CellVisitor visitor) {
+		if ( cells == null )
+			return;
+
+		for ( int s = 0; s < cells.Capacity(); s++ )
+			if ( cells.IsUsed(s) )
+				visitor.Visit(Point.UnpackX(cells.KeyAt(s)) + offsetX,
+							  Point.UnpackY(cells.KeyAt(s)) + offsetY,
+							  Math.min(generation - cells.ValueAt(s) + 1, AgePlane.MAX_AGE));
+	}
+
+	/**
+	 * Loads the reconstructed generation into the flatland as a single colony
+	 * @param fland -- flatland to load into
+	 */
+	public void LoadInto(Flatland fland) {
+		final List<Point> points = new ArrayList<Point>();
+		final List<Integer> ages = new ArrayList<Integer>();
+		final int[] min = {Integer.MAX_VALUE, Integer.MAX_VALUE};
+
+		ForEachCell(new CellVisitor() {
+			public void Visit(int x, int y, int age) {
+				points.add(new Point(x, y));
+				ages.add(age);
+				min[0] = Math.min(min[0], x);
+				min[1] = Math.min(min[1], y);
+			}
+		});
+
+		fland.Load(points);
+		fland.generation = generation;
+
+		Colony col = fland.GetColoniesList().get(0);
+		for ( int i = 0; i < points.size(); i++ )
+			col.ages.Set(points.get(i).x - min[0], points.get(i).y - min[1], ages.get(i));
+	}
+
+	public void Close() {
+		try {
+			file.close();
+		}
+		catch ( IOException e ) {
+			throw new RuntimeException("Could not close replay log: " + e.getMessage(), e);
+		}
+	}
+
+	private void ReadFull(InputStream in, int gen) throws IOException {
+
+		long[] positions = ReplayLog.ReadCells(in);
+
+		cells = new LongIntMap(positions.length);
+		offsetX = 0;
+		offsetY = 0;
+		generation = gen;
+
+		for ( long p : positions ) {
+			int age = in.read();
+			if ( age < 0 )
+				throw new EOFException("Unexpected end of the replay log");
+			cells.Put(p, gen - age + 1);
+		}
+	}
+
+	private void ReadDelta(InputStream in, int gen) throws IOException {
+
+		if ( cells == null || gen != generation + 1 )
+			throw new IOException("Delta of generation [" + gen + "] doesn't follow generation [" + generation + "]");
+
+		// survived cells were shifted, died and born positions are given after the shift
+		offsetX += ReplayLog.ReadVarInt(in);
+		offsetY += ReplayLog.ReadVarInt(in);
+
+		for ( long p : ReplayLog.ReadCells(in) )
+			cells.Remove(Point.Pack(Point.UnpackX(p) - offsetX, Point.UnpackY(p) - offsetY));
+
+		for ( long p : ReplayLog.ReadCells(in) )
+			cells.Put(Point.Pack(Point.UnpackX(p) - offsetX, Point.UnpackY(p) - offsetY), gen);
+
+		generation = gen;
+	}
+}
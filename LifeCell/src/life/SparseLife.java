@@ -0,0 +1,134 @@
+package life;
+
+import java.util.*;
+
+/**
+ * Reference Life engine.
+ * Keeps live cells in a hash map of packed positions and makes a generation
+ * by counting neighbours of every live cell. It's simple enough to be trusted,
+ * so other engines are checked against it.
+ */
+class SparseLife implements LifeEngine {
+
+	private LongIntMap cells;		// packed position -> age
+	private int generation;
+	private int minX, minY, maxX, maxY;
+
+	public SparseLife() {
+		cells = new LongIntMap(16);
+		generation = 0;
+	}
+
+	@Override
+	public void Load(List<Point> points) {
+		cells = new LongIntMap(points.size());
+		for ( Point p : points )
+			cells.Put(Point.Pack(p.x, p.y), 1);
+
+		generation = 0;
+		UpdateBounds();
+	}
+
+	@Override
+	public void Step(int n) {
+		for ( int i = 0; i < n; i++ ) {
+			LongIntMap counts = new LongIntMap(cells.Size() * 4);
+
+			for ( int s = 0; s < cells.Capacity(); s++ )
+				if ( cells.IsUsed(s) )
+					CountNeighbours(counts, cells.KeyAt(s));
+
+			cells = NextCells(cells, counts);
+			generation++;
+		}
+
+		UpdateBounds();
+	}
+
+	@Override
+	public int GetGeneration() {
+		return generation;
+	}
+
+	@Override
+	public long GetPopulation() {
+		return cells.Size();
+	}
+
+	@Override
+	public int[] GetBounds() {
+		int[] bounds = {cells.Size() == 0 ? 0 : maxX - minX + 1, cells.Size() == 0 ? 0 : maxY - minY + 1,};
+
+		return bounds;
+	}
+
+	@Override
+	public void ForEachCell(CellVisitor visitor) {
+		for ( int s = 0; s < cells.Capacity(); s++ )
+			if ( cells.IsUsed(s) )
+				visitor.Visit(Point.UnpackX(cells.KeyAt(s)) - minX, Point.UnpackY(cells.KeyAt(s)) - minY, cells.ValueAt(s));
+	}
+
+	@Override
+	public long[] Snapshot() {
+		return LifeEngines.Snapshot(this);
+	}
+
+	/**
+	 * Adds the cell to the neighbours count of all 8 positions around it
+	 * @param counts -- packed position -> number of live neighbours
+	 * @param p -- packed cell position
+	 */
+	static void CountNeighbours(LongIntMap counts, long p) {
+		int x = Point.UnpackX(p),
+			y = Point.UnpackY(p);
+
+		for ( int dy = -1; dy <= 1; dy++ )
+			for ( int dx = -1; dx <= 1; dx++ )
+				if ( dx != 0 || dy != 0 )
+					counts.Add(Point.Pack(x + dx, y + dy), 1);
+	}
+
+	/**
+	 * Applies Life rules to the counted neighbours
+	 * @param cells -- current cells with ages
+	 * @param counts -- neighbours counts
+	 * @return cells of the next generation with ages
+	 */
+	static LongIntMap NextCells(LongIntMap cells, LongIntMap counts) {
+		LongIntMap next = new LongIntMap(cells.Size());
+
+		for ( int s = 0; s < counts.Capacity(); s++ ) {
+			if ( !counts.IsUsed(s) )
+				continue;
+
+			long p = counts.KeyAt(s);
+			int n = counts.ValueAt(s),
+				age = cells.Get(p, 0);
+
+			if ( n == 3 && age == 0 )
+				next.Put(p, 1);
+			else if ( (n == 2 || n == 3) && age > 0 )
+				next.Put(p, Math.min(age + 1, AgePlane.MAX_AGE));
+		}
+
+		return next;
+	}
+
+	private void UpdateBounds() {
+		minX = Integer.MAX_VALUE;
+		minY = Integer.MAX_VALUE;
+		maxX = Integer.MIN_VALUE;
+		maxY = Integer.MIN_VALUE;
+
+		for ( int s = 0; s < cells.Capacity(); s++ )
+			if ( cells.IsUsed(s) ) {
+				int x = Point.UnpackX(cells.KeyAt(s)),
+					y = Point.UnpackY(cells.KeyAt(s));
+				minX = Math.min(minX, x);
+				minY = Math.min(minY, y);
+				maxX = Math.max(maxX, x);
+				maxY = Math.max(maxY, y);
+			}
+	}
+}
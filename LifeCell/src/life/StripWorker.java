@@ -0,0 +1,215 @@
+package life;
+
+import java.io.*;
+import java.net.*;
+import java.util.concurrent.*;
+
+/**
+ * A worker process of the distributed flatland.
+ * Owns all cells with X in [x0, x1) of the global flatland, the outer strips are
+ * unbounded on their open sides. Every generation it sends its edge columns to the
+ * neighbour workers, receives theirs as one-cell halos and steps its own cells.
+ * Cells born in the halo columns belong to the neighbour, which counts them
+ * from the halo it received, so cells pass strip borders without extra messages.
+ *
+ * Run as: java life.StripWorker <coordinator host> <coordinator port>
+ */
+public class StripWorker {
+
+	static final byte CMD_STEP   = 1,
+					  CMD_GATHER = 2,
+					  CMD_STOP   = 3;
+
+	private int x0, x1;
+	private boolean hasLeft, hasRight;
+	private LongIntMap cells;				// packed position -> age
+
+	private DataInputStream ctlIn;
+	private DataOutputStream ctlOut;
+	private DataInputStream leftIn, rightIn;
+	private DataOutputStream leftOut, rightOut;
+	private ExecutorService sender = Executors.newSingleThreadExecutor();
+
+	public static void main(String[] args) throws IOException {
+		if ( args.length != 2 )
+			throw new RuntimeException("Usage: StripWorker <coordinator host> <coordinator port>");
+
+		new StripWorker().Run(args[0], Integer.parseInt(args[1]));
+	}
+
+	/**
+	 * Connects to the coordinator and the neighbours and serves coordinator commands until stopped
+	 * @param host -- coordinator host
+	 * @param port -- coordinator control port
+	 * @throws IOException
+	 */
+	void Run(String host, int port) throws IOException {
+
+		try ( ServerSocket peerServer = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+			  Socket ctl = new Socket(host, port) ) {
+
+			ctl.setTcpNoDelay(true);
+			ctlIn = new DataInputStream(new BufferedInputStream(ctl.getInputStream()));
+			ctlOut = new DataOutputStream(new BufferedOutputStream(ctl.getOutputStream()));
+
+			// tell the coordinator where the left neighbour should connect to
+			ctlOut.writeInt(peerServer.getLocalPort());
+			ctlOut.flush();
+
+			// strip configuration
+			x0 = ctlIn.readInt();
+			x1 = ctlIn.readInt();
+			hasLeft = ctlIn.readBoolean();
+			hasRight = ctlIn.readBoolean();
+			String rightHost = ctlIn.readUTF();
+			int rightPort = ctlIn.readInt();
+
+			int count = ctlIn.readInt();
+			cells = new LongIntMap(count);
+			for ( int i = 0; i < count; i++ )
+				cells.Put(ctlIn.readLong(), ctlIn.readUnsignedByte());
+
+			Socket right = null, left = null;
+			if ( hasRight ) {
+				right = new Socket(rightHost, rightPort);
+				right.setTcpNoDelay(true);
+				rightIn = new DataInputStream(new BufferedInputStream(right.getInputStream()));
+				rightOut = new DataOutputStream(new BufferedOutputStream(right.getOutputStream()));
+			}
+			if ( hasLeft ) {
+				left = peerServer.accept();
+				left.setTcpNoDelay(true);
+				leftIn = new DataInputStream(new BufferedInputStream(left.getInputStream()));
+				leftOut = new DataOutputStream(new BufferedOutputStream(left.getOutputStream()));
+			}
+
+			ctlOut.writeBoolean(true);		// ready
+			ctlOut.flush();
+
+			try {
+				Serve();
+			}
+			finally {
+				sender.shutdownNow();
+				if ( left != null )
+					left.close();
+				if ( right != null )
+					right.close();
+			}
+		}
+	}
+
+	private void Serve() throws IOException {
+
+		while ( true ) {
+			byte cmd = ctlIn.readByte();
+
+			switch ( cmd ) {
+				case CMD_STEP :
+					int n = ctlIn.readInt();
+					for ( int i = 0; i < n; i++ )
+						Step();
+					ctlOut.writeLong(cells.Size());
+					ctlOut.flush();
+					break;
+
+				case CMD_GATHER :
+					ctlOut.writeInt(cells.Size());
+					for ( int s = 0; s < cells.Capacity(); s++ )
+						if ( cells.IsUsed(s) ) {
+							ctlOut.writeLong(cells.KeyAt(s));
+							ctlOut.writeByte(cells.ValueAt(s));
+						}
+					ctlOut.flush();
+					break;
+
+				case CMD_STOP :
+					return;
+
+				default:
+					throw new RuntimeException("Unknown command [" + cmd + "]");
+			}
+		}
+	}
+
+	/**
+	 * Exchanges halos with the neighbours and makes the next generation of the strip
+	 * @throws IOException
+	 */
+	private void Step() throws IOException {
+
+		// edges are sent on a separate thread, so two neighbours writing big halos don't block each other
+		Future<?> sent = sender.submit(new Callable<Void>() {
+			public Void call() throws IOException {
+				if ( hasLeft )
+					SendEdge(leftOut, x0);
+				if ( hasRight )
+					SendEdge(rightOut, x1 - 1);
+				return null;
+			}
+		});
+
+		LongIntMap counts = new LongIntMap(cells.Size() * 4);
+
+		for ( int s = 0; s < cells.Capacity(); s++ )
+			if ( cells.IsUsed(s) )
+				SparseLife.CountNeighbours(counts, cells.KeyAt(s));
+
+		if ( hasLeft )
+			ReceiveHalo(leftIn, x0 - 1, counts);
+		if ( hasRight )
+			ReceiveHalo(rightIn, x1, counts);
+
+		try {
+			sent.get();
+		}
+		catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Halo sending interrupted", e);
+		}
+		catch ( ExecutionException e ) {
+			throw new IOException("Halo sending failed: " + e.getCause().getMessage(), e.getCause());
+		}
+
+		LongIntMap next = new LongIntMap(cells.Size());
+		for ( int s = 0; s < counts.Capacity(); s++ ) {
+			if ( !counts.IsUsed(s) )
+				continue;
+
+			long p = counts.KeyAt(s);
+			int x = Point.UnpackX(p),
+				n = counts.ValueAt(s),
+				age = cells.Get(p, 0);
+
+			if ( x < x0 || x >= x1 )
+				continue;
+
+			if ( n == 3 && age == 0 )
+				next.Put(p, 1);
+			else if ( (n == 2 || n == 3) && age > 0 )
+				next.Put(p, Math.min(age + 1, AgePlane.MAX_AGE));
+		}
+
+		cells = next;
+	}
+
+	private void SendEdge(DataOutputStream out, int x) throws IOException {
+		int count = 0;
+		for ( int s = 0; s < cells.Capacity(); s++ )
+			if ( cells.IsUsed(s) && Point.UnpackX(cells.KeyAt(s)) == x )
+				count++;
+
+		out.writeInt(count);
+		for ( int s = 0; s < cells.Capacity(); s++ )
+			if ( cells.IsUsed(s) && Point.UnpackX(cells.KeyAt(s)) == x )
+				out.writeInt(Point.UnpackY(cells.KeyAt(s)));
+		out.flush();
+	}
+
+	private void ReceiveHalo(DataInputStream in, int x, LongIntMap counts) throws IOException {
+		int count = in.readInt();
+
+		for ( int i = 0; i < count; i++ )
+			SparseLife.CountNeighbours(counts, Point.Pack(x, in.readInt()));
+	}
+}
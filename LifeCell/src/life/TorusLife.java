@@ -0,0 +1,189 @@
+package life;
+
+import java.util.*;
+
+/**
+ * Life engine on a fixed-size torus.
+ * The world is one preallocated plane of cell ages wrapping at the edges, and a second plane
+ * of the same size receives the next generation, so generations are made without any
+ * normalisation, shifting or allocation and the memory stays the same for the whole run.
+ * Rows having no cells around them are skipped.
+ */
+public class TorusLife implements LifeEngine {
+
+	private final int width, height;
+
+	private byte[] cells, next;			// cell ages by rows, 0 means there is no cell
+	private int[] rowCells, nextRowCells;	// number of cells in every row of the planes
+	private final int[] columns;			// live cells in the three rows around the current one by columns
+
+	private int generation;
+	private long population;
+
+	/**
+	 * Creates an empty torus
+	 * @param width -- torus width
+	 * @param height -- torus height
+	 */
+	public TorusLife(int width, int height) {
+
+		if ( width < 3 || height < 3 )
+			throw new RuntimeException("Invalid torus size [" + width + "x" + height + "]");
+
+		this.width = width;
+		this.height = height;
+
+		cells = new byte[width * height];
+		next = new byte[width * height];
+		rowCells = new int[height];
+		nextRowCells = new int[height];
+		columns = new int[width];
+	}
+
+	public int GetWidth() {
+		return width;
+	}
+
+	public int GetHeight() {
+		return height;
+	}
+
+	/**
+	 * Places the pattern in the middle of the torus. Patterns larger than the torus wrap
+	 * @param points -- positions of live cells
+	 */
+	@Override
+	public void Load(List<Point> points) {
+
+		Arrays.fill(cells, (byte)0);
+		Arrays.fill(rowCells, 0);
+		population = 0;
+		generation = 0;
+
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE,
+			maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		for ( Point p : points ) {
+			minX = Math.min(minX, p.x);
+			minY = Math.min(minY, p.y);
+			maxX = Math.max(maxX, p.x);
+			maxY = Math.max(maxY, p.y);
+		}
+
+		int dx = Math.max(0, (width - (maxX - minX + 1)) / 2) - minX,
+			dy = Math.max(0, (height - (maxY - minY + 1)) / 2) - minY;
+
+		for ( Point p : points ) {
+			int x = Math.floorMod(p.x + dx, width),
+				y = Math.floorMod(p.y + dy, height);
+
+			if ( cells[y * width + x] == 0 ) {
+				cells[y * width + x] = 1;
+				rowCells[y]++;
+				population++;
+			}
+		}
+	}
+
+	@Override
+	public void Step(int n) {
+		for ( int i = 0; i < n; i++ )
+			NextGeneration();
+	}
+
+	/**
+	 * Makes the next generation into the second plane and swaps the planes
+	 */
+	public void NextGeneration() {
+
+		byte[] cur = cells, nxt = next;
+		int[] cnt = columns;
+		int w = width;
+		long pop = 0;
+
+		for ( int y = 0; y < height; y++ ) {
+			int up = y == 0 ? height - 1 : y - 1,
+				down = y == height - 1 ? 0 : y + 1,
+				row = y * w;
+
+			if ( rowCells[up] + rowCells[y] + rowCells[down] == 0 ) {
+				// nothing could be born here, the row only has to be cleared if it was used before
+				if ( nextRowCells[y] != 0 )
+					Arrays.fill(nxt, row, row + w, (byte)0);
+				nextRowCells[y] = 0;
+				continue;
+			}
+
+			int upRow = up * w,
+				downRow = down * w;
+			for ( int x = 0; x < w; x++ )
+				cnt[x] = (cur[upRow + x] != 0 ? 1 : 0) + (cur[row + x] != 0 ? 1 : 0) + (cur[downRow + x] != 0 ? 1 : 0);
+
+			int live = 0;
+			for ( int x = 0; x < w; x++ ) {
+				int left = x == 0 ? w - 1 : x - 1,
+					right = x == w - 1 ? 0 : x + 1;
+				int age = cur[row + x] & 0xFF,
+					nb = cnt[left] + cnt[x] + cnt[right] - (age != 0 ? 1 : 0);
+
+				byte res = 0;
+				if ( age == 0 ) {
+					if ( nb == 3 )
+						res = 1;
+				}
+				else if ( nb == 2 || nb == 3 )
+					res = (byte)(age == AgePlane.MAX_AGE ? AgePlane.MAX_AGE : age + 1);
+
+				nxt[row + x] = res;
+				if ( res != 0 )
+					live++;
+			}
+
+			nextRowCells[y] = live;
+			pop += live;
+		}
+
+		next = cur;
+		cells = nxt;
+		int[] t = rowCells;
+		rowCells = nextRowCells;
+		nextRowCells = t;
+
+		population = pop;
+		generation++;
+	}
+
+	@Override
+	public int GetGeneration() {
+		return generation;
+	}
+
+	@Override
+	public long GetPopulation() {
+		return population;
+	}
+
+	@Override
+	public int[] GetBounds() {
+		int[] bounds = {width, height};
+
+		return bounds;
+	}
+
+	@Override
+	public void ForEachCell(CellVisitor visitor) {
+		for ( int y = 0; y < height; y++ ) {
+			if ( rowCells[y] == 0 )
+				continue;
+
+			int row = y * width;
+			for ( int x = 0; x < width; x++ )
+				if ( cells[row + x] != 0 )
+					visitor.Visit(x, y, cells[row + x] & 0xFF);
+		}
+	}
+
+	@Override
+	public long[] Snapshot() {
+		return LifeEngines.Snapshot(this);
+	}
+}